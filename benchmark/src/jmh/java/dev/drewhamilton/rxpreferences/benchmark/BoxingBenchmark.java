@@ -0,0 +1,89 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.InMemoryPreferenceStore;
+import dev.drewhamilton.rxpreferences.RxPreferences;
+import io.reactivex.rxjava3.disposables.CompositeDisposable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures emitting changes of numeric preferences through their streams. Run with {@code -PjmhProfilers=gc} and
+ * compare {@code gc.alloc.rate.norm}: a change between values in the boxed value caches, such as counter values and
+ * slider fractions, allocates one box less than a change between uncached values. Writing an unchanged value
+ * allocates nothing in the streams; what remains is the cost of the edit itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoxingBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean cachedValues;
+
+    private InMemoryPreferenceStore store;
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+
+    private int[] intValues;
+    private long[] longValues;
+    private float[] floatValues;
+    private int nextValue;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        if (cachedValues) {
+            intValues = new int[] { 500, 501 };
+            longValues = new long[] { 500L, 501L };
+            floatValues = new float[] { 0.25f, 0.75f };
+        } else {
+            intValues = new int[] { 100000, 100001 };
+            longValues = new long[] { 100000L, 100001L };
+            floatValues = new float[] { 0.125f, 0.375f };
+        }
+
+        store = new InMemoryPreferenceStore();
+        final RxPreferences rxPreferences = RxPreferences.create(store);
+        subscriptions.add(rxPreferences.getIntStream("Int key", 0).subscribe(blackhole::consume));
+        subscriptions.add(rxPreferences.getLongStream("Long key", 0L).subscribe(blackhole::consume));
+        subscriptions.add(rxPreferences.getFloatStream("Float key", 0f).subscribe(blackhole::consume));
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public void intChange() {
+        nextValue ^= 1;
+        store.edit().putInt("Int key", intValues[nextValue]).commit();
+    }
+
+    @Benchmark
+    public void longChange() {
+        nextValue ^= 1;
+        store.edit().putLong("Long key", longValues[nextValue]).commit();
+    }
+
+    @Benchmark
+    public void floatChange() {
+        nextValue ^= 1;
+        store.edit().putFloat("Float key", floatValues[nextValue]).commit();
+    }
+
+    /**
+     * The streams skip a value equal to the current one before boxing it, regardless of the cache.
+     */
+    @Benchmark
+    public void intUnchanged() {
+        store.edit().putInt("Int key", intValues[0]).commit();
+    }
+}
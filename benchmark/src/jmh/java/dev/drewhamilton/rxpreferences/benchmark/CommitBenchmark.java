@@ -0,0 +1,65 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.InMemoryPreferenceStore;
+import dev.drewhamilton.rxpreferences.RxPreferences;
+import io.reactivex.rxjava3.disposables.Disposable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of {@link RxPreferences.Editor#commit()} against the number of keys per commit, with one
+ * {@link RxPreferences#getAllStream()} subscriber, with and without coalesced commits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CommitBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int keysPerCommit;
+
+    @Param({ "false", "true" })
+    public boolean coalesceCommits;
+
+    private RxPreferences rxPreferences;
+    private Disposable subscription;
+    private String[] keys;
+    private int nextValue;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        rxPreferences = RxPreferences.builder(new InMemoryPreferenceStore())
+                .coalesceCommits(coalesceCommits)
+                .build();
+        subscription = rxPreferences.getAllStream().subscribe(blackhole::consume);
+
+        keys = new String[keysPerCommit];
+        for (int i = 0; i < keysPerCommit; i++) {
+            keys[i] = "Key " + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.dispose();
+    }
+
+    @Benchmark
+    public void commit() {
+        final RxPreferences.Editor editor = rxPreferences.edit();
+        final int value = nextValue++;
+        for (String key : keys) {
+            editor.putInt(key, value);
+        }
+        editor.commit().blockingAwait();
+    }
+}
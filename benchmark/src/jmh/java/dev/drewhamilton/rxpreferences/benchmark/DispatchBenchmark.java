@@ -0,0 +1,61 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.InMemoryPreferenceStore;
+import dev.drewhamilton.rxpreferences.RxPreferences;
+import io.reactivex.rxjava3.disposables.CompositeDisposable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of dispatching one preference change against the number of active subscribers, either all
+ * observing the changed key or each observing a different key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+    private static final String CHANGED_KEY = "Key 0";
+
+    @Param({ "1", "10", "100", "1000" })
+    public int subscriberCount;
+
+    @Param({ "true", "false" })
+    public boolean sameKey;
+
+    private InMemoryPreferenceStore store;
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+    private final int[] values = { 100000, 100001 };
+    private int nextValue;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        store = new InMemoryPreferenceStore();
+        final RxPreferences rxPreferences = RxPreferences.create(store);
+        for (int i = 0; i < subscriberCount; i++) {
+            // Streams with the same key and default are shared, so give each subscriber a different default:
+            final String key = sameKey ? CHANGED_KEY : "Key " + i;
+            subscriptions.add(rxPreferences.getIntStream(key, i).subscribe(blackhole::consume));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public void dispatchChange() {
+        nextValue ^= 1;
+        store.edit().putInt(CHANGED_KEY, values[nextValue]).commit();
+    }
+}
@@ -0,0 +1,87 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.LogPreferenceStore;
+import dev.drewhamilton.rxpreferences.MappedPreferenceStore;
+import dev.drewhamilton.rxpreferences.PreferenceStore;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of writing one preference to a {@link MappedPreferenceStore} or a {@link LogPreferenceStore}
+ * against the number of stored preferences, which should make no difference. {@code apply} measures the writes alone,
+ * and {@code commit} includes flushing them to storage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FileStoreBenchmark {
+
+    @Param({ "10", "1000" })
+    public int storeSize;
+
+    @Param({ "MappedPreferenceStore", "LogPreferenceStore" })
+    public String storeType;
+
+    private File file;
+    private PreferenceStore store;
+    private int nextValue;
+    private final String[] strings = { "First string value", "Second string value" };
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("preferences", null);
+        if (!file.delete()) {
+            throw new IOException("Could not delete " + file);
+        }
+        if ("MappedPreferenceStore".equals(storeType)) {
+            store = MappedPreferenceStore.open(file);
+        } else {
+            store = LogPreferenceStore.open(file, 256 * 1024, Schedulers.single());
+        }
+        final PreferenceStore.Editor editor = store.edit();
+        for (int i = 0; i < storeSize; i++) {
+            editor.putString("Key " + i, "Value " + i);
+        }
+        editor.putInt("Int key", 0).commit();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ((Closeable) store).close();
+        final File directory = file.getAbsoluteFile().getParentFile();
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(file.getName()));
+        if (files != null) {
+            for (File storeFile : files) {
+                //noinspection ResultOfMethodCallIgnored
+                storeFile.delete();
+            }
+        }
+    }
+
+    @Benchmark
+    public void applyInt() {
+        store.edit().putInt("Int key", nextValue++).apply();
+    }
+
+    @Benchmark
+    public void applyString() {
+        store.edit().putString("Key 0", strings[nextValue++ & 1]).apply();
+    }
+
+    @Benchmark
+    public boolean commitInt() {
+        return store.edit().putInt("Int key", nextValue++).commit();
+    }
+}
@@ -0,0 +1,66 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.InMemoryPreferenceStore;
+import dev.drewhamilton.rxpreferences.PreferenceStore;
+import dev.drewhamilton.rxpreferences.RxPreferences;
+import io.reactivex.rxjava3.disposables.Disposable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of one change against the number of stored preferences while {@link RxPreferences#getAllStream()}
+ * or {@link RxPreferences#getAllSnapshotStream()} is observed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GetAllBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int storeSize;
+
+    @Param({ "getAllStream", "getAllSnapshotStream" })
+    public String stream;
+
+    private InMemoryPreferenceStore store;
+    private Disposable subscription;
+    private final int[] values = { 100000, 100001 };
+    private int nextValue;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        store = new InMemoryPreferenceStore();
+        final PreferenceStore.Editor editor = store.edit();
+        for (int i = 0; i < storeSize; i++) {
+            editor.putInt("Key " + i, i);
+        }
+        editor.commit();
+
+        final RxPreferences rxPreferences = RxPreferences.create(store);
+        if ("getAllStream".equals(stream)) {
+            subscription = rxPreferences.getAllStream().subscribe(blackhole::consume);
+        } else {
+            subscription = rxPreferences.getAllSnapshotStream().subscribe(blackhole::consume);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.dispose();
+    }
+
+    @Benchmark
+    public void dispatchChange() {
+        nextValue ^= 1;
+        store.edit().putInt("Key 0", values[nextValue]).commit();
+    }
+}
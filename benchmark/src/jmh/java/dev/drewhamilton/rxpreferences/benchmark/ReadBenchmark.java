@@ -0,0 +1,60 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.InMemoryPreferenceStore;
+import dev.drewhamilton.rxpreferences.RxPreferences;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the latency of reading a single preference with the {@code getXxxOnce} methods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReadBenchmark {
+
+    private RxPreferences rxPreferences;
+
+    @Setup
+    public void setUp() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit()
+                .putString("String key", "String value")
+                .putInt("Int key", 123456)
+                .putFloat("Float key", 0.5f)
+                .putBoolean("Boolean key", true)
+                .commit();
+        rxPreferences = RxPreferences.create(store);
+    }
+
+    @Benchmark
+    public String getStringOnce() {
+        return rxPreferences.getStringOnce("String key", "Default").blockingGet();
+    }
+
+    @Benchmark
+    public Integer getIntOnce() {
+        return rxPreferences.getIntOnce("Int key", 0).blockingGet();
+    }
+
+    @Benchmark
+    public Float getFloatOnce() {
+        return rxPreferences.getFloatOnce("Float key", 0f).blockingGet();
+    }
+
+    @Benchmark
+    public Boolean getBooleanOnce() {
+        return rxPreferences.getBooleanOnce("Boolean key", false).blockingGet();
+    }
+
+    @Benchmark
+    public Boolean containsOnce() {
+        return rxPreferences.containsOnce("String key").blockingGet();
+    }
+}
@@ -0,0 +1,46 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.InMemoryPreferenceStore;
+import dev.drewhamilton.rxpreferences.RxPreferences;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures reading from the lock-free {@link InMemoryPreferenceStore} on several threads while another thread commits.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StoreBenchmark {
+
+    private RxPreferences rxPreferences;
+    private int nextValue;
+
+    @Setup
+    public void setUp() {
+        rxPreferences = RxPreferences.create(new InMemoryPreferenceStore());
+        rxPreferences.edit().putInt("Int key", 0).commit().blockingAwait();
+    }
+
+    @Benchmark
+    @Group("readWhileCommitting")
+    @GroupThreads(3)
+    public Integer read() {
+        return rxPreferences.getIntOnce("Int key", -1).blockingGet();
+    }
+
+    @Benchmark
+    @Group("readWhileCommitting")
+    @GroupThreads(1)
+    public void commit() {
+        rxPreferences.edit().putInt("Int key", nextValue++).commit().blockingAwait();
+    }
+}
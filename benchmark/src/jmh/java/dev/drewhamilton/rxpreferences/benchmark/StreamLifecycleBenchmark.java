@@ -0,0 +1,59 @@
+package dev.drewhamilton.rxpreferences.benchmark;
+
+import dev.drewhamilton.rxpreferences.InMemoryPreferenceStore;
+import dev.drewhamilton.rxpreferences.RxPreferences;
+import io.reactivex.rxjava3.disposables.Disposable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of subscribing to and disposing a preference stream, both when the subscription creates the shared
+ * stream and when another subscriber is already holding it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StreamLifecycleBenchmark {
+
+    private RxPreferences rxPreferences;
+    private Disposable heldSubscription;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit()
+                .putInt("Int key", 123456)
+                .putString("String key", "String value")
+                .commit();
+        rxPreferences = RxPreferences.create(store);
+        heldSubscription = rxPreferences.getStringStream("String key", "Default").subscribe(blackhole::consume);
+    }
+
+    @TearDown
+    public void tearDown() {
+        heldSubscription.dispose();
+    }
+
+    @Benchmark
+    public void getIntStream_subscribeAndDispose(Blackhole blackhole) {
+        rxPreferences.getIntStream("Int key", 0).subscribe(blackhole::consume).dispose();
+    }
+
+    @Benchmark
+    public void getStringStream_subscribeToSharedStreamAndDispose(Blackhole blackhole) {
+        rxPreferences.getStringStream("String key", "Default").subscribe(blackhole::consume).dispose();
+    }
+
+    @Benchmark
+    public void getAllStream_subscribeAndDispose(Blackhole blackhole) {
+        rxPreferences.getAllStream().subscribe(blackhole::consume).dispose();
+    }
+}
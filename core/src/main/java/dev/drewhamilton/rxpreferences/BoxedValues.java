@@ -0,0 +1,94 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+
+/**
+ * Caches of boxed primitive preference values. Covers a wider range than {@link Integer#valueOf(int)} and {@link
+ * Long#valueOf(long)}, and also covers common float values, which {@link Float#valueOf(float)} never caches, so that
+ * counters and sliders can emit without allocating on every change.
+ * <p>
+ * Entries are created on first use. A race between two threads creating the same entry is harmless, since boxed values
+ * are immutable and only compared by value.
+ */
+final class BoxedValues {
+
+    private static final int MIN_CACHED = -128;
+    private static final int MAX_CACHED = 1023;
+    private static final int CACHE_SIZE = MAX_CACHED - MIN_CACHED + 1;
+
+    /**
+     * Float values in [0, 1] are cached in steps of 1 / {@value}, such as progress and volume fractions.
+     */
+    private static final int FRACTION_STEPS = 100;
+
+    private static final Integer[] INTS = new Integer[CACHE_SIZE];
+    private static final Long[] LONGS = new Long[CACHE_SIZE];
+    private static final Float[] WHOLE_FLOATS = new Float[CACHE_SIZE];
+    private static final Float[] FRACTION_FLOATS = new Float[FRACTION_STEPS + 1];
+
+    private BoxedValues() {
+        throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    static Integer valueOf(int value) {
+        if (value < MIN_CACHED || value > MAX_CACHED) {
+            return value;
+        }
+        final int index = value - MIN_CACHED;
+        Integer boxed = INTS[index];
+        if (boxed == null) {
+            boxed = value;
+            INTS[index] = boxed;
+        }
+        return boxed;
+    }
+
+    @NonNull
+    static Long valueOf(long value) {
+        if (value < MIN_CACHED || value > MAX_CACHED) {
+            return value;
+        }
+        final int index = (int) value - MIN_CACHED;
+        Long boxed = LONGS[index];
+        if (boxed == null) {
+            boxed = value;
+            LONGS[index] = boxed;
+        }
+        return boxed;
+    }
+
+    @NonNull
+    static Float valueOf(float value) {
+        final Float[] cache;
+        final int index;
+        final float cachedValue;
+        if (value >= MIN_CACHED && value <= MAX_CACHED && value == (int) value) {
+            cache = WHOLE_FLOATS;
+            index = (int) value - MIN_CACHED;
+            cachedValue = (int) value;
+        } else if (value > 0f && value < 1f) {
+            cache = FRACTION_FLOATS;
+            index = Math.round(value * FRACTION_STEPS);
+            cachedValue = (float) index / FRACTION_STEPS;
+        } else {
+            return value;
+        }
+
+        // Compare bits so that -0f is not cached as 0f and only exact fractions are cached:
+        if (Float.floatToIntBits(cachedValue) != Float.floatToIntBits(value)) {
+            return value;
+        }
+        Float boxed = cache[index];
+        if (boxed == null) {
+            boxed = value;
+            cache[index] = boxed;
+        }
+        return boxed;
+    }
+
+    @NonNull
+    static Boolean valueOf(boolean value) {
+        return value ? Boolean.TRUE : Boolean.FALSE;
+    }
+}
@@ -0,0 +1,73 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded, least-recently-used cache of values decoded by {@link PreferenceAdapter}s, holding the latest decoded
+ * value of each preference. An entry is reused as long as the preference still holds the same encoded string, which is
+ * usually the very same instance, so each stored value is decoded once no matter how many streams and reads share it.
+ */
+final class DecodeCache {
+
+    private final int maxSize;
+
+    // Guarded by this, in access order:
+    @NonNull private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * @param maxSize the number of preferences whose decoded values are kept. If 0, nothing is cached.
+     */
+    DecodeCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DecodeCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the value of {@code encoded}, the current string of the preference named {@code key}, decoded with
+     * {@code adapter}.
+     */
+    @NonNull
+    <T> T decode(@NonNull String key, @NonNull String encoded, @NonNull PreferenceAdapter<T> adapter) {
+        if (maxSize == 0) {
+            return adapter.decode(encoded);
+        }
+
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.adapter == adapter
+                    && (entry.encoded == encoded || entry.encoded.equals(encoded))) {
+                // The entry was decoded by the same adapter, so its value has the adapter's type:
+                @SuppressWarnings("unchecked")
+                final T decoded = (T) entry.decoded;
+                return decoded;
+            }
+        }
+
+        // Decode outside the lock, so a slow decode does not block reads of other preferences:
+        final T decoded = adapter.decode(encoded);
+        synchronized (this) {
+            entries.put(key, new Entry(encoded, adapter, decoded));
+        }
+        return decoded;
+    }
+
+    private static final class Entry {
+
+        @NonNull final String encoded;
+        @NonNull final PreferenceAdapter<?> adapter;
+        @NonNull final Object decoded;
+
+        Entry(@NonNull String encoded, @NonNull PreferenceAdapter<?> adapter, @NonNull Object decoded) {
+            this.encoded = encoded;
+            this.adapter = adapter;
+            this.decoded = decoded;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.core.Scheduler;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hands changes off from the thread that notified of them to a {@link Scheduler}, where {@link RxPreferenceDispatcher}
+ * delivers them to its listeners. Listeners read the current value of a changed key when they are notified, so a key
+ * that changes again before it is delivered is only delivered once: the earlier change is superseded.
+ * <p>
+ * The queue is bounded. Once more than the configured number of distinct keys are waiting, or once the preferences are
+ * cleared, the pending keys are dropped and replaced by a single refresh of every listener, which also covers any keys
+ * that change before the refresh is delivered.
+ * <p>
+ * At most one drain is scheduled at a time, so batches are delivered in order and never concurrently.
+ */
+final class DispatchQueue {
+
+    @NonNull private final RxPreferenceDispatcher dispatcher;
+    @NonNull private final Scheduler scheduler;
+    private final int maxPendingKeys;
+
+    // Guarded by this:
+    private final Set<String> pendingKeys = new LinkedHashSet<>();
+    private boolean pendingRefresh;
+    private boolean drainScheduled;
+
+    DispatchQueue(@NonNull RxPreferenceDispatcher dispatcher, @NonNull Scheduler scheduler, int maxPendingKeys) {
+        this.dispatcher = dispatcher;
+        this.scheduler = scheduler;
+        this.maxPendingKeys = maxPendingKeys;
+    }
+
+    /**
+     * @param keys the changed keys.
+     * @param cleared whether all preferences were cleared before {@code keys} changed.
+     */
+    void enqueue(@NonNull Collection<String> keys, boolean cleared) {
+        synchronized (this) {
+            if (cleared) {
+                pendingKeys.clear();
+                pendingRefresh = true;
+            } else if (!pendingRefresh) {
+                pendingKeys.addAll(keys);
+                if (pendingKeys.size() > maxPendingKeys) {
+                    pendingKeys.clear();
+                    pendingRefresh = true;
+                }
+            }
+
+            if (drainScheduled) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        scheduler.scheduleDirect(this::drain);
+    }
+
+    /**
+     * Deliver pending changes until none are left.
+     */
+    private void drain() {
+        while (true) {
+            final List<String> keys;
+            final boolean refresh;
+            synchronized (this) {
+                if (pendingKeys.isEmpty() && !pendingRefresh) {
+                    drainScheduled = false;
+                    return;
+                }
+                keys = new ArrayList<>(pendingKeys);
+                refresh = pendingRefresh;
+                pendingKeys.clear();
+                pendingRefresh = false;
+            }
+
+            // A refresh is delivered like a clear, which makes every listener read its value again:
+            dispatcher.dispatchBatch(keys, refresh);
+        }
+    }
+}
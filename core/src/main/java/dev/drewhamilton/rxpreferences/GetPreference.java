@@ -0,0 +1,21 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import java.util.Set;
+
+interface GetPreference<T> {
+
+    GetPreference<String> STRING = PreferenceStore::getString;
+    GetPreference<Set<String>> STRING_SET = PreferenceStore::getStringSet;
+    GetPreference<Integer> INT = (preferences, key, defaultValue) ->
+            BoxedValues.valueOf(preferences.getInt(key, defaultValue));
+    GetPreference<Long> LONG = (preferences, key, defaultValue) ->
+            BoxedValues.valueOf(preferences.getLong(key, defaultValue));
+    GetPreference<Float> FLOAT = (preferences, key, defaultValue) ->
+            BoxedValues.valueOf(preferences.getFloat(key, defaultValue));
+    GetPreference<Boolean> BOOLEAN = (preferences, key, defaultValue) ->
+            BoxedValues.valueOf(preferences.getBoolean(key, defaultValue));
+
+    @NonNull
+    T invoke(@NonNull PreferenceStore preferences, @NonNull String key, @NonNull T defaultValue);
+}
@@ -0,0 +1,55 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link PreferenceStore} that keeps its preferences in memory only. Use it as a fast store for values that do not
+ * need to outlive the process, or as a realistic store in tests, in place of a mock.
+ * <p>
+ * Reads never block: the preferences are held in an immutable snapshot that each commit replaces, so a reader always
+ * sees either all or none of the changes in a commit. Commits are serialized with each other, and update the snapshot
+ * in time proportional to the number of changed keys rather than the size of the store.
+ * <p>
+ * Listeners follow the contract of Android's {@code SharedPreferences}: they are called synchronously on the
+ * committing thread before {@link PreferenceStore.Editor#commit()} returns, once with a null key if the commit cleared
+ * the store, and then once for each key whose value actually changed. Unlike {@code SharedPreferences}, listeners are
+ * held strongly until they are unregistered.
+ */
+public final class InMemoryPreferenceStore extends SnapshotPreferenceStore {
+
+    /**
+     * Construct an empty store.
+     */
+    public InMemoryPreferenceStore() {
+        this(Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Construct a store containing {@code initialValues}.
+     *
+     * @param initialValues the preferences to start with. Null values are ignored.
+     * @throws IllegalArgumentException if a value is not a type that {@link PreferenceStore} supports.
+     */
+    public InMemoryPreferenceStore(@NonNull Map<String, ?> initialValues) {
+        super(checkedCopyOf(initialValues));
+    }
+
+    /**
+     * Construct a store containing {@code values}, which must already be checked.
+     */
+    InMemoryPreferenceStore(@NonNull PersistentPreferenceMap values) {
+        super(values);
+    }
+
+    /**
+     * Always succeeds, since there is nothing to persist.
+     */
+    @Override
+    boolean persist(@NonNull PersistentPreferenceMap previous, @NonNull PersistentPreferenceMap updated,
+            @NonNull List<String> changedKeys, boolean cleared, boolean sync) {
+        return true;
+    }
+}
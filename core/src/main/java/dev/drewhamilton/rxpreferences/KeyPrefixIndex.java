@@ -0,0 +1,137 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.util.Arrays;
+
+/**
+ * An immutable trie of the {@link RxPreferenceListener}s observing each key prefix. Finding the listeners for a
+ * changed key walks the key once, so it costs O(key length) no matter how many prefixes are observed, and keys under no
+ * observed prefix are rejected after a few characters.
+ * <p>
+ * {@link #with} and {@link #without} copy only the path to the changed prefix, so the dispatcher can publish a new
+ * index on registration while other threads keep reading the old one.
+ */
+final class KeyPrefixIndex {
+
+    private static final RxPreferenceListener<?>[] NO_LISTENERS = new RxPreferenceListener<?>[0];
+    private static final char[] NO_CHARS = new char[0];
+    private static final KeyPrefixIndex[] NO_CHILDREN = new KeyPrefixIndex[0];
+
+    static final KeyPrefixIndex EMPTY = new KeyPrefixIndex(NO_LISTENERS, NO_CHARS, NO_CHILDREN);
+
+    @NonNull private final RxPreferenceListener<?>[] listeners;
+    // Sorted, with children[i] following chars[i]:
+    @NonNull private final char[] chars;
+    @NonNull private final KeyPrefixIndex[] children;
+
+    private KeyPrefixIndex(@NonNull RxPreferenceListener<?>[] listeners, @NonNull char[] chars,
+            @NonNull KeyPrefixIndex[] children) {
+        this.listeners = listeners;
+        this.chars = chars;
+        this.children = children;
+    }
+
+    /**
+     * @return the listeners observing the prefix this node is reached by.
+     */
+    @NonNull
+    RxPreferenceListener<?>[] listeners() {
+        return listeners;
+    }
+
+    /**
+     * @return the node reached by following {@code c} from this node, or null if no observed prefix continues with
+     * {@code c}.
+     */
+    @Nullable
+    KeyPrefixIndex child(char c) {
+        final int index = Arrays.binarySearch(chars, c);
+        return index < 0 ? null : children[index];
+    }
+
+    boolean isEmpty() {
+        return listeners.length == 0 && chars.length == 0;
+    }
+
+    /**
+     * @return an index with {@code listener} also observing {@code prefix}.
+     */
+    @NonNull
+    KeyPrefixIndex with(@NonNull String prefix, @NonNull RxPreferenceListener<?> listener) {
+        return with(prefix, 0, listener);
+    }
+
+    /**
+     * @return an index without {@code listener} observing {@code prefix}, or this index if it was not.
+     */
+    @NonNull
+    KeyPrefixIndex without(@NonNull String prefix, @NonNull RxPreferenceListener<?> listener) {
+        return without(prefix, 0, listener);
+    }
+
+    @NonNull
+    private KeyPrefixIndex with(@NonNull String prefix, int depth, @NonNull RxPreferenceListener<?> listener) {
+        if (depth == prefix.length()) {
+            final RxPreferenceListener<?>[] appended = Arrays.copyOf(listeners, listeners.length + 1);
+            appended[listeners.length] = listener;
+            return new KeyPrefixIndex(appended, chars, children);
+        }
+
+        final char c = prefix.charAt(depth);
+        final int index = Arrays.binarySearch(chars, c);
+        if (index >= 0) {
+            final KeyPrefixIndex[] newChildren = children.clone();
+            newChildren[index] = children[index].with(prefix, depth + 1, listener);
+            return new KeyPrefixIndex(listeners, chars, newChildren);
+        }
+
+        final int insertion = -index - 1;
+        final char[] newChars = new char[chars.length + 1];
+        final KeyPrefixIndex[] newChildren = new KeyPrefixIndex[children.length + 1];
+        System.arraycopy(chars, 0, newChars, 0, insertion);
+        System.arraycopy(children, 0, newChildren, 0, insertion);
+        newChars[insertion] = c;
+        newChildren[insertion] = EMPTY.with(prefix, depth + 1, listener);
+        System.arraycopy(chars, insertion, newChars, insertion + 1, chars.length - insertion);
+        System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+        return new KeyPrefixIndex(listeners, newChars, newChildren);
+    }
+
+    @NonNull
+    private KeyPrefixIndex without(@NonNull String prefix, int depth, @NonNull RxPreferenceListener<?> listener) {
+        if (depth == prefix.length()) {
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == listener) {
+                    final RxPreferenceListener<?>[] remaining = new RxPreferenceListener<?>[listeners.length - 1];
+                    System.arraycopy(listeners, 0, remaining, 0, i);
+                    System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                    return new KeyPrefixIndex(remaining, chars, children);
+                }
+            }
+            return this;
+        }
+
+        final int index = Arrays.binarySearch(chars, prefix.charAt(depth));
+        if (index < 0) {
+            return this;
+        }
+        final KeyPrefixIndex child = children[index].without(prefix, depth + 1, listener);
+        if (child == children[index]) {
+            return this;
+        } else if (!child.isEmpty()) {
+            final KeyPrefixIndex[] newChildren = children.clone();
+            newChildren[index] = child;
+            return new KeyPrefixIndex(listeners, chars, newChildren);
+        }
+
+        // Prune the empty branch:
+        final char[] newChars = new char[chars.length - 1];
+        final KeyPrefixIndex[] newChildren = new KeyPrefixIndex[children.length - 1];
+        System.arraycopy(chars, 0, newChars, 0, index);
+        System.arraycopy(children, 0, newChildren, 0, index);
+        System.arraycopy(chars, index + 1, newChars, index, newChars.length - index);
+        System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+        return new KeyPrefixIndex(listeners, newChars, newChildren);
+    }
+}
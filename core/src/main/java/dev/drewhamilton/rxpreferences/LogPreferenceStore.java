@@ -0,0 +1,522 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link PreferenceStore} persisted as a snapshot file plus an append-only log of commits. Each commit appends one
+ * small record holding only the changed preferences, so frequently written preferences such as counters and timestamps
+ * do not rewrite the whole store the way Android's {@code SharedPreferences} does.
+ * <p>
+ * When the log grows past a threshold, new commits move to a fresh log, and a compactor on a {@link Scheduler} writes a
+ * new snapshot of the store and then deletes the logs it covers. Commits never wait for the compactor. Opening the
+ * store reads the snapshot and replays the logs written since; a record left incomplete by a crash is discarded.
+ * <p>
+ * Reads are served from memory, exactly as with {@link InMemoryPreferenceStore}, and never touch the files.
+ * {@link PreferenceStore.Editor#commit()} flushes its record to storage before returning.
+ * {@link PreferenceStore.Editor#apply()} writes its record without flushing it, which survives the process dying but
+ * not the device losing power.
+ * <p>
+ * Only one {@link LogPreferenceStore} may have a given file open at a time.
+ */
+public final class LogPreferenceStore extends SnapshotPreferenceStore implements Closeable {
+
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 256 * 1024;
+
+    private static final int MAGIC = 0x52784c67;
+    private static final int VERSION = 1;
+    private static final String LOG_SUFFIX = ".log";
+
+    // Each entry is a type byte, the key, and a value encoded according to its type:
+    private static final byte REMOVED = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte STRING_SET = 6;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NonNull private final File file;
+    private final long compactionThreshold;
+    @NonNull private final Scheduler compactionScheduler;
+
+    // Guarded by this:
+    @NonNull private FileOutputStream log;
+    private long generation;
+    private long logLength;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * Open the store persisted in {@code file}, compacting its log on {@link Schedulers#io()} whenever it grows past
+     * 256 KiB. See {@link #open(File, long, Scheduler)}.
+     */
+    @NonNull
+    public static LogPreferenceStore open(@NonNull File file) throws IOException {
+        return open(file, DEFAULT_COMPACTION_THRESHOLD, Schedulers.io());
+    }
+
+    /**
+     * Open the store persisted in {@code file}, creating it if it does not exist. This reads and replays the whole
+     * store, so call it off the main thread.
+     * <p>
+     * Logs are kept beside {@code file}, named after it with a generation number and a {@code .log} extension.
+     *
+     * @param file the snapshot file to store preferences in.
+     * @param compactionThreshold the size in bytes that the log may reach before it is compacted.
+     * @param compactionScheduler the {@link Scheduler} on which to write snapshots.
+     * @return a store containing the preferences in {@code file} and its logs.
+     * @throws IOException if the files cannot be opened, or the snapshot is corrupt.
+     * @throws IllegalArgumentException if {@code compactionThreshold} is less than 1.
+     */
+    @NonNull
+    public static LogPreferenceStore open(@NonNull File file, long compactionThreshold,
+            @NonNull Scheduler compactionScheduler) throws IOException {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("compactionThreshold must be positive, but was " + compactionThreshold);
+        }
+        final Recovery recovery = Recovery.read(file);
+        final FileOutputStream log = new FileOutputStream(logFile(file, recovery.generation), true);
+        return new LogPreferenceStore(file, compactionThreshold, compactionScheduler, recovery, log);
+    }
+
+    private LogPreferenceStore(@NonNull File file, long compactionThreshold, @NonNull Scheduler compactionScheduler,
+            @NonNull Recovery recovery, @NonNull FileOutputStream log) {
+        super(recovery.values);
+        this.file = file;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionScheduler = compactionScheduler;
+        this.log = log;
+        this.generation = recovery.generation;
+        this.logLength = recovery.logLength;
+    }
+
+    /**
+     * Close the log. The store can still be read afterward, but commits fail. A compaction already in progress still
+     * completes.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            log.close();
+        }
+    }
+
+    @Override
+    synchronized boolean persist(@NonNull PersistentPreferenceMap previous, @NonNull PersistentPreferenceMap updated,
+            @NonNull List<String> changedKeys, boolean cleared, boolean sync) {
+        if (closed) {
+            return false;
+        }
+
+        try {
+            final byte[] record = encodeRecord(updated, changedKeys, cleared);
+            log.write(record);
+            if (sync) {
+                log.getFD().sync();
+            }
+            logLength += record.length;
+        } catch (IOException e) {
+            discardPartialRecord();
+            return false;
+        }
+
+        if (!compacting && logLength >= compactionThreshold) {
+            startCompaction(updated);
+        }
+        return true;
+    }
+
+    /**
+     * Truncate anything a failed write left after the last complete record, so later records are not lost behind it
+     * when the log is replayed.
+     */
+    private void discardPartialRecord() {
+        try {
+            log.getChannel().truncate(logLength);
+        } catch (IOException ignored) {
+            // Replaying the log stops at the partial record.
+        }
+    }
+
+    /**
+     * Move new commits to a fresh log, and schedule writing {@code snapshot} to replace every older log.
+     */
+    private void startCompaction(@NonNull final PersistentPreferenceMap snapshot) {
+        final long nextGeneration = generation + 1;
+        final FileOutputStream nextLog;
+        try {
+            nextLog = new FileOutputStream(logFile(file, nextGeneration), true);
+        } catch (IOException e) {
+            // Keep appending to the current log, and try again after the next commit.
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException ignored) {
+            // Every record was already written.
+        }
+        log = nextLog;
+        generation = nextGeneration;
+        logLength = 0;
+        compacting = true;
+
+        compactionScheduler.scheduleDirect(() -> compact(snapshot, nextGeneration));
+    }
+
+    private void compact(@NonNull PersistentPreferenceMap snapshot, long snapshotGeneration) {
+        try {
+            writeSnapshot(snapshot, snapshotGeneration);
+            for (long logGeneration : logGenerations(file)) {
+                if (logGeneration < snapshotGeneration) {
+                    //noinspection ResultOfMethodCallIgnored
+                    logFile(file, logGeneration).delete();
+                }
+            }
+        } catch (IOException ignored) {
+            // The older logs remain, so nothing is lost. The next compaction's snapshot will cover them too.
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    private void writeSnapshot(@NonNull PersistentPreferenceMap snapshot, long snapshotGeneration) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(snapshotGeneration);
+        output.writeInt(snapshot.size());
+        for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+            writeEntry(output, entry.getKey(), entry.getValue());
+        }
+        output.writeInt(checksum(bytes.toByteArray(), 0, bytes.size()));
+
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream temporaryOutput = new FileOutputStream(temporaryFile)) {
+            bytes.writeTo(temporaryOutput);
+            temporaryOutput.getFD().sync();
+        }
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("Could not replace " + file + " with " + temporaryFile);
+        }
+    }
+
+    /**
+     * Encode a log record: its payload length, the payload's checksum, and the payload, which holds whether the store
+     * was cleared followed by the entries for each changed key.
+     */
+    @NonNull
+    private static byte[] encodeRecord(@NonNull PersistentPreferenceMap updated, @NonNull List<String> changedKeys,
+            boolean cleared) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(0);
+        output.writeInt(0);
+        output.writeBoolean(cleared);
+        output.writeInt(changedKeys.size());
+        for (int i = 0; i < changedKeys.size(); i++) {
+            final String key = changedKeys.get(i);
+            writeEntry(output, key, updated.get(key));
+        }
+
+        final byte[] record = bytes.toByteArray();
+        final int payloadLength = record.length - 8;
+        writeInt(record, 0, payloadLength);
+        writeInt(record, 4, checksum(record, 8, payloadLength));
+        return record;
+    }
+
+    private static void writeEntry(@NonNull DataOutputStream output, @NonNull String key, @Nullable Object value)
+            throws IOException {
+        if (value == null) {
+            output.writeByte(REMOVED);
+            writeString(output, key);
+        } else if (value instanceof Integer) {
+            output.writeByte(INT);
+            writeString(output, key);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            writeString(output, key);
+            output.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            output.writeByte(FLOAT);
+            writeString(output, key);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN);
+            writeString(output, key);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            output.writeByte(STRING);
+            writeString(output, key);
+            writeString(output, (String) value);
+        } else {
+            output.writeByte(STRING_SET);
+            writeString(output, key);
+            final Set<?> set = (Set<?>) value;
+            output.writeInt(set.size());
+            for (Object element : set) {
+                writeString(output, (String) element);
+            }
+        }
+    }
+
+    /**
+     * Write a string's length followed by its UTF-8 bytes, or -1 for null. Unlike {@link DataOutputStream#writeUTF},
+     * this does not limit the length.
+     */
+    private static void writeString(@NonNull DataOutputStream output, @Nullable String string) throws IOException {
+        if (string == null) {
+            output.writeInt(-1);
+        } else {
+            final byte[] bytes = string.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static void writeInt(@NonNull byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int checksum(@NonNull byte[] bytes, int offset, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    @NonNull
+    private static File logFile(@NonNull File file, long generation) {
+        return new File(file.getPath() + "." + generation + LOG_SUFFIX);
+    }
+
+    /**
+     * @return the generations of the logs beside {@code file}, in ascending order.
+     */
+    @NonNull
+    private static List<Long> logGenerations(@NonNull File file) {
+        final List<Long> generations = new ArrayList<>();
+        final File directory = file.getAbsoluteFile().getParentFile();
+        final String[] names = directory == null ? null : directory.list();
+        if (names == null) {
+            return generations;
+        }
+
+        final String prefix = file.getName() + ".";
+        for (String name : names) {
+            if (name.startsWith(prefix) && name.endsWith(LOG_SUFFIX)) {
+                final String generation = name.substring(prefix.length(), name.length() - LOG_SUFFIX.length());
+                try {
+                    generations.add(Long.parseLong(generation));
+                } catch (NumberFormatException ignored) {
+                    // Not one of our logs.
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    @NonNull
+    private static byte[] readFully(@NonNull File file) throws IOException {
+        try (FileInputStream input = new FileInputStream(file)) {
+            final long length = input.getChannel().size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large");
+            }
+            final byte[] bytes = new byte[(int) length];
+            new DataInputStream(input).readFully(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * The state read from the snapshot and logs when the store is opened.
+     */
+    private static final class Recovery {
+        @NonNull PersistentPreferenceMap values = PersistentPreferenceMap.EMPTY;
+        long generation;
+        long logLength;
+
+        @NonNull
+        static Recovery read(@NonNull File file) throws IOException {
+            final Recovery recovery = new Recovery();
+            if (file.exists()) {
+                recovery.readSnapshot(file);
+            }
+
+            final long snapshotGeneration = recovery.generation;
+            for (long logGeneration : logGenerations(file)) {
+                final File logFile = logFile(file, logGeneration);
+                if (logGeneration < snapshotGeneration) {
+                    // The snapshot covers this log, but a crash interrupted its deletion:
+                    //noinspection ResultOfMethodCallIgnored
+                    logFile.delete();
+                } else {
+                    recovery.generation = logGeneration;
+                    recovery.logLength = recovery.replayLog(logFile);
+                }
+            }
+            return recovery;
+        }
+
+        private void readSnapshot(@NonNull File file) throws IOException {
+            final byte[] bytes = readFully(file);
+            try {
+                final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw new IOException(file + " is not a preference snapshot");
+                }
+                generation = input.readLong();
+                final int size = input.readInt();
+                for (int i = 0; i < size; i++) {
+                    readEntry(input);
+                }
+                final int contentLength = bytes.length - input.available();
+                if (input.readInt() != checksum(bytes, 0, contentLength) || input.available() != 0) {
+                    throw new IOException(file + " is corrupt");
+                }
+            } catch (EOFException | RuntimeException e) {
+                throw new IOException(file + " is corrupt", e);
+            }
+        }
+
+        /**
+         * Apply every complete record in {@code logFile}, and truncate anything after them.
+         *
+         * @return the length of the complete records.
+         */
+        private long replayLog(@NonNull File logFile) throws IOException {
+            final byte[] bytes = readFully(logFile);
+            int offset = 0;
+            while (offset + 8 <= bytes.length) {
+                final int payloadLength = readInt(bytes, offset);
+                if (payloadLength < 0 || payloadLength > bytes.length - offset - 8
+                        || readInt(bytes, offset + 4) != checksum(bytes, offset + 8, payloadLength)) {
+                    break;
+                }
+                final DataInputStream input =
+                        new DataInputStream(new ByteArrayInputStream(bytes, offset + 8, payloadLength));
+                try {
+                    if (input.readBoolean()) {
+                        values = PersistentPreferenceMap.EMPTY;
+                    }
+                    final int size = input.readInt();
+                    for (int i = 0; i < size; i++) {
+                        readEntry(input);
+                    }
+                } catch (EOFException | RuntimeException e) {
+                    throw new IOException(logFile + " is corrupt", e);
+                }
+                offset += 8 + payloadLength;
+            }
+
+            if (offset < bytes.length) {
+                // A crash interrupted writing the last record:
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(logFile, "rw")) {
+                    randomAccessFile.setLength(offset);
+                }
+            }
+            return offset;
+        }
+
+        private void readEntry(@NonNull DataInputStream input) throws IOException {
+            final byte type = input.readByte();
+            final String key = readString(input);
+            if (key == null) {
+                throw new IOException("Null key");
+            }
+            switch (type) {
+                case REMOVED:
+                    values = values.without(key);
+                    break;
+                case INT:
+                    values = values.with(key, input.readInt());
+                    break;
+                case LONG:
+                    values = values.with(key, input.readLong());
+                    break;
+                case FLOAT:
+                    values = values.with(key, input.readFloat());
+                    break;
+                case BOOLEAN:
+                    values = values.with(key, input.readBoolean());
+                    break;
+                case STRING:
+                    values = values.with(key, checkNotNull(readString(input)));
+                    break;
+                case STRING_SET:
+                    final int size = input.readInt();
+                    if (size < 0 || size > input.available() / 4) {
+                        throw new IOException("Invalid string set size " + size);
+                    }
+                    final Set<String> set = new HashSet<>(size * 4 / 3 + 1);
+                    for (int i = 0; i < size; i++) {
+                        set.add(readString(input));
+                    }
+                    values = values.with(key, Collections.unmodifiableSet(set));
+                    break;
+                default:
+                    throw new IOException("Unknown preference type " + type);
+            }
+        }
+
+        @Nullable
+        private static String readString(@NonNull DataInputStream input) throws IOException {
+            final int length = input.readInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > input.available()) {
+                throw new IOException("Invalid string length " + length);
+            }
+            final byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+
+        @NonNull
+        private static String checkNotNull(@Nullable String value) throws IOException {
+            if (value == null) {
+                throw new IOException("Null string value");
+            }
+            return value;
+        }
+
+        private static int readInt(@NonNull byte[] bytes, int offset) {
+            return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8
+                    | (bytes[offset + 3] & 0xff);
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link PreferenceStore} persisted to a memory-mapped binary file. Android's {@code SharedPreferences} rewrites its
+ * whole XML file on every commit; this store instead writes only what changed:
+ * <ul>
+ *     <li>Changing an int, long, float or boolean overwrites the old value in place.</li>
+ *     <li>Other changes append a record to the file and mark the replaced record as dead.</li>
+ *     <li>When the file runs out of room and at least half of it is dead, the live records are copied to a new file,
+ *     which then atomically replaces the old one.</li>
+ * </ul>
+ * So a commit writes in proportion to the size of its changes, not the size of the store.
+ * <p>
+ * Reads are served from memory, exactly as with {@link InMemoryPreferenceStore}, and never touch the file.
+ * {@link PreferenceStore.Editor#commit()} flushes the changed pages to storage before returning.
+ * {@link PreferenceStore.Editor#apply()} leaves them to the operating system, which writes them back even if the
+ * process dies. A commit whose changes are only partly flushed when the device loses power may be partly lost.
+ * <p>
+ * Only one {@link MappedPreferenceStore} may have a given file open at a time.
+ */
+public final class MappedPreferenceStore extends SnapshotPreferenceStore implements Closeable {
+
+    private static final int MAGIC = 0x52785066;
+    private static final int VERSION = 1;
+    // The header holds the magic number, the version, and the offset of the end of the records:
+    private static final int END_OFFSET = 8;
+    private static final int HEADER_SIZE = 12;
+    private static final int MIN_CAPACITY = 32 * 1024;
+
+    // Each record is a type byte, a key length int, the UTF-8 key bytes, and a value encoded according to its type:
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte STRING_SET = 6;
+    // Set on the type byte of a record that has been replaced or removed:
+    private static final byte DEAD = (byte) 0x80;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NonNull private final File file;
+
+    // Guarded by this:
+    @NonNull private RandomAccessFile randomAccessFile;
+    @NonNull private MappedByteBuffer buffer;
+    @NonNull private final Map<String, Record> records;
+    private int end;
+    private int deadBytes;
+    private boolean closed;
+
+    /**
+     * Open the store persisted in {@code file}, creating the file if it does not exist. This reads the whole file, so
+     * call it off the main thread.
+     *
+     * @param file the file to store preferences in.
+     * @return a store containing the preferences in {@code file}.
+     * @throws IOException if the file cannot be opened, or is not a valid preference file.
+     */
+    @NonNull
+    public static MappedPreferenceStore open(@NonNull File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            return new MappedPreferenceStore(file, randomAccessFile, Contents.read(file, randomAccessFile));
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    private MappedPreferenceStore(@NonNull File file, @NonNull RandomAccessFile randomAccessFile,
+            @NonNull Contents contents) {
+        super(contents.values);
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.buffer = contents.buffer;
+        this.records = contents.records;
+        this.end = contents.end;
+        this.deadBytes = contents.deadBytes;
+    }
+
+    /**
+     * Close the file. The store can still be read afterward, but commits fail.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            randomAccessFile.close();
+        }
+    }
+
+    @Override
+    synchronized boolean persist(@NonNull PersistentPreferenceMap previous, @NonNull PersistentPreferenceMap updated,
+            @NonNull List<String> changedKeys, boolean cleared, boolean sync) {
+        if (closed) {
+            return false;
+        }
+
+        // Encode every appended record and make room for all of them before changing anything, so a commit that fails
+        // leaves the file and the records as they were:
+        final PendingRecord[] pendingRecords = new PendingRecord[changedKeys.size()];
+        try {
+            long appendedLength = 0;
+            for (int i = 0; i < changedKeys.size(); i++) {
+                final String key = changedKeys.get(i);
+                final Object value = updated.get(key);
+                final Record existing = cleared ? null : records.get(key);
+                if (value != null
+                        && (existing == null || existing.type != typeOf(value) || !isFixedWidth(existing.type))) {
+                    pendingRecords[i] = new PendingRecord(key, value);
+                    appendedLength += pendingRecords[i].length;
+                }
+            }
+            if (cleared) {
+                ensureMapped(HEADER_SIZE + appendedLength);
+            } else {
+                ensureCapacity(appendedLength);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        // Nothing from here on can fail:
+        if (cleared) {
+            records.clear();
+            setEnd(HEADER_SIZE);
+            deadBytes = 0;
+        }
+        for (int i = 0; i < changedKeys.size(); i++) {
+            final String key = changedKeys.get(i);
+            final PendingRecord pendingRecord = pendingRecords[i];
+            if (pendingRecord != null) {
+                // Write the replacement before marking the original dead, so a crash cannot lose both:
+                final Record replaced = append(pendingRecord);
+                if (replaced != null) {
+                    markDead(replaced);
+                }
+            } else {
+                final Object value = updated.get(key);
+                final Record existing = records.get(key);
+                if (value == null) {
+                    if (existing != null) {
+                        markDead(existing);
+                        records.remove(key);
+                    }
+                } else {
+                    writeFixedWidthValue(buffer, existing.valueOffset, value);
+                }
+            }
+        }
+        if (sync) {
+            buffer.force();
+        }
+        return true;
+    }
+
+    /**
+     * Write {@code pendingRecord} at the end of the records. Room for it must already have been made.
+     *
+     * @return the record replaced by the appended one.
+     */
+    @Nullable
+    private Record append(@NonNull PendingRecord pendingRecord) {
+        final int offset = end;
+        buffer.put(offset, pendingRecord.type);
+        buffer.putInt(offset + 1, pendingRecord.keyBytes.length);
+        put(buffer, offset + 5, pendingRecord.keyBytes);
+        final int valueOffset = offset + 5 + pendingRecord.keyBytes.length;
+        if (isFixedWidth(pendingRecord.type)) {
+            writeFixedWidthValue(buffer, valueOffset, pendingRecord.value);
+        } else {
+            writeVariableWidthValue(buffer, valueOffset, pendingRecord.type, pendingRecord.encodedValue);
+        }
+        setEnd(offset + pendingRecord.length);
+        return records.put(pendingRecord.key,
+                new Record(offset, pendingRecord.length, valueOffset, pendingRecord.type));
+    }
+
+    private void markDead(@NonNull Record record) {
+        buffer.put(record.offset, (byte) (record.type | DEAD));
+        deadBytes += record.length;
+    }
+
+    private void setEnd(int end) {
+        this.end = end;
+        buffer.putInt(END_OFFSET, end);
+    }
+
+    private void ensureCapacity(long additionalBytes) throws IOException {
+        if (end + additionalBytes <= buffer.capacity()) {
+            return;
+        }
+        if (deadBytes > 0 && deadBytes >= (end - HEADER_SIZE) / 2) {
+            compact(additionalBytes);
+        }
+        ensureMapped(end + additionalBytes);
+    }
+
+    /**
+     * Grow the mapping of the file if it is smaller than {@code size}.
+     */
+    private void ensureMapped(long size) throws IOException {
+        if (size > buffer.capacity()) {
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(size));
+        }
+    }
+
+    /**
+     * Copy the live records to a new file, and then replace the current file with it.
+     */
+    private void compact(long additionalBytes) throws IOException {
+        final int liveEnd = end - deadBytes;
+        final File compactedFile = new File(file.getPath() + ".compact");
+        final RandomAccessFile compactedRandomAccessFile = new RandomAccessFile(compactedFile, "rw");
+        final MappedByteBuffer compacted;
+        final Map<String, Record> moved = new HashMap<>(records.size() * 4 / 3 + 1);
+        try {
+            compactedRandomAccessFile.setLength(0);
+            compacted = compactedRandomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(liveEnd + additionalBytes));
+            writeHeader(compacted, liveEnd);
+
+            int offset = HEADER_SIZE;
+            for (Map.Entry<String, Record> entry : records.entrySet()) {
+                final Record record = entry.getValue();
+                final ByteBuffer source = buffer.duplicate();
+                source.position(record.offset).limit(record.offset + record.length);
+                final ByteBuffer destination = compacted.duplicate();
+                destination.position(offset);
+                destination.put(source);
+                moved.put(entry.getKey(), new Record(offset, record.length, offset + record.valueOffset - record.offset,
+                        record.type));
+                offset += record.length;
+            }
+            compacted.force();
+
+            if (!compactedFile.renameTo(file)) {
+                throw new IOException("Could not replace " + file + " with " + compactedFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            compactedRandomAccessFile.close();
+            throw e;
+        }
+
+        randomAccessFile.close();
+        randomAccessFile = compactedRandomAccessFile;
+        buffer = compacted;
+        records.clear();
+        records.putAll(moved);
+        end = liveEnd;
+        deadBytes = 0;
+    }
+
+    private static int capacityFor(long size) throws IOException {
+        long capacity = MIN_CAPACITY;
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Preference file would exceed 2 GB");
+        }
+        return (int) capacity;
+    }
+
+    private static void writeHeader(@NonNull ByteBuffer buffer, int end) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(END_OFFSET, end);
+    }
+
+    private static byte typeOf(@NonNull Object value) {
+        if (value instanceof Integer) {
+            return INT;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        } else if (value instanceof String) {
+            return STRING;
+        } else {
+            return STRING_SET;
+        }
+    }
+
+    private static boolean isFixedWidth(byte type) {
+        return type == INT || type == LONG || type == FLOAT || type == BOOLEAN;
+    }
+
+    private static void writeFixedWidthValue(@NonNull ByteBuffer buffer, int offset, @NonNull Object value) {
+        if (value instanceof Integer) {
+            buffer.putInt(offset, (Integer) value);
+        } else if (value instanceof Long) {
+            buffer.putLong(offset, (Long) value);
+        } else if (value instanceof Float) {
+            buffer.putInt(offset, Float.floatToRawIntBits((Float) value));
+        } else {
+            buffer.put(offset, (Boolean) value ? (byte) 1 : (byte) 0);
+        }
+    }
+
+    /**
+     * @return the value's bytes if it is a string, an array of each element's bytes if it is a string set, or the value
+     * itself otherwise.
+     */
+    @NonNull
+    private static Object encode(byte type, @NonNull Object value) {
+        if (type == STRING) {
+            return ((String) value).getBytes(UTF_8);
+        } else if (type == STRING_SET) {
+            final Set<?> set = (Set<?>) value;
+            final byte[][] elements = new byte[set.size()][];
+            int i = 0;
+            for (Object element : set) {
+                elements[i++] = element == null ? null : ((String) element).getBytes(UTF_8);
+            }
+            return elements;
+        } else {
+            return value;
+        }
+    }
+
+    private static int encodedLength(byte type, @NonNull Object encodedValue) {
+        switch (type) {
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+                return 8;
+            case BOOLEAN:
+                return 1;
+            case STRING:
+                return 4 + ((byte[]) encodedValue).length;
+            default:
+                int length = 4;
+                for (byte[] element : (byte[][]) encodedValue) {
+                    length += 4 + (element == null ? 0 : element.length);
+                }
+                return length;
+        }
+    }
+
+    private static void writeVariableWidthValue(@NonNull ByteBuffer buffer, int offset, byte type,
+            @NonNull Object encodedValue) {
+        if (type == STRING) {
+            final byte[] bytes = (byte[]) encodedValue;
+            buffer.putInt(offset, bytes.length);
+            put(buffer, offset + 4, bytes);
+        } else {
+            final byte[][] elements = (byte[][]) encodedValue;
+            buffer.putInt(offset, elements.length);
+            offset += 4;
+            for (byte[] element : elements) {
+                if (element == null) {
+                    buffer.putInt(offset, -1);
+                    offset += 4;
+                } else {
+                    buffer.putInt(offset, element.length);
+                    put(buffer, offset + 4, element);
+                    offset += 4 + element.length;
+                }
+            }
+        }
+    }
+
+    private static void put(@NonNull ByteBuffer buffer, int offset, @NonNull byte[] bytes) {
+        final ByteBuffer destination = buffer.duplicate();
+        destination.position(offset);
+        destination.put(bytes);
+    }
+
+    /**
+     * A record encoded for appending, before it is written to the file.
+     */
+    private static final class PendingRecord {
+        @NonNull final String key;
+        @NonNull final byte[] keyBytes;
+        @NonNull final Object value;
+        @NonNull final Object encodedValue;
+        final byte type;
+        final int length;
+
+        PendingRecord(@NonNull String key, @NonNull Object value) {
+            this.key = key;
+            this.keyBytes = key.getBytes(UTF_8);
+            this.value = value;
+            this.type = typeOf(value);
+            this.encodedValue = encode(type, value);
+            this.length = 1 + 4 + keyBytes.length + encodedLength(type, encodedValue);
+        }
+    }
+
+    /**
+     * The location of a live record in the file.
+     */
+    private static final class Record {
+        final int offset;
+        final int length;
+        final int valueOffset;
+        final byte type;
+
+        Record(int offset, int length, int valueOffset, byte type) {
+            this.offset = offset;
+            this.length = length;
+            this.valueOffset = valueOffset;
+            this.type = type;
+        }
+    }
+
+    /**
+     * The state read from a file when it is opened.
+     */
+    private static final class Contents {
+        @NonNull final MappedByteBuffer buffer;
+        @NonNull final Map<String, Record> records = new HashMap<>();
+        @NonNull PersistentPreferenceMap values = PersistentPreferenceMap.EMPTY;
+        int end;
+        int deadBytes;
+
+        private Contents(@NonNull MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @NonNull
+        static Contents read(@NonNull File file, @NonNull RandomAccessFile randomAccessFile) throws IOException {
+            final long length = randomAccessFile.length();
+            final FileChannel channel = randomAccessFile.getChannel();
+            if (length == 0) {
+                final Contents contents =
+                        new Contents(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(HEADER_SIZE)));
+                writeHeader(contents.buffer, HEADER_SIZE);
+                contents.end = HEADER_SIZE;
+                return contents;
+            }
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a preference file");
+            }
+
+            final Contents contents = new Contents(channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+            final MappedByteBuffer buffer = contents.buffer;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a preference file");
+            }
+            contents.end = buffer.getInt(END_OFFSET);
+            if (contents.end < HEADER_SIZE || contents.end > length) {
+                throw new IOException(file + " is corrupt");
+            }
+
+            try {
+                int offset = HEADER_SIZE;
+                while (offset < contents.end) {
+                    offset = contents.readRecord(offset);
+                }
+                if (offset != contents.end) {
+                    throw new IOException(file + " is corrupt");
+                }
+            } catch (RuntimeException e) {
+                // Lengths read from a corrupt file may point anywhere:
+                throw new IOException(file + " is corrupt", e);
+            }
+            return contents;
+        }
+
+        /**
+         * @return the offset of the next record.
+         */
+        private int readRecord(int offset) throws IOException {
+            final byte typeByte = buffer.get(offset);
+            final byte type = (byte) (typeByte & ~DEAD);
+            final String key = readString(offset + 1);
+            final int valueOffset = offset + 5 + buffer.getInt(offset + 1);
+
+            final Object value;
+            final int valueLength;
+            switch (type) {
+                case INT:
+                    value = buffer.getInt(valueOffset);
+                    valueLength = 4;
+                    break;
+                case LONG:
+                    value = buffer.getLong(valueOffset);
+                    valueLength = 8;
+                    break;
+                case FLOAT:
+                    value = Float.intBitsToFloat(buffer.getInt(valueOffset));
+                    valueLength = 4;
+                    break;
+                case BOOLEAN:
+                    value = buffer.get(valueOffset) != 0;
+                    valueLength = 1;
+                    break;
+                case STRING:
+                    value = readString(valueOffset);
+                    valueLength = 4 + buffer.getInt(valueOffset);
+                    break;
+                case STRING_SET:
+                    final int size = buffer.getInt(valueOffset);
+                    // Each element takes at least 4 bytes:
+                    checkLength(valueOffset + 4, size * 4L);
+                    final Set<String> set = new HashSet<>(size * 4 / 3 + 1);
+                    int elementOffset = valueOffset + 4;
+                    for (int i = 0; i < size; i++) {
+                        final String element = readString(elementOffset);
+                        set.add(element);
+                        elementOffset += 4 + (element == null ? 0 : buffer.getInt(elementOffset));
+                    }
+                    value = copyStringSet(key, set);
+                    valueLength = elementOffset - valueOffset;
+                    break;
+                default:
+                    throw new IOException("Unknown preference type " + type);
+            }
+
+            final int length = valueOffset + valueLength - offset;
+            if (typeByte == type) {
+                final Record replaced = records.put(key, new Record(offset, length, valueOffset, type));
+                if (replaced != null) {
+                    // A crash left the replaced record unmarked:
+                    deadBytes += replaced.length;
+                }
+                values = values.with(key, value);
+            } else {
+                deadBytes += length;
+            }
+            return offset + length;
+        }
+
+        /**
+         * Check that a length read from the file does not run past the end of the records, before allocating for it.
+         */
+        private void checkLength(int offset, long length) throws IOException {
+            if (length < 0 || offset + length > end) {
+                throw new IOException("Invalid length " + length + " at offset " + offset);
+            }
+        }
+
+        /**
+         * @return the string whose length is at {@code offset} and whose bytes follow it, or null if the length is -1.
+         */
+        @Nullable
+        private String readString(int offset) throws IOException {
+            final int length = buffer.getInt(offset);
+            if (length == -1) {
+                return null;
+            }
+            checkLength(offset + 4, length);
+            final byte[] bytes = new byte[length];
+            final ByteBuffer source = buffer.duplicate();
+            source.position(offset + 4);
+            source.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable, persistent map of preferences sorted by key. {@link #with} and {@link #without} return a new map in
+ * expected O(log n) time, sharing all untouched structure with the original, so a snapshot of the preferences can be
+ * kept up to date one change at a time without ever copying the whole store.
+ * <p>
+ * Backed by a treap whose priorities are derived from the key hashes.
+ */
+final class PersistentPreferenceMap extends AbstractMap<String, Object> {
+
+    static final PersistentPreferenceMap EMPTY = new PersistentPreferenceMap(null);
+
+    @Nullable private final Node root;
+
+    private PersistentPreferenceMap(@Nullable Node root) {
+        this.root = root;
+    }
+
+    @NonNull
+    static PersistentPreferenceMap copyOf(@NonNull Map<String, ?> map) {
+        if (map instanceof PersistentPreferenceMap) {
+            return (PersistentPreferenceMap) map;
+        }
+
+        Node root = null;
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                root = insert(root, entry.getKey(), entry.getValue());
+            }
+        }
+        return new PersistentPreferenceMap(root);
+    }
+
+    /**
+     * @return a map with {@code key} associated with {@code value}, or this map if it already holds that mapping.
+     */
+    @NonNull
+    PersistentPreferenceMap with(@NonNull String key, @NonNull Object value) {
+        final Node newRoot = insert(root, key, value);
+        return newRoot == root ? this : new PersistentPreferenceMap(newRoot);
+    }
+
+    /**
+     * @return a map without {@code key}, or this map if it does not contain {@code key}.
+     */
+    @NonNull
+    PersistentPreferenceMap without(@NonNull String key) {
+        final Node newRoot = delete(root, key);
+        return newRoot == root ? this : new PersistentPreferenceMap(newRoot);
+    }
+
+    /**
+     * @return a map of only the keys that start with {@code prefix}. Keys are sorted, so the matching keys form one
+     * range, which is cut out in expected O(log n) time without visiting the keys inside it.
+     */
+    @NonNull
+    PersistentPreferenceMap withPrefix(@NonNull String prefix) {
+        final Node newRoot = dropAfterPrefix(dropBefore(root, prefix), prefix);
+        return newRoot == root ? this : new PersistentPreferenceMap(newRoot);
+    }
+
+    @Override
+    public Object get(Object key) {
+        final Node node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @NonNull
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @NonNull
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator(root);
+            }
+
+            @Override
+            public int size() {
+                return PersistentPreferenceMap.this.size();
+            }
+        };
+    }
+
+    @Nullable
+    private Node find(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        final String stringKey = (String) key;
+        Node node = root;
+        while (node != null) {
+            final int comparison = stringKey.compareTo(node.key);
+            if (comparison == 0) {
+                return node;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    @NonNull
+    private static Node insert(@Nullable Node node, @NonNull String key, @NonNull Object value) {
+        if (node == null) {
+            return new Node(key, value, priority(key), null, null);
+        }
+
+        final int comparison = key.compareTo(node.key);
+        if (comparison == 0) {
+            return value.equals(node.value) ? node : new Node(key, value, node.priority, node.left, node.right);
+        } else if (comparison < 0) {
+            final Node left = insert(node.left, key, value);
+            if (left == node.left) {
+                return node;
+            } else if (left.priority > node.priority) {
+                // Rotate right:
+                return new Node(left.key, left.value, left.priority, left.left,
+                        node.withChildren(left.right, node.right));
+            } else {
+                return node.withChildren(left, node.right);
+            }
+        } else {
+            final Node right = insert(node.right, key, value);
+            if (right == node.right) {
+                return node;
+            } else if (right.priority > node.priority) {
+                // Rotate left:
+                return new Node(right.key, right.value, right.priority, node.withChildren(node.left, right.left),
+                        right.right);
+            } else {
+                return node.withChildren(node.left, right);
+            }
+        }
+    }
+
+    @Nullable
+    private static Node delete(@Nullable Node node, @NonNull String key) {
+        if (node == null) {
+            return null;
+        }
+
+        final int comparison = key.compareTo(node.key);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        } else if (comparison < 0) {
+            final Node left = delete(node.left, key);
+            return left == node.left ? node : node.withChildren(left, node.right);
+        } else {
+            final Node right = delete(node.right, key);
+            return right == node.right ? node : node.withChildren(node.left, right);
+        }
+    }
+
+    /**
+     * Merge two treaps where every key in {@code left} is less than every key in {@code right}.
+     */
+    @Nullable
+    private static Node merge(@Nullable Node left, @Nullable Node right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.priority > right.priority) {
+            return left.withChildren(left.left, merge(left.right, right));
+        } else {
+            return right.withChildren(merge(left, right.left), right.right);
+        }
+    }
+
+    /**
+     * @return {@code node} without the keys less than {@code prefix}.
+     */
+    @Nullable
+    private static Node dropBefore(@Nullable Node node, @NonNull String prefix) {
+        if (node == null) {
+            return null;
+        } else if (node.key.compareTo(prefix) < 0) {
+            // The node and its left subtree are all less than the prefix:
+            return dropBefore(node.right, prefix);
+        } else {
+            final Node left = dropBefore(node.left, prefix);
+            return left == node.left ? node : node.withChildren(left, node.right);
+        }
+    }
+
+    /**
+     * @return {@code node}, in which no key is less than {@code prefix}, without the keys that do not start with
+     * {@code prefix}.
+     */
+    @Nullable
+    private static Node dropAfterPrefix(@Nullable Node node, @NonNull String prefix) {
+        if (node == null) {
+            return null;
+        } else if (!node.key.startsWith(prefix)) {
+            // The node and its right subtree are all greater than every key with the prefix:
+            return dropAfterPrefix(node.left, prefix);
+        } else {
+            final Node right = dropAfterPrefix(node.right, prefix);
+            return right == node.right ? node : node.withChildren(node.left, right);
+        }
+    }
+
+    private static int size(@Nullable Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int priority(@NonNull String key) {
+        final int hash = key.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Node implements Entry<String, Object> {
+
+        @NonNull final String key;
+        @NonNull final Object value;
+        final int priority;
+        @Nullable final Node left;
+        @Nullable final Node right;
+        final int size;
+
+        Node(@NonNull String key, @NonNull Object value, int priority, @Nullable Node left, @Nullable Node right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + 1 + size(right);
+        }
+
+        @NonNull
+        Node withChildren(@Nullable Node left, @Nullable Node right) {
+            return new Node(key, value, priority, left, right);
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            final Entry<?, ?> that = (Entry<?, ?>) other;
+            return key.equals(that.getKey()) && value.equals(that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private final Deque<Node> stack = new ArrayDeque<>();
+
+        EntryIterator(@Nullable Node root) {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            final Node next = stack.pop();
+            pushLeft(next.right);
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void pushLeft(@Nullable Node node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+    }
+}
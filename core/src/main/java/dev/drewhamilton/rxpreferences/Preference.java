@@ -0,0 +1,117 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+
+/**
+ * A handle to one preference of an {@link RxPreferences} instance, created with methods such as {@link
+ * RxPreferences#intPreference(String, int)}. The sources behind {@link #getOnce()}, {@link #getStream()} and
+ * {@link #remove()} are built once when the handle is created, so a handle kept and reused for the same preference does
+ * not allocate new lambdas or listeners on each call.
+ * <p>
+ * {@link #getStream()} is shared with every other stream of the same preference and default value, including streams
+ * from the matching {@link RxPreferences} method such as {@link RxPreferences#getIntStream(String, int)}.
+ *
+ * @param <T> the type of the preference value.
+ */
+public final class Preference<T> {
+
+    @NonNull private final RxPreferences rxPreferences;
+    @NonNull private final PreferenceKey<T> key;
+    @NonNull private final Single<T> once;
+    @NonNull private final SharedStreams sharedStreams;
+    @NonNull private final SharedStreams.StreamKey streamKey;
+    @NonNull private final Observable<T> streamSource;
+    @NonNull private final PutPreference<T> putPreference;
+    @NonNull private final Completable remove;
+
+    Preference(@NonNull RxPreferences rxPreferences, @NonNull PreferenceKey<T> key, @NonNull Single<T> once,
+            @NonNull SharedStreams sharedStreams, @NonNull Object streamType, @NonNull Observable<T> streamSource,
+            @NonNull PutPreference<T> putPreference) {
+        this.rxPreferences = rxPreferences;
+        this.key = key;
+        this.once = once;
+        this.sharedStreams = sharedStreams;
+        this.streamKey = new SharedStreams.StreamKey(key.getName(), streamType, key.getDefaultValue());
+        this.streamSource = streamSource;
+        this.putPreference = putPreference;
+        this.remove = Completable.defer(() -> rxPreferences.edit().remove(key.getName()).commit());
+    }
+
+    /**
+     * @return the key of this preference, which can also be used to read it with {@link
+     * RxPreferences#getManyOnce(PreferenceKey[])}.
+     */
+    @NonNull
+    public PreferenceKey<T> getKey() {
+        return key;
+    }
+
+    /**
+     * Retrieve the value of this preference.
+     *
+     * @return the preference value if it exists, otherwise the default value.
+     * @throws ClassCastException if there is a preference with this name that is not of this preference's type.
+     */
+    @NonNull
+    public Single<T> getOnce() {
+        return once;
+    }
+
+    /**
+     * Observe the value of this preference.
+     *
+     * @return An {@link Observable} for the value of this preference. Emits the current value upon subscription, and
+     * emits the new value each time it is updated. If the value is later removed or cleared, the default value is
+     * emitted.
+     * @throws ClassCastException if there is a preference with this name that is not of this preference's type.
+     */
+    @NonNull
+    public Observable<T> getStream() {
+        return sharedStreams.get(streamKey, streamSource);
+    }
+
+    /**
+     * Observe the value of this preference with backpressure. See {@link #getStream()}.
+     *
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return A {@link Flowable} for the value of this preference, subject to {@code backpressure}.
+     * @throws ClassCastException if there is a preference with this name that is not of this preference's type.
+     */
+    @NonNull
+    public Flowable<T> getFlowable(@NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getStream());
+    }
+
+    /**
+     * Set the value of this preference and commit it.
+     *
+     * @param value The new value for the preference.
+     * @return a {@link Completable} that commits the change upon subscription. See {@link
+     * RxPreferences.Editor#commit()}.
+     */
+    @NonNull
+    public Completable put(@NonNull T value) {
+        return putPreference.invoke(rxPreferences.edit(), key.getName(), value).commit();
+    }
+
+    /**
+     * Remove this preference and commit the removal.
+     *
+     * @return a {@link Completable} that commits the removal upon subscription. See {@link
+     * RxPreferences.Editor#commit()}.
+     */
+    @NonNull
+    public Completable remove() {
+        return remove;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "Preference(name=" + key.getName() + ", defaultValue=" + key.getDefaultValue() + ")";
+    }
+}
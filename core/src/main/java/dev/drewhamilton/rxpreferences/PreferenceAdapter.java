@@ -0,0 +1,32 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+
+/**
+ * Converts values of a type that {@link PreferenceStore} does not support to and from strings, so they can be stored
+ * with {@link RxPreferences.Editor#putObject} and read with {@link RxPreferences#getObjectOnce} and
+ * {@link RxPreferences#getObjectStream}. For example, an adapter may encode objects as JSON.
+ * <p>
+ * Decoded values are cached and shared between streams and subscribers, so decoded values must not be mutated, and
+ * {@link #decode} must always return an equal value for an equal string.
+ *
+ * @param <T> the type of value to store.
+ */
+public interface PreferenceAdapter<T> {
+
+    /**
+     * @param value The value to store.
+     * @return the string to store for {@code value}.
+     */
+    @NonNull
+    String encode(@NonNull T value);
+
+    /**
+     * @param encoded A string returned by {@link #encode}.
+     * @return the value that {@code encoded} represents.
+     * @throws RuntimeException if {@code encoded} cannot be decoded. The exception is delivered to the subscriber
+     * reading the value.
+     */
+    @NonNull
+    T decode(@NonNull String encoded);
+}
@@ -0,0 +1,74 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.core.BackpressureOverflowStrategy;
+import io.reactivex.rxjava3.core.BackpressureStrategy;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Observable;
+
+/**
+ * How a preference {@link Flowable}, such as {@link RxPreferences#getIntFlowable}, handles changes that arrive faster
+ * than its subscriber requests them. Every strategy keeps memory bounded, so a slow subscriber cannot be flooded by a
+ * fast writer. Backpressure applies to each subscriber separately: a slow subscriber never delays the others.
+ */
+public final class PreferenceBackpressure {
+
+    /**
+     * Keep only the latest value while the subscriber is busy, and deliver it on the next request. Suits state that
+     * only matters in its latest form, such as the position of a seek bar.
+     */
+    @NonNull public static final PreferenceBackpressure LATEST = new PreferenceBackpressure(0);
+
+    /**
+     * Drop every value that arrives while the subscriber is busy. Unlike {@link #LATEST}, the subscriber may never see
+     * the final value of a burst of changes.
+     */
+    @NonNull public static final PreferenceBackpressure DROP = new PreferenceBackpressure(-1);
+
+    // 0 for LATEST, -1 for DROP, and otherwise the capacity of the buffer:
+    private final int capacity;
+
+    private PreferenceBackpressure(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Buffer up to {@code capacity} values while the subscriber is busy. When the buffer is full, the oldest buffered
+     * value is dropped to make room for the newest one.
+     *
+     * @param capacity The maximum number of values to buffer.
+     * @return a bounded buffer strategy.
+     * @throws IllegalArgumentException if {@code capacity} is less than 1.
+     */
+    @NonNull
+    public static PreferenceBackpressure buffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        return new PreferenceBackpressure(capacity);
+    }
+
+    @NonNull
+    <T> Flowable<T> apply(@NonNull Observable<T> stream) {
+        final Flowable<T> flowable = stream.toFlowable(BackpressureStrategy.MISSING);
+        if (capacity == 0) {
+            return flowable.onBackpressureLatest();
+        } else if (capacity < 0) {
+            return flowable.onBackpressureDrop();
+        } else {
+            return flowable.onBackpressureBuffer(capacity, null, BackpressureOverflowStrategy.DROP_OLDEST);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        if (capacity == 0) {
+            return "PreferenceBackpressure.LATEST";
+        } else if (capacity < 0) {
+            return "PreferenceBackpressure.DROP";
+        } else {
+            return "PreferenceBackpressure.buffer(" + capacity + ")";
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+
+/**
+ * A single change to the preferences, as emitted by {@link RxPreferences#getAllChangesStream()}.
+ */
+public final class PreferenceChange {
+
+    @Nullable private final String key;
+    @Nullable private final Object value;
+
+    PreferenceChange(@Nullable String key, @Nullable Object value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * @return the name of the preference that changed, or null if all preferences were cleared.
+     */
+    @Nullable
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the new value of the preference, or null if the preference was removed.
+     */
+    @Nullable
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return true if the preference was removed or if all preferences were cleared.
+     */
+    public boolean isRemoval() {
+        return value == null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PreferenceChange)) {
+            return false;
+        }
+        final PreferenceChange that = (PreferenceChange) other;
+        return (key == null ? that.key == null : key.equals(that.key))
+                && (value == null ? that.value == null : value.equals(that.value));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (key == null ? 0 : key.hashCode()) + (value == null ? 0 : value.hashCode());
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PreferenceChange(key=" + key + ", value=" + value + ")";
+    }
+}
@@ -0,0 +1,132 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import java.util.Set;
+
+/**
+ * The name, type and default value of a preference, for reading several preferences together with
+ * {@link RxPreferences#getManyOnce(PreferenceKey[])} and {@link RxPreferences#getManyStream(PreferenceKey[])}.
+ * <p>
+ * Two keys are equal if they have the same name, type and default value.
+ *
+ * @param <T> the type of the preference value.
+ */
+public final class PreferenceKey<T> {
+
+    @NonNull private final String name;
+    @NonNull private final T defaultValue;
+    @NonNull private final GetPreference<T> getPreference;
+
+    /**
+     * @param name The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a key for a string preference.
+     */
+    @NonNull
+    public static PreferenceKey<String> ofString(@NonNull String name, @NonNull String defaultValue) {
+        return new PreferenceKey<>(name, defaultValue, GetPreference.STRING);
+    }
+
+    /**
+     * @param name The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a key for a string set preference.
+     */
+    @NonNull
+    public static PreferenceKey<Set<String>> ofStringSet(@NonNull String name, @NonNull Set<String> defaultValue) {
+        return new PreferenceKey<>(name, defaultValue, GetPreference.STRING_SET);
+    }
+
+    /**
+     * @param name The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a key for an int preference.
+     */
+    @NonNull
+    public static PreferenceKey<Integer> ofInt(@NonNull String name, int defaultValue) {
+        return new PreferenceKey<>(name, BoxedValues.valueOf(defaultValue), GetPreference.INT);
+    }
+
+    /**
+     * @param name The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a key for a long preference.
+     */
+    @NonNull
+    public static PreferenceKey<Long> ofLong(@NonNull String name, long defaultValue) {
+        return new PreferenceKey<>(name, BoxedValues.valueOf(defaultValue), GetPreference.LONG);
+    }
+
+    /**
+     * @param name The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a key for a float preference.
+     */
+    @NonNull
+    public static PreferenceKey<Float> ofFloat(@NonNull String name, float defaultValue) {
+        return new PreferenceKey<>(name, BoxedValues.valueOf(defaultValue), GetPreference.FLOAT);
+    }
+
+    /**
+     * @param name The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a key for a boolean preference.
+     */
+    @NonNull
+    public static PreferenceKey<Boolean> ofBoolean(@NonNull String name, boolean defaultValue) {
+        return new PreferenceKey<>(name, BoxedValues.valueOf(defaultValue), GetPreference.BOOLEAN);
+    }
+
+    private PreferenceKey(@NonNull String name, @NonNull T defaultValue, @NonNull GetPreference<T> getPreference) {
+        this.name = name;
+        this.defaultValue = defaultValue;
+        this.getPreference = getPreference;
+    }
+
+    /**
+     * @return the name of the preference.
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value read if the preference does not exist.
+     */
+    @NonNull
+    public T getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * @throws ClassCastException if there is a preference with this name that is not of this key's type.
+     */
+    @NonNull
+    T read(@NonNull PreferenceStore preferences) {
+        return getPreference.invoke(preferences, name, defaultValue);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PreferenceKey)) {
+            return false;
+        }
+        final PreferenceKey<?> that = (PreferenceKey<?>) other;
+        return name.equals(that.name) && getPreference == that.getPreference && defaultValue.equals(that.defaultValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + defaultValue.hashCode();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PreferenceKey(name=" + name + ", defaultValue=" + defaultValue + ")";
+    }
+}
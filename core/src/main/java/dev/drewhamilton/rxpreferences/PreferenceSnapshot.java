@@ -0,0 +1,87 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import java.util.Arrays;
+
+/**
+ * The values of several preferences read together, as emitted by {@link RxPreferences#getManyOnce(PreferenceKey[])}
+ * and {@link RxPreferences#getManyStream(PreferenceKey[])}.
+ */
+public final class PreferenceSnapshot {
+
+    @NonNull private final PreferenceKey<?>[] keys;
+    @NonNull private final Object[] values;
+
+    private PreferenceSnapshot(@NonNull PreferenceKey<?>[] keys, @NonNull Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Read every key in one pass. If {@code preferences} keeps an immutable snapshot of its values, all keys are read
+     * from the same snapshot, so no commit can land between two reads.
+     *
+     * @throws ClassCastException if there is a preference with the name of one of {@code keys} that is not of that
+     * key's type.
+     */
+    @NonNull
+    static PreferenceSnapshot read(@NonNull PreferenceStore preferences, @NonNull PreferenceKey<?>[] keys) {
+        final PreferenceStore source = preferences instanceof SnapshotPreferenceStore
+                ? ((SnapshotPreferenceStore) preferences).snapshot()
+                : preferences;
+        final Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = keys[i].read(source);
+        }
+        return new PreferenceSnapshot(keys, values);
+    }
+
+    /**
+     * @param key One of the keys this snapshot was read with.
+     * @return the value of the preference with the given key when this snapshot was read, or the key's default value
+     * if the preference did not exist.
+     * @throws IllegalArgumentException if this snapshot was not read with the given key.
+     */
+    @NonNull
+    public <T> T get(@NonNull PreferenceKey<T> key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                // The value at i was read with an equal key, which has the same type:
+                @SuppressWarnings("unchecked")
+                final T value = (T) values[i];
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Snapshot was not read with " + key);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PreferenceSnapshot)) {
+            return false;
+        }
+        final PreferenceSnapshot that = (PreferenceSnapshot) other;
+        return Arrays.equals(keys, that.keys) && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keys) + Arrays.hashCode(values);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("PreferenceSnapshot(");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(keys[i].getName()).append('=').append(values[i]);
+        }
+        return builder.append(')').toString();
+    }
+}
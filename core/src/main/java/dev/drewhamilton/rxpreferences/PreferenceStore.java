@@ -0,0 +1,141 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A key-value store of typed preferences that {@link RxPreferences} can wrap. This mirrors the contract of Android's
+ * {@code SharedPreferences} without depending on Android, so {@link RxPreferences} can also run on a plain JVM, such
+ * as on a server or in a microbenchmark.
+ * <p>
+ * Implementations must be safe to use from multiple threads.
+ */
+public interface PreferenceStore {
+
+    /**
+     * @return a map containing every preference in the store. The returned map must not be modified.
+     */
+    @NonNull
+    Map<String, ?> getAll();
+
+    /**
+     * @return the string preference named {@code key}, or {@code defaultValue} if it does not exist.
+     * @throws ClassCastException if there is a preference with this name that is not a string.
+     */
+    @Nullable
+    String getString(@NonNull String key, @Nullable String defaultValue);
+
+    /**
+     * @return the string set preference named {@code key}, or {@code defaultValues} if it does not exist. The returned
+     * set must not be modified.
+     * @throws ClassCastException if there is a preference with this name that is not a string set.
+     */
+    @Nullable
+    Set<String> getStringSet(@NonNull String key, @Nullable Set<String> defaultValues);
+
+    /**
+     * @return the int preference named {@code key}, or {@code defaultValue} if it does not exist.
+     * @throws ClassCastException if there is a preference with this name that is not an int.
+     */
+    int getInt(@NonNull String key, int defaultValue);
+
+    /**
+     * @return the long preference named {@code key}, or {@code defaultValue} if it does not exist.
+     * @throws ClassCastException if there is a preference with this name that is not a long.
+     */
+    long getLong(@NonNull String key, long defaultValue);
+
+    /**
+     * @return the float preference named {@code key}, or {@code defaultValue} if it does not exist.
+     * @throws ClassCastException if there is a preference with this name that is not a float.
+     */
+    float getFloat(@NonNull String key, float defaultValue);
+
+    /**
+     * @return the boolean preference named {@code key}, or {@code defaultValue} if it does not exist.
+     * @throws ClassCastException if there is a preference with this name that is not a boolean.
+     */
+    boolean getBoolean(@NonNull String key, boolean defaultValue);
+
+    /**
+     * @return true if the store contains a preference named {@code key}.
+     */
+    boolean contains(@NonNull String key);
+
+    /**
+     * @return a new {@link Editor} for making a batch of changes that are written atomically.
+     */
+    @NonNull
+    Editor edit();
+
+    /**
+     * Register a listener to be called when a preference changes. Registering the same listener more than once has no
+     * additional effect.
+     */
+    void registerListener(@NonNull Listener listener);
+
+    /**
+     * Unregister a listener previously passed to {@link #registerListener}.
+     */
+    void unregisterListener(@NonNull Listener listener);
+
+    /**
+     * A batch of changes to a {@link PreferenceStore}. Changes are not visible until {@link #commit()} or
+     * {@link #apply()} is called. Within a batch, the last change to each key wins, and {@link #clear()} applies
+     * before all other changes.
+     */
+    interface Editor {
+
+        @NonNull
+        Editor putString(@NonNull String key, @Nullable String value);
+
+        @NonNull
+        Editor putStringSet(@NonNull String key, @Nullable Set<String> values);
+
+        @NonNull
+        Editor putInt(@NonNull String key, int value);
+
+        @NonNull
+        Editor putLong(@NonNull String key, long value);
+
+        @NonNull
+        Editor putFloat(@NonNull String key, float value);
+
+        @NonNull
+        Editor putBoolean(@NonNull String key, boolean value);
+
+        @NonNull
+        Editor remove(@NonNull String key);
+
+        @NonNull
+        Editor clear();
+
+        /**
+         * Atomically write the changes in this batch, waiting until they are persisted.
+         *
+         * @return true if the changes were written successfully.
+         */
+        boolean commit();
+
+        /**
+         * Atomically write the changes in this batch to memory, and persist them in the background.
+         */
+        void apply();
+    }
+
+    /**
+     * Called when preferences in a {@link PreferenceStore} change.
+     */
+    interface Listener {
+
+        /**
+         * Called after a preference is added, changed or removed.
+         *
+         * @param store the {@link PreferenceStore} that changed.
+         * @param key the name of the preference that changed, or null if all preferences were cleared.
+         */
+        void onPreferenceChanged(@NonNull PreferenceStore store, @Nullable String key);
+    }
+}
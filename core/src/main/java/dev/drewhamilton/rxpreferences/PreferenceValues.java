@@ -0,0 +1,96 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a single preference of unknown type without copying the whole store through
+ * {@link PreferenceStore#getAll()}, or the preferences under a key prefix.
+ */
+final class PreferenceValues {
+
+    // One value of each preference type, to read a preference whose type is not known:
+    private static final Object[] SAMPLE_VALUES = { "", Collections.emptySet(), 0, 0L, 0f, false };
+
+    private PreferenceValues() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Read the current value of the preference named {@code key} with the getter for the type of
+     * {@code previousValue}, a value previously read from the store, if it is provided. Only a preference whose type
+     * is not known, or has changed, is read by trying each type, since {@link PreferenceStore} only reports a type
+     * mismatch by throwing and {@link PreferenceStore#getAll()} may copy the whole store.
+     *
+     * @return the current value, or null if the preference does not exist.
+     */
+    @Nullable
+    static Object read(@NonNull PreferenceStore preferences, @NonNull String key, @Nullable Object previousValue) {
+        if (previousValue != null) {
+            try {
+                return readLike(preferences, key, previousValue);
+            } catch (ClassCastException typeChanged) {
+                // Fall through to trying each type
+            }
+        }
+
+        for (Object sampleValue : SAMPLE_VALUES) {
+            try {
+                return readLike(preferences, key, sampleValue);
+            } catch (ClassCastException wrongType) {
+                // Try the next type
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read every preference whose name starts with {@code prefix}. If the store's {@link PreferenceStore#getAll()}
+     * returns a {@link PersistentPreferenceMap} without copying, only the matching range of keys is visited.
+     *
+     * @return the matching preferences.
+     */
+    @NonNull
+    static PersistentPreferenceMap readPrefix(@NonNull PreferenceStore preferences, @NonNull String prefix) {
+        final Map<String, ?> all = preferences.getAll();
+        if (all instanceof PersistentPreferenceMap) {
+            return ((PersistentPreferenceMap) all).withPrefix(prefix);
+        }
+
+        PersistentPreferenceMap matching = PersistentPreferenceMap.EMPTY;
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            if (entry.getValue() != null && entry.getKey().startsWith(prefix)) {
+                matching = matching.with(entry.getKey(), entry.getValue());
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * @throws ClassCastException if the preference exists but is not of the same type as {@code sampleValue}.
+     */
+    @Nullable
+    private static Object readLike(@NonNull PreferenceStore preferences, @NonNull String key,
+            @NonNull Object sampleValue) {
+        if (sampleValue instanceof String) {
+            return preferences.getString(key, null);
+        } else if (sampleValue instanceof Set) {
+            return preferences.getStringSet(key, null);
+        } else if (!preferences.contains(key)) {
+            return null;
+        } else if (sampleValue instanceof Integer) {
+            return preferences.getInt(key, 0);
+        } else if (sampleValue instanceof Long) {
+            return preferences.getLong(key, 0L);
+        } else if (sampleValue instanceof Float) {
+            return preferences.getFloat(key, 0f);
+        } else if (sampleValue instanceof Boolean) {
+            return preferences.getBoolean(key, false);
+        } else {
+            throw new ClassCastException("Unsupported preference type: " + sampleValue.getClass().getName());
+        }
+    }
+}
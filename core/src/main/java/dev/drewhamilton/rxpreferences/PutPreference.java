@@ -0,0 +1,17 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import java.util.Set;
+
+interface PutPreference<T> {
+
+    PutPreference<String> STRING = RxPreferences.Editor::putString;
+    PutPreference<Set<String>> STRING_SET = RxPreferences.Editor::putStringSet;
+    PutPreference<Integer> INT = RxPreferences.Editor::putInt;
+    PutPreference<Long> LONG = RxPreferences.Editor::putLong;
+    PutPreference<Float> FLOAT = RxPreferences.Editor::putFloat;
+    PutPreference<Boolean> BOOLEAN = RxPreferences.Editor::putBoolean;
+
+    @NonNull
+    RxPreferences.Editor invoke(@NonNull RxPreferences.Editor editor, @NonNull String key, @NonNull T value);
+}
@@ -1,24 +1,23 @@
 package dev.drewhamilton.rxpreferences;
 
-import android.content.SharedPreferences;
 import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
 import io.reactivex.rxjava3.core.ObservableEmitter;
 import java.util.Map;
 
 final class RxAllPreferencesListener extends RxPreferenceListener<Map<String, ?>> {
 
-    RxAllPreferencesListener(@NonNull ObservableEmitter<Map<String, ?>> emitter) {
-        super("", emitter);
+    RxAllPreferencesListener(@NonNull ObservableEmitter<Map<String, ?>> emitter, boolean distinctUntilChanged) {
+        super("", emitter, distinctUntilChanged);
     }
 
     @Override
-    Map<String, ?> getCurrentValue(SharedPreferences preferences) {
+    Map<String, ?> getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
         return preferences.getAll();
     }
 
     @Override
-    boolean shouldEmit(String key) {
-        // Emit when any key changes:
+    boolean observesAllKeys() {
         return true;
     }
 }
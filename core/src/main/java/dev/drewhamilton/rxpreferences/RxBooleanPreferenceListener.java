@@ -0,0 +1,45 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+
+/**
+ * Reads and compares the preference as a primitive boolean, so an unchanged value is skipped without boxing and a
+ * changed value is boxed through {@link BoxedValues}.
+ */
+final class RxBooleanPreferenceListener extends RxPreferenceListener<Boolean> {
+
+    private final boolean defaultValue;
+
+    // Guarded by this:
+    private boolean lastValue;
+    @Nullable private Boolean lastBoxedValue;
+
+    RxBooleanPreferenceListener(@NonNull String key, @NonNull ObservableEmitter<Boolean> emitter, boolean defaultValue,
+            boolean distinctUntilChanged) {
+        super(key, emitter, distinctUntilChanged);
+        this.defaultValue = defaultValue;
+    }
+
+    @Override
+    boolean readValue(@NonNull PreferenceStore preferences, @Nullable String changedKey) {
+        final boolean value = preferences.getBoolean(key, defaultValue);
+        if (lastBoxedValue == null || value != lastValue) {
+            lastValue = value;
+            lastBoxedValue = BoxedValues.valueOf(value);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    Boolean lastReadValue() {
+        return lastBoxedValue;
+    }
+
+    @Override
+    Boolean getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
+        return BoxedValues.valueOf(preferences.getBoolean(key, defaultValue));
+    }
+}
@@ -0,0 +1,45 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+
+/**
+ * Reads and compares the preference as a primitive float, so an unchanged value is skipped without boxing and a changed
+ * value is boxed through {@link BoxedValues}.
+ */
+final class RxFloatPreferenceListener extends RxPreferenceListener<Float> {
+
+    private final float defaultValue;
+
+    // Guarded by this:
+    private float lastValue;
+    @Nullable private Float lastBoxedValue;
+
+    RxFloatPreferenceListener(@NonNull String key, @NonNull ObservableEmitter<Float> emitter, float defaultValue,
+            boolean distinctUntilChanged) {
+        super(key, emitter, distinctUntilChanged);
+        this.defaultValue = defaultValue;
+    }
+
+    @Override
+    boolean readValue(@NonNull PreferenceStore preferences, @Nullable String changedKey) {
+        final float value = preferences.getFloat(key, defaultValue);
+        if (lastBoxedValue == null || Float.compare(value, lastValue) != 0) {
+            lastValue = value;
+            lastBoxedValue = BoxedValues.valueOf(value);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    Float lastReadValue() {
+        return lastBoxedValue;
+    }
+
+    @Override
+    Float getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
+        return BoxedValues.valueOf(preferences.getFloat(key, defaultValue));
+    }
+}
@@ -0,0 +1,45 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+
+/**
+ * Reads and compares the preference as a primitive int, so an unchanged value is skipped without boxing and a changed
+ * value is boxed through {@link BoxedValues}.
+ */
+final class RxIntPreferenceListener extends RxPreferenceListener<Integer> {
+
+    private final int defaultValue;
+
+    // Guarded by this:
+    private int lastValue;
+    @Nullable private Integer lastBoxedValue;
+
+    RxIntPreferenceListener(@NonNull String key, @NonNull ObservableEmitter<Integer> emitter, int defaultValue,
+            boolean distinctUntilChanged) {
+        super(key, emitter, distinctUntilChanged);
+        this.defaultValue = defaultValue;
+    }
+
+    @Override
+    boolean readValue(@NonNull PreferenceStore preferences, @Nullable String changedKey) {
+        final int value = preferences.getInt(key, defaultValue);
+        if (lastBoxedValue == null || value != lastValue) {
+            lastValue = value;
+            lastBoxedValue = BoxedValues.valueOf(value);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    Integer lastReadValue() {
+        return lastBoxedValue;
+    }
+
+    @Override
+    Integer getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
+        return BoxedValues.valueOf(preferences.getInt(key, defaultValue));
+    }
+}
@@ -0,0 +1,45 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+
+/**
+ * Reads and compares the preference as a primitive long, so an unchanged value is skipped without boxing and a changed
+ * value is boxed through {@link BoxedValues}.
+ */
+final class RxLongPreferenceListener extends RxPreferenceListener<Long> {
+
+    private final long defaultValue;
+
+    // Guarded by this:
+    private long lastValue;
+    @Nullable private Long lastBoxedValue;
+
+    RxLongPreferenceListener(@NonNull String key, @NonNull ObservableEmitter<Long> emitter, long defaultValue,
+            boolean distinctUntilChanged) {
+        super(key, emitter, distinctUntilChanged);
+        this.defaultValue = defaultValue;
+    }
+
+    @Override
+    boolean readValue(@NonNull PreferenceStore preferences, @Nullable String changedKey) {
+        final long value = preferences.getLong(key, defaultValue);
+        if (lastBoxedValue == null || value != lastValue) {
+            lastValue = value;
+            lastBoxedValue = BoxedValues.valueOf(value);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    Long lastReadValue() {
+        return lastBoxedValue;
+    }
+
+    @Override
+    Long getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
+        return BoxedValues.valueOf(preferences.getLong(key, defaultValue));
+    }
+}
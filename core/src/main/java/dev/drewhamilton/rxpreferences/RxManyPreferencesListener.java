@@ -0,0 +1,40 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Emits a {@link PreferenceSnapshot} of several preferences each time any of them changes.
+ */
+final class RxManyPreferencesListener extends RxPreferenceListener<PreferenceSnapshot> {
+
+    @NonNull private final PreferenceKey<?>[] preferenceKeys;
+    @NonNull private final String[] observedKeys;
+
+    RxManyPreferencesListener(@NonNull PreferenceKey<?>[] preferenceKeys,
+            @NonNull ObservableEmitter<PreferenceSnapshot> emitter, boolean distinctUntilChanged) {
+        super(preferenceKeys[0].getName(), emitter, distinctUntilChanged);
+        this.preferenceKeys = preferenceKeys;
+
+        // Several keys may share a name, but each name is only observed once:
+        final Set<String> names = new LinkedHashSet<>();
+        for (PreferenceKey<?> preferenceKey : preferenceKeys) {
+            names.add(preferenceKey.getName());
+        }
+        this.observedKeys = names.toArray(new String[0]);
+    }
+
+    @NonNull
+    @Override
+    String[] observedKeys() {
+        return observedKeys;
+    }
+
+    @Override
+    PreferenceSnapshot getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
+        return PreferenceSnapshot.read(preferences, preferenceKeys);
+    }
+}
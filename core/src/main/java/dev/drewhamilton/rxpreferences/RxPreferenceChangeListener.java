@@ -1,7 +1,7 @@
 package dev.drewhamilton.rxpreferences;
 
-import android.content.SharedPreferences;
 import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
 import io.reactivex.rxjava3.core.ObservableEmitter;
 
 final class RxPreferenceChangeListener<T> extends RxPreferenceListener<T> {
@@ -10,14 +10,14 @@ final class RxPreferenceChangeListener<T> extends RxPreferenceListener<T> {
     private final GetPreference<T> getPreference;
 
     RxPreferenceChangeListener(@NonNull String key, @NonNull ObservableEmitter<T> emitter, @NonNull T defaultValue,
-            @NonNull GetPreference<T> getPreference) {
-        super(key, emitter);
+            @NonNull GetPreference<T> getPreference, boolean distinctUntilChanged) {
+        super(key, emitter, distinctUntilChanged);
         this.defaultValue = defaultValue;
         this.getPreference = getPreference;
     }
 
     @Override
-    T getCurrentValue(SharedPreferences preferences) {
+    T getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
         return getPreference.invoke(preferences, key, defaultValue);
     }
 }
@@ -0,0 +1,40 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import java.util.List;
+
+final class RxPreferenceChangesListener extends RxPreferenceListener<PreferenceChange> {
+
+    RxPreferenceChangesListener(@NonNull ObservableEmitter<PreferenceChange> emitter) {
+        // Each change is emitted, so there is no previous value to compare to:
+        super("", emitter, false);
+    }
+
+    @Override
+    void onPreferencesChanged(@NonNull PreferenceStore preferences, @NonNull List<String> keys) {
+        // Every change is its own emission:
+        for (String key : keys) {
+            onPreferenceChanged(preferences, key);
+        }
+    }
+
+    @Override
+    PreferenceChange getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
+        if (changedKey == null) {
+            return new PreferenceChange(null, null);
+        }
+        return new PreferenceChange(changedKey, PreferenceValues.read(preferences, changedKey, null));
+    }
+
+    @Override
+    boolean observesAllKeys() {
+        return true;
+    }
+
+    @Override
+    boolean emitsEveryChange() {
+        return true;
+    }
+}
@@ -1,17 +1,18 @@
 package dev.drewhamilton.rxpreferences;
 
-import android.content.SharedPreferences;
 import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
 import io.reactivex.rxjava3.core.ObservableEmitter;
 
 final class RxPreferenceContainsListener extends RxPreferenceListener<Boolean> {
 
-    RxPreferenceContainsListener(@NonNull String key, @NonNull ObservableEmitter<Boolean> emitter) {
-        super(key, emitter);
+    RxPreferenceContainsListener(@NonNull String key, @NonNull ObservableEmitter<Boolean> emitter,
+            boolean distinctUntilChanged) {
+        super(key, emitter, distinctUntilChanged);
     }
 
     @Override
-    Boolean getCurrentValue(SharedPreferences preferences) {
+    Boolean getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
         return preferences.contains(key);
     }
 }
@@ -0,0 +1,427 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.functions.BooleanSupplier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The single {@link PreferenceStore.Listener} registered by an {@link RxPreferences} instance. Each change is routed
+ * only to the {@link RxPreferenceListener}s observing the changed key, plus any listeners observing a prefix of it or
+ * all keys, so the cost of a write scales with the number of subscribers to that key rather than with the total number
+ * of subscribers. Prefix listeners are found through a {@link KeyPrefixIndex}.
+ * <p>
+ * The store listener is registered when the first {@link RxPreferenceListener} is added and unregistered when the
+ * last one is removed. Listener arrays are copied on write, so dispatching never blocks on registration.
+ * <p>
+ * If commits are coalesced, changes that arrive during a {@link #write} are held back and then delivered as one batch,
+ * together with the keys the write committed, so each affected listener emits once per commit rather than once per
+ * changed key. Only notifications that arrive before the write returns are held back. A store may notify of a commit
+ * later, as Android does for a commit made off the main thread; those notifications are delivered like any other
+ * change, unless a {@link DispatchQueue} merges them with the batch while it waits to be delivered.
+ * <p>
+ * If a {@link DispatchQueue} is given, changes are handed off to it and delivered on its scheduler rather than on the
+ * thread that notified of them. Only listeners that {@link RxPreferenceListener#emitsEveryChange() emit every change}
+ * are still notified on the notifying thread, since handing off may merge changes.
+ */
+final class RxPreferenceDispatcher implements PreferenceStore.Listener {
+
+    private static final RxPreferenceListener<?>[] NO_LISTENERS = new RxPreferenceListener<?>[0];
+
+    @NonNull private final PreferenceStore preferences;
+    private final boolean coalesceCommits;
+
+    private final Map<String, RxPreferenceListener<?>[]> keyListeners = new ConcurrentHashMap<>();
+    private volatile RxPreferenceListener<?>[] allKeysListeners = NO_LISTENERS;
+    private volatile RxPreferenceListener<?>[] everyChangeListeners = NO_LISTENERS;
+    private volatile KeyPrefixIndex prefixIndex = KeyPrefixIndex.EMPTY;
+    // The same listeners as in prefixIndex, for when the store is cleared:
+    private volatile RxPreferenceListener<?>[] prefixListeners = NO_LISTENERS;
+
+    // Guarded by this:
+    private int listenerCount;
+    private int batchDepth;
+    private final Set<String> batchedKeys = new LinkedHashSet<>();
+    private boolean batchCleared;
+
+    @Nullable private final DispatchQueue dispatchQueue;
+
+    /**
+     * @param dispatchScheduler the scheduler on which to deliver changes, or null to deliver them on the notifying
+     * thread.
+     * @param maxPendingDispatchKeys the number of distinct changed keys that may wait for {@code dispatchScheduler}
+     * before they are merged into one refresh of every listener. Ignored if {@code dispatchScheduler} is null.
+     */
+    RxPreferenceDispatcher(@NonNull PreferenceStore preferences, boolean coalesceCommits,
+            @Nullable Scheduler dispatchScheduler, int maxPendingDispatchKeys) {
+        this.preferences = preferences;
+        this.coalesceCommits = coalesceCommits;
+        this.dispatchQueue = dispatchScheduler == null
+                ? null
+                : new DispatchQueue(this, dispatchScheduler, maxPendingDispatchKeys);
+    }
+
+    boolean coalescesCommits() {
+        return coalesceCommits;
+    }
+
+    /**
+     * Start holding back changes until the matching call to {@link #endBatch}. Batches may be nested, in which case
+     * changes are delivered when the outermost batch ends.
+     */
+    private synchronized void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * End a batch started with {@link #beginBatch()}, delivering all held-back changes if this is the outermost batch.
+     *
+     * @param committedKeys the keys written by the commit that ended the batch. These are delivered even if the
+     * platform has not yet notified of them, which it does asynchronously when committing off the main thread.
+     * @param cleared whether the commit that ended the batch cleared all preferences.
+     */
+    private void endBatch(@NonNull Collection<String> committedKeys, boolean cleared) {
+        final List<String> keys;
+        final boolean anyCleared;
+        synchronized (this) {
+            batchedKeys.addAll(committedKeys);
+            batchCleared |= cleared;
+            if (--batchDepth > 0) {
+                return;
+            }
+
+            keys = new ArrayList<>(batchedKeys);
+            anyCleared = batchCleared;
+            batchedKeys.clear();
+            batchCleared = false;
+        }
+
+        if (!keys.isEmpty() || anyCleared) {
+            final RxPreferenceListener<?>[] everyChangeListeners = this.everyChangeListeners;
+            if (everyChangeListeners.length > 0) {
+                final List<String> changedKeys = withClear(keys, anyCleared);
+                for (RxPreferenceListener<?> listener : everyChangeListeners) {
+                    listener.onPreferencesChanged(preferences, changedKeys);
+                }
+            }
+
+            if (dispatchQueue == null) {
+                dispatchBatch(keys, anyCleared);
+            } else {
+                dispatchQueue.enqueue(keys, anyCleared);
+            }
+        }
+    }
+
+    /**
+     * Perform {@code write}, coalescing the resulting changes into one batch if commits are coalesced.
+     *
+     * @param keys the keys changed by {@code write}.
+     * @param cleared whether {@code write} clears all preferences.
+     * @return the result of {@code write}.
+     */
+    boolean write(@NonNull BooleanSupplier write, @NonNull Collection<String> keys, boolean cleared)
+            throws Throwable {
+        if (!coalesceCommits) {
+            return write.getAsBoolean();
+        }
+
+        beginBatch();
+        boolean written = false;
+        try {
+            written = write.getAsBoolean();
+        } finally {
+            if (written) {
+                endBatch(keys, cleared);
+            } else {
+                endBatch(Collections.<String>emptySet(), false);
+            }
+        }
+        return written;
+    }
+
+    synchronized void register(@NonNull RxPreferenceListener<?> listener) {
+        if (listener.emitsEveryChange()) {
+            everyChangeListeners = append(everyChangeListeners, listener);
+        } else if (listener.observesAllKeys()) {
+            allKeysListeners = append(allKeysListeners, listener);
+        } else if (listener.observesKeyPrefix()) {
+            prefixIndex = prefixIndex.with(listener.key, listener);
+            prefixListeners = append(prefixListeners, listener);
+        } else {
+            final String[] keys = listener.observedKeys();
+            if (keys == null) {
+                addKeyListener(listener.key, listener);
+            } else {
+                for (String key : keys) {
+                    addKeyListener(key, listener);
+                }
+            }
+        }
+
+        if (listenerCount++ == 0) {
+            preferences.registerListener(this);
+        }
+    }
+
+    synchronized void unregister(@NonNull RxPreferenceListener<?> listener) {
+        final boolean removed;
+        if (listener.emitsEveryChange()) {
+            final RxPreferenceListener<?>[] remaining = remove(everyChangeListeners, listener);
+            removed = remaining != everyChangeListeners;
+            everyChangeListeners = remaining;
+        } else if (listener.observesAllKeys()) {
+            final RxPreferenceListener<?>[] remaining = remove(allKeysListeners, listener);
+            removed = remaining != allKeysListeners;
+            allKeysListeners = remaining;
+        } else if (listener.observesKeyPrefix()) {
+            final RxPreferenceListener<?>[] remaining = remove(prefixListeners, listener);
+            removed = remaining != prefixListeners;
+            prefixListeners = remaining;
+            prefixIndex = prefixIndex.without(listener.key, listener);
+        } else {
+            final String[] keys = listener.observedKeys();
+            if (keys == null) {
+                removed = removeKeyListener(listener.key, listener);
+            } else {
+                boolean anyRemoved = false;
+                for (String key : keys) {
+                    anyRemoved |= removeKeyListener(key, listener);
+                }
+                removed = anyRemoved;
+            }
+        }
+
+        if (removed && --listenerCount == 0) {
+            preferences.unregisterListener(this);
+        }
+    }
+
+    // Guarded by this:
+    private void addKeyListener(@NonNull String key, @NonNull RxPreferenceListener<?> listener) {
+        final RxPreferenceListener<?>[] existing = keyListeners.get(key);
+        keyListeners.put(key, append(existing == null ? NO_LISTENERS : existing, listener));
+    }
+
+    // Guarded by this:
+    private boolean removeKeyListener(@NonNull String key, @NonNull RxPreferenceListener<?> listener) {
+        final RxPreferenceListener<?>[] existing = keyListeners.get(key);
+        if (existing == null) {
+            return false;
+        }
+        final RxPreferenceListener<?>[] remaining = remove(existing, listener);
+        if (remaining.length == 0) {
+            keyListeners.remove(key);
+        } else {
+            keyListeners.put(key, remaining);
+        }
+        return remaining != existing;
+    }
+
+    @Override
+    public void onPreferenceChanged(@NonNull PreferenceStore preferences, @Nullable String key) {
+        if (coalesceCommits) {
+            synchronized (this) {
+                if (batchDepth > 0) {
+                    if (key == null) {
+                        batchCleared = true;
+                    } else {
+                        batchedKeys.add(key);
+                    }
+                    return;
+                }
+            }
+        }
+
+        for (RxPreferenceListener<?> listener : everyChangeListeners) {
+            listener.onPreferenceChanged(preferences, key);
+        }
+        if (dispatchQueue != null) {
+            if (key == null) {
+                dispatchQueue.enqueue(Collections.<String>emptyList(), true);
+            } else {
+                dispatchQueue.enqueue(Collections.singletonList(key), false);
+            }
+            return;
+        }
+
+        if (key != null) {
+            final RxPreferenceListener<?>[] listeners = keyListeners.get(key);
+            if (listeners != null) {
+                for (RxPreferenceListener<?> listener : listeners) {
+                    listener.onPreferenceChanged(preferences, key);
+                }
+            }
+            KeyPrefixIndex node = prefixIndex;
+            for (int i = 0; node != null; i++) {
+                for (RxPreferenceListener<?> listener : node.listeners()) {
+                    listener.onPreferenceChanged(preferences, key);
+                }
+                node = i < key.length() ? node.child(key.charAt(i)) : null;
+            }
+        } else {
+            // The store was cleared, so any observed key may have changed:
+            Set<RxPreferenceListener<?>> notified = null;
+            for (Map.Entry<String, RxPreferenceListener<?>[]> entry : keyListeners.entrySet()) {
+                notified = notifyKeyListeners(entry.getValue(), entry.getKey(), notified);
+            }
+            for (RxPreferenceListener<?> listener : prefixListeners) {
+                listener.onPreferenceChanged(preferences, null);
+            }
+        }
+
+        for (RxPreferenceListener<?> listener : allKeysListeners) {
+            listener.onPreferenceChanged(preferences, key);
+        }
+    }
+
+    /**
+     * Deliver a batch of changes to every listener except those that emit every change, which must already have been
+     * notified.
+     *
+     * @param keys the changed keys, each at most once.
+     * @param cleared whether all preferences were cleared before {@code keys} changed.
+     */
+    void dispatchBatch(@NonNull List<String> keys, boolean cleared) {
+        Set<RxPreferenceListener<?>> notified = null;
+        if (cleared) {
+            // Any observed key may have been cleared:
+            final Set<String> keySet = new HashSet<>(keys);
+            for (Map.Entry<String, RxPreferenceListener<?>[]> entry : keyListeners.entrySet()) {
+                if (!keySet.contains(entry.getKey())) {
+                    notified = notifyKeyListeners(entry.getValue(), entry.getKey(), notified);
+                }
+            }
+        }
+        for (String key : keys) {
+            final RxPreferenceListener<?>[] listeners = keyListeners.get(key);
+            if (listeners != null) {
+                notified = notifyKeyListeners(listeners, key, notified);
+            }
+        }
+
+        if (prefixListeners.length > 0) {
+            dispatchPrefixBatch(keys, cleared);
+        }
+
+        final RxPreferenceListener<?>[] allKeysListeners = this.allKeysListeners;
+        if (allKeysListeners.length > 0) {
+            final List<String> changedKeys = withClear(keys, cleared);
+            for (RxPreferenceListener<?> listener : allKeysListeners) {
+                listener.onPreferencesChanged(preferences, changedKeys);
+            }
+        }
+    }
+
+    /**
+     * @return {@code keys}, preceded by a null key if {@code cleared}, as passed to
+     * {@link RxPreferenceListener#onPreferencesChanged}.
+     */
+    @NonNull
+    private static List<String> withClear(@NonNull List<String> keys, boolean cleared) {
+        if (!cleared) {
+            return keys;
+        }
+        // The platform applies a clear before any other edits:
+        final List<String> changedKeys = new ArrayList<>(keys.size() + 1);
+        changedKeys.add(null);
+        changedKeys.addAll(keys);
+        return changedKeys;
+    }
+
+    /**
+     * Notify each prefix listener once with the batched keys that start with its prefix, skipping listeners that no
+     * batched key matches.
+     */
+    private void dispatchPrefixBatch(@NonNull List<String> keys, boolean cleared) {
+        final Map<RxPreferenceListener<?>, List<String>> matchingKeys = new LinkedHashMap<>();
+        if (cleared) {
+            for (RxPreferenceListener<?> listener : prefixListeners) {
+                final List<String> listenerKeys = new ArrayList<>();
+                listenerKeys.add(null);
+                matchingKeys.put(listener, listenerKeys);
+            }
+        }
+        for (String key : keys) {
+            KeyPrefixIndex node = prefixIndex;
+            for (int i = 0; node != null; i++) {
+                for (RxPreferenceListener<?> listener : node.listeners()) {
+                    List<String> listenerKeys = matchingKeys.get(listener);
+                    if (listenerKeys == null) {
+                        listenerKeys = new ArrayList<>();
+                        matchingKeys.put(listener, listenerKeys);
+                    }
+                    listenerKeys.add(key);
+                }
+                node = i < key.length() ? node.child(key.charAt(i)) : null;
+            }
+        }
+
+        for (Map.Entry<RxPreferenceListener<?>, List<String>> entry : matchingKeys.entrySet()) {
+            entry.getKey().onPreferencesChanged(preferences, entry.getValue());
+        }
+    }
+
+    /**
+     * Notify each of {@code listeners} that {@code key} changed, except listeners of several keys that were already
+     * notified of another key in the same batch, so that each listener emits at most once per batch.
+     *
+     * @param notified the listeners of several keys already notified in this batch, or null if there are none yet.
+     * @return the listeners of several keys notified in this batch so far.
+     */
+    @Nullable
+    private Set<RxPreferenceListener<?>> notifyKeyListeners(@NonNull RxPreferenceListener<?>[] listeners,
+            @NonNull String key, @Nullable Set<RxPreferenceListener<?>> notified) {
+        for (RxPreferenceListener<?> listener : listeners) {
+            if (listener.observedKeys() != null) {
+                if (notified == null) {
+                    notified = new HashSet<>();
+                }
+                if (!notified.add(listener)) {
+                    continue;
+                }
+            }
+            listener.onPreferenceChanged(preferences, key);
+        }
+        return notified;
+    }
+
+    @NonNull
+    private static RxPreferenceListener<?>[] append(@NonNull RxPreferenceListener<?>[] listeners,
+            @NonNull RxPreferenceListener<?> listener) {
+        final RxPreferenceListener<?>[] appended = Arrays.copyOf(listeners, listeners.length + 1);
+        appended[listeners.length] = listener;
+        return appended;
+    }
+
+    /**
+     * Returns {@code listeners} itself if it does not contain {@code listener}.
+     */
+    @NonNull
+    private static RxPreferenceListener<?>[] remove(@NonNull RxPreferenceListener<?>[] listeners,
+            @NonNull RxPreferenceListener<?> listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    return NO_LISTENERS;
+                }
+                final RxPreferenceListener<?>[] remaining = new RxPreferenceListener<?>[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, listeners.length - i - 1);
+                return remaining;
+            }
+        }
+        return listeners;
+    }
+}
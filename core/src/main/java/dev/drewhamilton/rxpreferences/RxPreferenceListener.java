@@ -0,0 +1,121 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import java.util.List;
+
+abstract class RxPreferenceListener<T> {
+
+    final String key;
+    final ObservableEmitter<T> emitter;
+    final boolean distinctUntilChanged;
+
+    // Guarded by this:
+    private boolean hasValue;
+    @Nullable private T lastValue;
+
+    RxPreferenceListener(@NonNull String key, @NonNull ObservableEmitter<T> emitter, boolean distinctUntilChanged) {
+        this.key = key;
+        this.emitter = emitter;
+        this.distinctUntilChanged = distinctUntilChanged;
+    }
+
+    /**
+     * Emit the current value upon subscription. Must be called after this listener is registered so that no change
+     * is missed.
+     */
+    void emitInitialValue(@NonNull PreferenceStore preferences) {
+        onPreferenceChanged(preferences, key);
+    }
+
+    /**
+     * Called by {@link RxPreferenceDispatcher} when {@link #key} or another of the {@link #observedKeys()} changes,
+     * when a key starting with {@link #key} changes if {@link #observesKeyPrefix()} is true, or when any key changes if
+     * {@link #observesAllKeys()} is true. If this listener is distinct until changed, a value equal to the last emitted
+     * value is not emitted again.
+     */
+    synchronized void onPreferenceChanged(@NonNull PreferenceStore preferences, @Nullable String key) {
+        try {
+            if (readValue(preferences, key) || !distinctUntilChanged) {
+                emitter.onNext(lastReadValue());
+            }
+        } catch (Throwable error) {
+            emitter.onError(error);
+        }
+    }
+
+    /**
+     * Read the current value and keep it for {@link #lastReadValue()}. Called holding the lock. Subclasses may
+     * override this together with {@link #lastReadValue()} to compare values before boxing them.
+     *
+     * @return true if the value is read for the first time or differs from the last value read. Always true if this
+     * listener is not distinct until changed, since its values are not compared.
+     */
+    boolean readValue(@NonNull PreferenceStore preferences, @Nullable String changedKey) {
+        final T value = getCurrentValue(preferences, changedKey);
+        if (distinctUntilChanged && hasValue && isSameValue(lastValue, value)) {
+            return false;
+        }
+        hasValue = true;
+        lastValue = value;
+        return true;
+    }
+
+    /**
+     * @return the value kept by the last call to {@link #readValue(PreferenceStore, String)}. Called holding the lock.
+     */
+    T lastReadValue() {
+        return lastValue;
+    }
+
+    /**
+     * Called by {@link RxPreferenceDispatcher} with every key changed by one coalesced commit, in order. A null key
+     * means all preferences were cleared. Only called for listeners that return true from {@link #observesAllKeys()},
+     * with every changed key, or from {@link #observesKeyPrefix()}, with the changed keys that start with {@link #key}.
+     * By default, emits once for the whole batch.
+     */
+    void onPreferencesChanged(@NonNull PreferenceStore preferences, @NonNull List<String> keys) {
+        onPreferenceChanged(preferences, keys.get(keys.size() - 1));
+    }
+
+    boolean observesAllKeys() {
+        return false;
+    }
+
+    /**
+     * @return true if this listener observes all keys and must be notified of every change individually, even when
+     * {@link RxPreferenceDispatcher} merges changes before delivering them to other listeners.
+     */
+    boolean emitsEveryChange() {
+        return false;
+    }
+
+    /**
+     * @return true if {@link RxPreferenceDispatcher} should route changes to every key that starts with {@link #key} to
+     * this listener.
+     */
+    boolean observesKeyPrefix() {
+        return false;
+    }
+
+    /**
+     * The keys that {@link RxPreferenceDispatcher} routes to this listener, if it observes more than {@link #key}.
+     * Ignored if {@link #observesAllKeys()} or {@link #observesKeyPrefix()} is true.
+     *
+     * @return the observed keys, each at most once, or null if only {@link #key} is observed.
+     */
+    @Nullable
+    String[] observedKeys() {
+        return null;
+    }
+
+    /**
+     * Compare a newly read value to the last emitted value. Subclasses may override this with a cheaper comparison.
+     */
+    boolean isSameValue(T previous, T current) {
+        return previous == current || (previous != null && previous.equals(current));
+    }
+
+    abstract T getCurrentValue(PreferenceStore preferences, @Nullable String changedKey);
+}
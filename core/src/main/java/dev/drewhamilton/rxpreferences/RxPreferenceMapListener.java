@@ -0,0 +1,76 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits a {@link PersistentPreferenceMap} snapshot of the observed preferences, updated one key at a time as changes
+ * arrive. Subclasses choose which preferences are observed with {@link #readAll(PreferenceStore)}, which is only
+ * required for the initial snapshot and the snapshot after all preferences are cleared.
+ */
+abstract class RxPreferenceMapListener extends RxPreferenceListener<Map<String, ?>> {
+
+    // Guarded by this:
+    @Nullable private PersistentPreferenceMap snapshot;
+
+    RxPreferenceMapListener(@NonNull String key, @NonNull ObservableEmitter<Map<String, ?>> emitter,
+            boolean distinctUntilChanged) {
+        super(key, emitter, distinctUntilChanged);
+    }
+
+    /**
+     * Read and emit the initial snapshot, unless a change has already triggered it.
+     */
+    @Override
+    synchronized void emitInitialValue(@NonNull PreferenceStore preferences) {
+        if (snapshot == null) {
+            onPreferenceChanged(preferences, null);
+        }
+    }
+
+    @Override
+    synchronized void onPreferencesChanged(@NonNull PreferenceStore preferences, @NonNull List<String> keys) {
+        // Apply every change, but only emit the final snapshot:
+        final int lastIndex = keys.size() - 1;
+        for (int i = 0; i < lastIndex; i++) {
+            applyChange(preferences, keys.get(i));
+        }
+        onPreferenceChanged(preferences, keys.get(lastIndex));
+    }
+
+    /**
+     * Snapshots are only updated when an observed preference actually changes, so identity is sufficient.
+     */
+    @Override
+    boolean isSameValue(Map<String, ?> previous, Map<String, ?> current) {
+        return previous == current;
+    }
+
+    @Override
+    Map<String, ?> getCurrentValue(PreferenceStore preferences, @Nullable String changedKey) {
+        return applyChange(preferences, changedKey);
+    }
+
+    /**
+     * @return a snapshot of every observed preference in {@code preferences}.
+     */
+    @NonNull
+    abstract PersistentPreferenceMap readAll(@NonNull PreferenceStore preferences);
+
+    @NonNull
+    private PersistentPreferenceMap applyChange(@NonNull PreferenceStore preferences, @Nullable String changedKey) {
+        final PersistentPreferenceMap current = snapshot;
+        final PersistentPreferenceMap updated;
+        if (changedKey == null || current == null) {
+            updated = readAll(preferences);
+        } else {
+            final Object value = PreferenceValues.read(preferences, changedKey, current.get(changedKey));
+            updated = value == null ? current.without(changedKey) : current.with(changedKey, value);
+        }
+        snapshot = updated;
+        return updated;
+    }
+}
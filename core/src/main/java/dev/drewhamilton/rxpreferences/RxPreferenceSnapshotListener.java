@@ -0,0 +1,27 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import java.util.Map;
+
+/**
+ * Emits a {@link PersistentPreferenceMap} snapshot of all preferences. Only the initial snapshot, and the snapshot
+ * after all preferences are cleared, requires {@link PreferenceStore#getAll()}.
+ */
+final class RxPreferenceSnapshotListener extends RxPreferenceMapListener {
+
+    RxPreferenceSnapshotListener(@NonNull ObservableEmitter<Map<String, ?>> emitter, boolean distinctUntilChanged) {
+        super("", emitter, distinctUntilChanged);
+    }
+
+    @NonNull
+    @Override
+    PersistentPreferenceMap readAll(@NonNull PreferenceStore preferences) {
+        return PersistentPreferenceMap.copyOf(preferences.getAll());
+    }
+
+    @Override
+    boolean observesAllKeys() {
+        return true;
+    }
+}
@@ -0,0 +1,1363 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.functions.BooleanSupplier;
+import io.reactivex.rxjava3.functions.Function;
+import io.reactivex.rxjava3.functions.Predicate;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A wrapper for a {@link PreferenceStore}, such as Android's {@code SharedPreferences}, that converts all methods into
+ * RxJava. For each getter provided by {@link PreferenceStore}, {@link RxPreferences} provides two options: one
+ * returning a {@link Single} and another returning an {@link Observable}. The {@link Observable} version emits the
+ * current value of the preference on subscription, and then emits an update any time that value is edited. Each
+ * {@link Observable} getter also has a {@link Flowable} version for subscribers that need backpressure; see
+ * {@link PreferenceBackpressure}.
+ * <p>
+ * Wrap a store with {@link #create(PreferenceStore)} or {@link #builder(PreferenceStore)}. This class does not depend
+ * on Android; the {@code rxpreferences} Android library wraps {@code SharedPreferences} with
+ * {@code RxSharedPreferences}.
+ * <p>
+ * Streams are shared: all subscribers to the same preference with the same default value share a single read and a
+ * single change listener. A subscriber that arrives while the stream is active immediately receives the latest value
+ * rather than reading the preferences again. The shared stream is released when its last subscriber disposes.
+ * <p>
+ * By default, streams do not emit a value equal to the one they last emitted; see
+ * {@link Builder#distinctUntilChanged(boolean)}.
+ */
+public final class RxPreferences {
+
+    @NonNull private final PreferenceStore preferences;
+    @NonNull private final RxPreferenceDispatcher dispatcher;
+    @NonNull private final SharedStreams sharedStreams = new SharedStreams();
+    @NonNull private final DecodeCache decodeCache;
+    private final boolean distinctUntilChanged;
+    private final boolean skipUnchangedWrites;
+    @Nullable private final WriteBehindQueue writeBehindQueue;
+
+    /**
+     * Create an instance of {@link RxPreferences} wrapping the provided {@link PreferenceStore}.
+     *
+     * @param store the {@link PreferenceStore} instance to wrap.
+     * @return a new {@link RxPreferences} instance.
+     */
+    @NonNull
+    public static RxPreferences create(@NonNull PreferenceStore store) {
+        return builder(store).build();
+    }
+
+    /**
+     * Create a builder for an {@link RxPreferences} instance wrapping the provided {@link PreferenceStore}. See
+     * {@link #create(PreferenceStore)}.
+     *
+     * @param store the {@link PreferenceStore} instance to wrap.
+     * @return a new {@link Builder}.
+     */
+    @NonNull
+    public static Builder builder(@NonNull PreferenceStore store) {
+        return new Builder(store);
+    }
+
+    /**
+     * Load a {@link PreferenceStore} on {@code scheduler} and wrap it, so that opening the store and reading it for the
+     * first time never blocks the calling thread. A store such as Android's {@code SharedPreferences} loads its file in
+     * the background and blocks the first read until that finishes; the returned {@link Single} only emits once the
+     * store can be read without waiting.
+     * <p>
+     * Each subscription loads the store again. Use {@link Single#cache()} to share one load between subscribers.
+     *
+     * @param loader opens the {@link PreferenceStore}. Called on {@code scheduler}.
+     * @param scheduler the {@link Scheduler} on which to open and load the store.
+     * @return a {@link Single} emitting an {@link RxPreferences} instance wrapping the loaded store.
+     */
+    @NonNull
+    public static Single<RxPreferences> load(@NonNull Callable<? extends PreferenceStore> loader,
+            @NonNull Scheduler scheduler) {
+        return Single.fromCallable(() -> {
+            final PreferenceStore store = loader.call();
+            // Any read waits until a lazily loaded store has finished loading:
+            store.contains("");
+            return create(store);
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Load several {@link PreferenceStore}s in parallel, for example to prefetch every store an app needs at startup.
+     * Each store is loaded as with {@link #load(Callable, Scheduler)}, so the loads run concurrently if
+     * {@code scheduler} has more than one thread, such as {@link Schedulers#io()}.
+     *
+     * @param loaders open each {@link PreferenceStore}. Called on {@code scheduler}.
+     * @param scheduler the {@link Scheduler} on which to open and load the stores.
+     * @return a {@link Single} emitting an {@link RxPreferences} instance for each loader, in the same order, once all
+     * stores are loaded.
+     */
+    @NonNull
+    public static Single<List<RxPreferences>> loadAll(
+            @NonNull Iterable<? extends Callable<? extends PreferenceStore>> loaders, @NonNull Scheduler scheduler) {
+        final List<Single<RxPreferences>> loads = new ArrayList<>();
+        for (Callable<? extends PreferenceStore> loader : loaders) {
+            loads.add(load(loader, scheduler));
+        }
+        if (loads.isEmpty()) {
+            return Single.just(Collections.<RxPreferences>emptyList());
+        }
+        return Single.zip(loads, loaded -> {
+            final List<RxPreferences> rxPreferences = new ArrayList<>(loaded.length);
+            for (Object instance : loaded) {
+                rxPreferences.add((RxPreferences) instance);
+            }
+            return Collections.unmodifiableList(rxPreferences);
+        });
+    }
+
+    private RxPreferences(@NonNull Builder builder) {
+        this.preferences = builder.preferences;
+        this.dispatcher = new RxPreferenceDispatcher(builder.preferences, builder.coalesceCommits,
+                builder.dispatchScheduler, builder.dispatchMaxPendingKeys);
+        this.distinctUntilChanged = builder.distinctUntilChanged;
+        this.skipUnchangedWrites = builder.skipUnchangedWrites;
+        this.decodeCache = new DecodeCache(builder.decodeCacheSize);
+        if (builder.writeBehindScheduler == null) {
+            this.writeBehindQueue = null;
+        } else {
+            this.writeBehindQueue = new WriteBehindQueue(builder.preferences, dispatcher, builder.writeBehindWindow,
+                    builder.writeBehindUnit, builder.writeBehindMaxPendingKeys, builder.writeBehindScheduler,
+                    builder.skipUnchangedWrites);
+        }
+    }
+
+    //region Single
+
+    /**
+     * Retrieve all values from the preferences.
+     * <p>
+     * Note that you must not modify the collection returned by this method, or alter any of its contents. The
+     * consistency of your stored data is not guaranteed if you do.
+     *
+     * @return a map containing a list of pairs key/value representing the preferences.
+     */
+    @NonNull
+    public Single<Map<String, ?>> getAllOnce() {
+        return Single.fromCallable(preferences::getAll);
+    }
+
+    /**
+     * Retrieve the values of all preferences whose names start with a prefix, such as every {@code "feature."} flag.
+     * If the wrapped {@link PreferenceStore} keeps its preferences in an immutable snapshot, such as {@link
+     * InMemoryPreferenceStore}, only the matching preferences are visited.
+     *
+     * @param prefix The start of the names of the preferences to retrieve.
+     * @return an unmodifiable map containing a list of pairs key/value representing the matching preferences.
+     */
+    @NonNull
+    public Single<Map<String, ?>> getPrefixOnce(@NonNull String prefix) {
+        return Single.fromCallable(() -> PreferenceValues.readPrefix(preferences, prefix));
+    }
+
+    /**
+     * Retrieve a string value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to return if this preference does not exist.
+     * @return the preference value if it exists, otherwise the given default value.
+     * @throws ClassCastException if there is a preference with this name that is not a String.
+     */
+    @NonNull
+    public Single<String> getStringOnce(@NonNull String key, @NonNull String defaultValue) {
+        return Single.fromCallable(() -> preferences.getString(key, defaultValue));
+    }
+
+    /**
+     * Retrieve a set of String values from the preferences.
+     * <p>
+     * Note that you must not modify the set instance returned by this call. The consistency of the stored data is not
+     * guaranteed if you do, nor is your ability to modify the instance at all.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValues Values to return if this preference does not exist.
+     * @return the preference value if it exists, otherwise the given default value.
+     * @throws ClassCastException if there is a preference with this name that is not a {@link Set}.
+     */
+    @NonNull
+    public Single<Set<String>> getStringSetOnce(@NonNull String key, @NonNull Set<String> defaultValues) {
+        return Single.fromCallable(() -> preferences.getStringSet(key, defaultValues));
+    }
+
+    /**
+     * Retrieve an int value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to return if this preference does not exist.
+     * @return the preference value if it exists, otherwise the given default value.
+     * @throws ClassCastException if there is a preference with this name that is not an int.
+     */
+    @NonNull
+    public Single<Integer> getIntOnce(@NonNull String key, int defaultValue) {
+        return Single.fromCallable(() -> BoxedValues.valueOf(preferences.getInt(key, defaultValue)));
+    }
+
+    /**
+     * Retrieve a long value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to return if this preference does not exist.
+     * @return the preference value if it exists, otherwise the given default value.
+     * @throws ClassCastException if there is a preference with this name that is not a long.
+     */
+    @NonNull
+    public Single<Long> getLongOnce(@NonNull String key, long defaultValue) {
+        return Single.fromCallable(() -> BoxedValues.valueOf(preferences.getLong(key, defaultValue)));
+    }
+
+    /**
+     * Retrieve a float value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to return if this preference does not exist.
+     * @return the preference value if it exists, otherwise the given default value.
+     * @throws ClassCastException if there is a preference with this name that is not a float.
+     */
+    @NonNull
+    public Single<Float> getFloatOnce(@NonNull String key, float defaultValue) {
+        return Single.fromCallable(() -> BoxedValues.valueOf(preferences.getFloat(key, defaultValue)));
+    }
+
+    /**
+     * Retrieve a boolean value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to return if this preference does not exist.
+     * @return the preference value if it exists, otherwise the given default value.
+     * @throws ClassCastException if there is a preference with this name that is not a boolean.
+     */
+    @NonNull
+    public Single<Boolean> getBooleanOnce(@NonNull String key, boolean defaultValue) {
+        return Single.fromCallable(() -> BoxedValues.valueOf(preferences.getBoolean(key, defaultValue)));
+    }
+
+    /**
+     * Retrieve an object value, stored as a string with {@link Editor#putObject}, from the preferences. Each stored
+     * string is decoded once and cached, and the cached value is shared with {@link #getObjectStream}.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param adapter The adapter that decodes the stored string.
+     * @param defaultValue Value to return if this preference does not exist.
+     * @return the decoded preference value if it exists, otherwise the given default value.
+     * @throws ClassCastException if there is a preference with this name that is not a String.
+     */
+    @NonNull
+    public <T> Single<T> getObjectOnce(@NonNull String key, @NonNull PreferenceAdapter<T> adapter,
+            @NonNull T defaultValue) {
+        final GetPreference<T> getObject = getObject(adapter);
+        return Single.fromCallable(() -> getObject.invoke(preferences, key, defaultValue));
+    }
+
+    /**
+     * Check whether the preferences contains a preference.
+     *
+     * @param key The name of the preference to check.
+     * @return true if the preference exists in the preferences, otherwise false.
+     */
+    @NonNull
+    public Single<Boolean> containsOnce(@NonNull String key) {
+        return Single.fromCallable(() -> preferences.contains(key));
+    }
+
+    /**
+     * Retrieve several values from the preferences in one pass. If the wrapped {@link PreferenceStore} serves reads
+     * from an immutable snapshot, such as {@link InMemoryPreferenceStore}, every value is read from the same snapshot.
+     *
+     * @param keys The keys of the preferences to retrieve.
+     * @return a {@link PreferenceSnapshot} of the value of each key, or its default value if the preference does not
+     * exist.
+     * @throws ClassCastException if there is a preference with the name of one of the keys that is not of that key's
+     * type.
+     */
+    @NonNull
+    public Single<PreferenceSnapshot> getManyOnce(@NonNull PreferenceKey<?>... keys) {
+        final PreferenceKey<?>[] keysCopy = keys.clone();
+        return Single.fromCallable(() -> PreferenceSnapshot.read(preferences, keysCopy));
+    }
+
+    /**
+     * Retrieve several values from the preferences in one pass. See {@link #getManyOnce(PreferenceKey[])}.
+     *
+     * @param keys The keys of the preferences to retrieve.
+     * @return a {@link PreferenceSnapshot} of the value of each key, or its default value if the preference does not
+     * exist.
+     * @throws ClassCastException if there is a preference with the name of one of the keys that is not of that key's
+     * type.
+     */
+    @NonNull
+    public Single<PreferenceSnapshot> getManyOnce(@NonNull Iterable<? extends PreferenceKey<?>> keys) {
+        return getManyOnce(toArray(keys));
+    }
+    //endregion
+
+    //region Observable
+
+    /**
+     * Observe all values from the preferences.
+     * <p>
+     * Note that you must not modify the collection returned by this method, or alter any of its contents. The
+     * consistency of your stored data is not guaranteed if you do.
+     *
+     * @return an {@link Observable} that emits a map containing a list of pairs key/value representing the preferences
+     * each time any of the preferences change.
+     */
+    @NonNull
+    public Observable<Map<String, ?>> getAllStream() {
+        return sharedStreams.get("", RxAllPreferencesListener.class, null, createListenerStream(
+                emitter -> new RxAllPreferencesListener(emitter, distinctUntilChanged)));
+    }
+
+    /**
+     * Observe all values from the preferences as an immutable snapshot that is updated incrementally. Unlike {@link
+     * #getAllStream()}, which copies every preference each time any preference changes, only the initial snapshot
+     * copies the whole store. Each later snapshot is derived from the previous one in roughly O(log n) time, reading
+     * only the preference that changed.
+     *
+     * @return an {@link Observable} that emits an unmodifiable map of all preferences upon subscription, and emits an
+     * updated map each time any of the preferences change.
+     */
+    @NonNull
+    public Observable<Map<String, ?>> getAllSnapshotStream() {
+        return sharedStreams.get("", RxPreferenceSnapshotListener.class, null, createListenerStream(
+                emitter -> new RxPreferenceSnapshotListener(emitter, distinctUntilChanged)));
+    }
+
+    /**
+     * Observe each individual change to the preferences. No value is emitted upon subscription, and each emission reads
+     * only the preference that changed, so observing changes costs O(1) per change regardless of how many preferences
+     * are stored.
+     *
+     * @return an {@link Observable} that emits a {@link PreferenceChange} each time any preference is changed or
+     * removed.
+     */
+    @NonNull
+    public Observable<PreferenceChange> getAllChangesStream() {
+        return Observable.create(emitter -> {
+            final RxPreferenceChangesListener listener = new RxPreferenceChangesListener(emitter);
+            registerRxPreferenceListener(listener, emitter);
+        });
+    }
+
+    /**
+     * Observe the values of all preferences whose names start with a prefix, such as every {@code "feature."} flag.
+     * Changes to other preferences are filtered out before they reach this stream, and each change to a matching
+     * preference updates the previous map in roughly O(log n) time rather than copying all preferences again.
+     *
+     * @param prefix The start of the names of the preferences to observe.
+     * @return An {@link Observable} that emits an unmodifiable map of the matching preferences upon subscription, and
+     * emits an updated map each time any of them change.
+     */
+    @NonNull
+    public Observable<Map<String, ?>> getPrefixStream(@NonNull String prefix) {
+        return sharedStreams.get(prefix, RxPrefixPreferencesListener.class, null, createListenerStream(
+                emitter -> new RxPrefixPreferencesListener(prefix, emitter, distinctUntilChanged)));
+    }
+
+    /**
+     * Observe a string value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @return An {@link Observable} for the string stored with the given name. Emits the current value upon
+     * subscription, and emits the new value each time it is updated. If the value is null or is later set to null or
+     * cleared, the provided default value is emitted.
+     * @throws ClassCastException if there is a preference with this name that is not a String.
+     */
+    @NonNull
+    public Observable<String> getStringStream(@NonNull String key, @NonNull String defaultValue) {
+        return createPreferenceStream(key, defaultValue, GetPreference.STRING);
+    }
+
+    /**
+     * Observe a string value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @return An {@link Observable} for the set stored with the given name. Emits the current value upon subscription,
+     * and emits the new value each time it is updated. If the value is null or is later set to null or cleared, the
+     * provided default value is emitted.
+     * @throws ClassCastException if there is a preference with this name that is not a {@link Set}.
+     */
+    @NonNull
+    public Observable<Set<String>> getStringSetStream(@NonNull String key, @NonNull Set<String> defaultValue) {
+        return createPreferenceStream(key, defaultValue, GetPreference.STRING_SET);
+    }
+
+    /**
+     * Observe an int value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @return An {@link Observable} for the int stored with the given name. Emits the current value upon subscription,
+     * and emits the new value each time it is updated. If the value is null or is later set to null or cleared, the
+     * provided default value is emitted.
+     * @throws ClassCastException if there is a preference with this name that is not an int.
+     */
+    @NonNull
+    public Observable<Integer> getIntStream(@NonNull String key, int defaultValue) {
+        return sharedStreams.get(key, RxIntPreferenceListener.class, BoxedValues.valueOf(defaultValue),
+                createListenerStream(emitter -> new RxIntPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)));
+    }
+
+    /**
+     * Observe a long value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @return An {@link Observable} for the long stored with the given name. Emits the current value upon subscription,
+     * and emits the new value each time it is updated. If the value is null or is later set to null or cleared, the
+     * provided default value is emitted.
+     * @throws ClassCastException if there is a preference with this name that is not a long.
+     */
+    @NonNull
+    public Observable<Long> getLongStream(@NonNull String key, long defaultValue) {
+        return sharedStreams.get(key, RxLongPreferenceListener.class, BoxedValues.valueOf(defaultValue),
+                createListenerStream(emitter -> new RxLongPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)));
+    }
+
+    /**
+     * Observe a float value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @return An {@link Observable} for the float stored with the given name. Emits the current value upon
+     * subscription, and emits the new value each time it is updated. If the value is null or is later set to null or
+     * cleared, the provided default value is emitted.
+     * @throws ClassCastException if there is a preference with this name that is not a float.
+     */
+    @NonNull
+    public Observable<Float> getFloatStream(@NonNull String key, float defaultValue) {
+        return sharedStreams.get(key, RxFloatPreferenceListener.class, BoxedValues.valueOf(defaultValue),
+                createListenerStream(emitter -> new RxFloatPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)));
+    }
+
+    /**
+     * Observe a boolean value from the preferences.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @return An {@link Observable} for the boolean stored with the given name. Emits the current value upon
+     * subscription, and emits the new value each time it is updated. If the value is null or is later set to null or
+     * cleared, the provided default value is emitted.
+     * @throws ClassCastException if there is a preference with this name that is not a boolean.
+     */
+    @NonNull
+    public Observable<Boolean> getBooleanStream(@NonNull String key, boolean defaultValue) {
+        return sharedStreams.get(key, RxBooleanPreferenceListener.class, BoxedValues.valueOf(defaultValue),
+                createListenerStream(emitter -> new RxBooleanPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)));
+    }
+
+    /**
+     * Observe an object value, stored as a string with {@link Editor#putObject}, from the preferences. Each stored
+     * string is decoded once and cached, so all subscribers, and reads with {@link #getObjectOnce}, share the same
+     * decoded value.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param adapter The adapter that decodes the stored string.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @return An {@link Observable} for the object stored with the given name. Emits the current value upon
+     * subscription, and emits the new value each time it is updated. If the value is later removed or cleared, the
+     * provided default value is emitted.
+     * @throws ClassCastException if there is a preference with this name that is not a String.
+     */
+    @NonNull
+    public <T> Observable<T> getObjectStream(@NonNull String key, @NonNull PreferenceAdapter<T> adapter,
+            @NonNull T defaultValue) {
+        final GetPreference<T> getObject = getObject(adapter);
+        return sharedStreams.get(key, adapter, defaultValue, createListenerStream(
+                emitter -> new RxPreferenceChangeListener<>(key, emitter, defaultValue, getObject,
+                        distinctUntilChanged)));
+    }
+
+    @NonNull
+    private <T> GetPreference<T> getObject(@NonNull PreferenceAdapter<T> adapter) {
+        return (preferences, key, defaultValue) -> {
+            final String encoded = preferences.getString(key, null);
+            return encoded == null ? defaultValue : decodeCache.decode(key, encoded, adapter);
+        };
+    }
+
+    /**
+     * Observe whether the preferences contains a preference.
+     *
+     * @param key The name of the preference to check.
+     * @return An {@link Observable} that emits whether the preference with the given name exists. Emits upon
+     * subscription as well as each time the preference is changed.
+     * @throws ClassCastException if there is a preference with this name that is not a long.
+     */
+    @NonNull
+    public Observable<Boolean> containsStream(@NonNull String key) {
+        return sharedStreams.get(key, RxPreferenceContainsListener.class, null, createListenerStream(
+                emitter -> new RxPreferenceContainsListener(key, emitter, distinctUntilChanged)));
+    }
+
+    /**
+     * Observe several values from the preferences together. All values are read in one pass each time, as with {@link
+     * #getManyOnce(PreferenceKey[])}. If commits are coalesced, a commit that changes several of the keys emits only
+     * one snapshot.
+     *
+     * @param keys The keys of the preferences to observe.
+     * @return An {@link Observable} that emits a {@link PreferenceSnapshot} of the given keys upon subscription, and
+     * emits a new snapshot each time any of them is updated.
+     * @throws IllegalArgumentException if no keys are given.
+     * @throws ClassCastException if there is a preference with the name of one of the keys that is not of that key's
+     * type.
+     */
+    @NonNull
+    public Observable<PreferenceSnapshot> getManyStream(@NonNull PreferenceKey<?>... keys) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("At least one key is required");
+        }
+        final PreferenceKey<?>[] keysCopy = keys.clone();
+        return sharedStreams.get("", RxManyPreferencesListener.class, Arrays.asList(keysCopy), createListenerStream(
+                emitter -> new RxManyPreferencesListener(keysCopy, emitter, distinctUntilChanged)));
+    }
+
+    /**
+     * Observe several values from the preferences together. See {@link #getManyStream(PreferenceKey[])}.
+     *
+     * @param keys The keys of the preferences to observe.
+     * @return An {@link Observable} that emits a {@link PreferenceSnapshot} of the given keys upon subscription, and
+     * emits a new snapshot each time any of them is updated.
+     * @throws IllegalArgumentException if no keys are given.
+     * @throws ClassCastException if there is a preference with the name of one of the keys that is not of that key's
+     * type.
+     */
+    @NonNull
+    public Observable<PreferenceSnapshot> getManyStream(@NonNull Iterable<? extends PreferenceKey<?>> keys) {
+        return getManyStream(toArray(keys));
+    }
+
+    @NonNull
+    private static PreferenceKey<?>[] toArray(@NonNull Iterable<? extends PreferenceKey<?>> keys) {
+        final List<PreferenceKey<?>> list = new ArrayList<>();
+        for (PreferenceKey<?> key : keys) {
+            list.add(key);
+        }
+        return list.toArray(new PreferenceKey<?>[0]);
+    }
+
+    @NonNull
+    private <T> Observable<T> createPreferenceStream(@NonNull String key, @NonNull T defaultValue,
+            @NonNull GetPreference<T> getPreference) {
+        return sharedStreams.get(key, getPreference, defaultValue, createListenerStream(
+                emitter -> new RxPreferenceChangeListener<>(key, emitter, defaultValue, getPreference,
+                        distinctUntilChanged)));
+    }
+
+    /**
+     * Create a stream that registers the created listener and then emits the current value through it, so that no
+     * change between the initial read and registration is missed.
+     */
+    @NonNull
+    private <T> Observable<T> createListenerStream(
+            @NonNull Function<ObservableEmitter<T>, RxPreferenceListener<T>> createListener) {
+        return Observable.create(emitter -> {
+            final RxPreferenceListener<T> listener = createListener.apply(emitter);
+            registerRxPreferenceListener(listener, emitter);
+            listener.emitInitialValue(preferences);
+        });
+    }
+    //endregion
+
+    //region Flowable
+
+    /**
+     * Observe all values from the preferences with backpressure. See {@link #getAllStream()}.
+     *
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return a {@link Flowable} that emits a map containing a list of pairs key/value representing the preferences
+     * each time any of the preferences change, subject to {@code backpressure}.
+     */
+    @NonNull
+    public Flowable<Map<String, ?>> getAllFlowable(@NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getAllStream());
+    }
+
+    /**
+     * Observe a string value from the preferences with backpressure. See {@link #getStringStream(String, String)}.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return A {@link Flowable} for the string stored with the given name, subject to {@code backpressure}.
+     * @throws ClassCastException if there is a preference with this name that is not a String.
+     */
+    @NonNull
+    public Flowable<String> getStringFlowable(@NonNull String key, @NonNull String defaultValue,
+            @NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getStringStream(key, defaultValue));
+    }
+
+    /**
+     * Observe a string set value from the preferences with backpressure. See {@link #getStringSetStream(String, Set)}.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return A {@link Flowable} for the set stored with the given name, subject to {@code backpressure}.
+     * @throws ClassCastException if there is a preference with this name that is not a {@link Set}.
+     */
+    @NonNull
+    public Flowable<Set<String>> getStringSetFlowable(@NonNull String key, @NonNull Set<String> defaultValue,
+            @NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getStringSetStream(key, defaultValue));
+    }
+
+    /**
+     * Observe an int value from the preferences with backpressure. See {@link #getIntStream(String, int)}.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return A {@link Flowable} for the int stored with the given name, subject to {@code backpressure}.
+     * @throws ClassCastException if there is a preference with this name that is not an int.
+     */
+    @NonNull
+    public Flowable<Integer> getIntFlowable(@NonNull String key, int defaultValue,
+            @NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getIntStream(key, defaultValue));
+    }
+
+    /**
+     * Observe a long value from the preferences with backpressure. See {@link #getLongStream(String, long)}.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return A {@link Flowable} for the long stored with the given name, subject to {@code backpressure}.
+     * @throws ClassCastException if there is a preference with this name that is not a long.
+     */
+    @NonNull
+    public Flowable<Long> getLongFlowable(@NonNull String key, long defaultValue,
+            @NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getLongStream(key, defaultValue));
+    }
+
+    /**
+     * Observe a float value from the preferences with backpressure. See {@link #getFloatStream(String, float)}.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return A {@link Flowable} for the float stored with the given name, subject to {@code backpressure}.
+     * @throws ClassCastException if there is a preference with this name that is not a float.
+     */
+    @NonNull
+    public Flowable<Float> getFloatFlowable(@NonNull String key, float defaultValue,
+            @NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getFloatStream(key, defaultValue));
+    }
+
+    /**
+     * Observe a boolean value from the preferences with backpressure. See {@link #getBooleanStream(String, boolean)}.
+     *
+     * @param key The name of the preference to retrieve.
+     * @param defaultValue Value to emit if this preference does not exist.
+     * @param backpressure How to handle changes that arrive faster than they are requested.
+     * @return A {@link Flowable} for the boolean stored with the given name, subject to {@code backpressure}.
+     * @throws ClassCastException if there is a preference with this name that is not a boolean.
+     */
+    @NonNull
+    public Flowable<Boolean> getBooleanFlowable(@NonNull String key, boolean defaultValue,
+            @NonNull PreferenceBackpressure backpressure) {
+        return backpressure.apply(getBooleanStream(key, defaultValue));
+    }
+    //endregion
+
+    //region Preference
+
+    /**
+     * Create a reusable handle to a string preference. See {@link Preference}.
+     *
+     * @param key The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a {@link Preference} for the string stored with the given name.
+     */
+    @NonNull
+    public Preference<String> stringPreference(@NonNull String key, @NonNull String defaultValue) {
+        return createPreference(PreferenceKey.ofString(key, defaultValue), GetPreference.STRING,
+                createListenerStream(emitter -> new RxPreferenceChangeListener<>(key, emitter, defaultValue,
+                        GetPreference.STRING, distinctUntilChanged)),
+                PutPreference.STRING);
+    }
+
+    /**
+     * Create a reusable handle to a string set preference. See {@link Preference}.
+     *
+     * @param key The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a {@link Preference} for the set stored with the given name.
+     */
+    @NonNull
+    public Preference<Set<String>> stringSetPreference(@NonNull String key, @NonNull Set<String> defaultValue) {
+        return createPreference(PreferenceKey.ofStringSet(key, defaultValue), GetPreference.STRING_SET,
+                createListenerStream(emitter -> new RxPreferenceChangeListener<>(key, emitter, defaultValue,
+                        GetPreference.STRING_SET, distinctUntilChanged)),
+                PutPreference.STRING_SET);
+    }
+
+    /**
+     * Create a reusable handle to an int preference. See {@link Preference}.
+     *
+     * @param key The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a {@link Preference} for the int stored with the given name.
+     */
+    @NonNull
+    public Preference<Integer> intPreference(@NonNull String key, int defaultValue) {
+        return createPreference(PreferenceKey.ofInt(key, defaultValue), RxIntPreferenceListener.class,
+                createListenerStream(emitter -> new RxIntPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)),
+                PutPreference.INT);
+    }
+
+    /**
+     * Create a reusable handle to a long preference. See {@link Preference}.
+     *
+     * @param key The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a {@link Preference} for the long stored with the given name.
+     */
+    @NonNull
+    public Preference<Long> longPreference(@NonNull String key, long defaultValue) {
+        return createPreference(PreferenceKey.ofLong(key, defaultValue), RxLongPreferenceListener.class,
+                createListenerStream(emitter -> new RxLongPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)),
+                PutPreference.LONG);
+    }
+
+    /**
+     * Create a reusable handle to a float preference. See {@link Preference}.
+     *
+     * @param key The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a {@link Preference} for the float stored with the given name.
+     */
+    @NonNull
+    public Preference<Float> floatPreference(@NonNull String key, float defaultValue) {
+        return createPreference(PreferenceKey.ofFloat(key, defaultValue), RxFloatPreferenceListener.class,
+                createListenerStream(emitter -> new RxFloatPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)),
+                PutPreference.FLOAT);
+    }
+
+    /**
+     * Create a reusable handle to a boolean preference. See {@link Preference}.
+     *
+     * @param key The name of the preference.
+     * @param defaultValue Value to read if this preference does not exist.
+     * @return a {@link Preference} for the boolean stored with the given name.
+     */
+    @NonNull
+    public Preference<Boolean> booleanPreference(@NonNull String key, boolean defaultValue) {
+        return createPreference(PreferenceKey.ofBoolean(key, defaultValue), RxBooleanPreferenceListener.class,
+                createListenerStream(emitter -> new RxBooleanPreferenceListener(key, emitter, defaultValue,
+                        distinctUntilChanged)),
+                PutPreference.BOOLEAN);
+    }
+
+    /**
+     * @param streamType The type that the shared streams of the preference are cached under, matching the stream
+     * method for the same preference type.
+     */
+    @NonNull
+    private <T> Preference<T> createPreference(@NonNull PreferenceKey<T> key, @NonNull Object streamType,
+            @NonNull Observable<T> streamSource, @NonNull PutPreference<T> putPreference) {
+        return new Preference<>(this, key, Single.fromCallable(() -> key.read(preferences)), sharedStreams, streamType,
+                streamSource, putPreference);
+    }
+    //endregion
+
+    /**
+     * Create a new Editor for these preferences, through which you can make modifications to the data in the
+     * preferences and atomically commit those changes back to the wrapped preferences.
+     * <p>
+     * Note that you must call {@link Editor#commit} or {@link Editor#apply} to have any changes you perform in the
+     * actually show up in the preferences.
+     *
+     * @return a new instance of {@link Editor}.
+     */
+    @NonNull
+    public Editor edit() {
+        if (writeBehindQueue != null || skipUnchangedWrites) {
+            return new Editor(preferences, dispatcher, writeBehindQueue);
+        }
+        return new Editor(preferences.edit(), dispatcher);
+    }
+
+    /**
+     * Wait for the disk writes of all changes applied with {@link Editor#apply()} before subscription to finish. Use
+     * this after {@link Editor#apply()} when a change must be durable, for example before the process may be killed:
+     * <pre>{@code
+     * rxPreferences.edit()
+     *         .putInt("Language count", 3)
+     *         .apply()
+     *         .andThen(rxPreferences.awaitPendingWrites())
+     * }</pre>
+     * <p>
+     * This commits an empty edit, which the platform queues behind all pending writes and which does not write to
+     * disk itself.
+     *
+     * @return a {@link Completable} that completes once all pending writes have finished, or fails with
+     * {@link Editor.CommitException} if they could not be written.
+     */
+    @NonNull
+    public Completable awaitPendingWrites() {
+        return Completable.fromAction(() -> {
+            if (!preferences.edit().commit()) {
+                throw new Editor.CommitException();
+            }
+        });
+    }
+
+    private <T> void registerRxPreferenceListener(@NonNull RxPreferenceListener<T> listener,
+            @NonNull ObservableEmitter<T> emitter) {
+        emitter.setCancellable(() -> dispatcher.unregister(listener));
+        dispatcher.register(listener);
+    }
+
+    /**
+     * A builder for {@link RxPreferences} instances with non-default behavior.
+     */
+    public static final class Builder {
+
+        private static final int DEFAULT_DISPATCH_MAX_PENDING_KEYS = 64;
+        private static final int DEFAULT_DECODE_CACHE_SIZE = 32;
+
+        @NonNull private final PreferenceStore preferences;
+        private boolean coalesceCommits;
+        private boolean distinctUntilChanged = true;
+        private boolean skipUnchangedWrites;
+        private long writeBehindWindow;
+        @Nullable private TimeUnit writeBehindUnit;
+        private int writeBehindMaxPendingKeys;
+        @Nullable private Scheduler writeBehindScheduler;
+        @Nullable private Scheduler dispatchScheduler;
+        private int dispatchMaxPendingKeys;
+        private int decodeCacheSize = DEFAULT_DECODE_CACHE_SIZE;
+
+        private Builder(@NonNull PreferenceStore store) {
+            this.preferences = store;
+        }
+
+        /**
+         * Set whether stream emissions caused by a single {@link Editor#commit()} are coalesced. When enabled, each
+         * stream affected by a commit emits once after the commit completes, regardless of how many preferences the
+         * commit changed. For example, {@link RxPreferences#getAllStream()} emits one map for a commit that writes 50
+         * keys, instead of 50 maps. Disabled by default.
+         * <p>
+         * Changes applied with {@link Editor#apply()} are coalesced the same way.
+         * <p>
+         * Only commits made through an {@link Editor} from the built instance are coalesced, and only the change
+         * notifications the store delivers before the commit returns are held back. A store may also notify of a
+         * commit after it returns, as Android does for a commit made off the main thread. Each of those later
+         * notifications is delivered individually and may cause another emission of the then-current value, unless
+         * {@link #distinctUntilChanged(boolean)} skips it or it arrives while the commit waits to be delivered on a
+         * scheduler set with {@link #dispatchOn(Scheduler)}, in which case it is merged with the commit.
+         *
+         * @param coalesceCommits true to coalesce emissions per commit.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder coalesceCommits(boolean coalesceCommits) {
+            this.coalesceCommits = coalesceCommits;
+            return this;
+        }
+
+        /**
+         * Set whether streams skip values equal to the value they last emitted. When enabled, writing a preference's
+         * current value again does not cause its streams to emit, so subscribers do not need to apply {@link
+         * Observable#distinctUntilChanged()} themselves. Enabled by default; disable it to emit on every write of an
+         * observed preference.
+         * <p>
+         * Does not apply to {@link RxPreferences#getAllChangesStream()}, which emits every change.
+         *
+         * @param distinctUntilChanged true to suppress repeated emissions of an unchanged value.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder distinctUntilChanged(boolean distinctUntilChanged) {
+            this.distinctUntilChanged = distinctUntilChanged;
+            return this;
+        }
+
+        /**
+         * Set whether {@link Editor}s drop edits that would not change the preferences: puts of a preference's current
+         * value and removals of preferences that do not exist. Edits are compared against the preferences' in-memory
+         * values when the {@link Editor} is committed or applied. If no edits remain, the {@link Editor} completes
+         * without writing to disk or notifying listeners. Disabled by default.
+         * <p>
+         * Edits made by an {@link Editor} that also calls {@link Editor#clear()} are never dropped.
+         *
+         * @param skipUnchangedWrites true to drop edits that would not change the preferences.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder skipUnchangedWrites(boolean skipUnchangedWrites) {
+            this.skipUnchangedWrites = skipUnchangedWrites;
+            return this;
+        }
+
+        /**
+         * Enable write-behind on {@link Schedulers#io()}. See {@link #writeBehind(long, TimeUnit, int, Scheduler)}.
+         *
+         * @param window how long to gather edits before committing them.
+         * @param unit the unit of {@code window}.
+         * @param maxPendingKeys the number of pending keys at which edits are committed before the window elapses.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder writeBehind(long window, @NonNull TimeUnit unit, int maxPendingKeys) {
+            return writeBehind(window, unit, maxPendingKeys, Schedulers.io());
+        }
+
+        /**
+         * Enable write-behind, which merges the edits of all {@link Editor}s committed within a window of time into a
+         * single platform commit, rather than rewriting the preferences file once per {@link Editor}. A window opens
+         * when an {@link Editor} is committed while no edits are pending, and its edits are committed once
+         * {@code window} elapses or once {@code maxPendingKeys} distinct keys are pending, whichever comes first.
+         * Disabled by default.
+         * <p>
+         * When enabled, {@link Editor#commit()} and {@link Editor#apply()} complete, or fail with
+         * {@link Editor.CommitException}, according to the merged commit. Edits from editors committed later in a
+         * window win over earlier ones, and a {@link Editor#clear()} discards edits committed earlier in its window.
+         * Disposing the returned {@link Completable} does not withdraw its edits.
+         *
+         * @param window how long to gather edits before committing them.
+         * @param unit the unit of {@code window}.
+         * @param maxPendingKeys the number of pending keys at which edits are committed before the window elapses.
+         * This commit happens on the thread subscribing to the {@link Editor#commit()} that fills the window.
+         * @param scheduler the {@link Scheduler} on which a window's commit happens once it elapses.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder writeBehind(long window, @NonNull TimeUnit unit, int maxPendingKeys,
+                @NonNull Scheduler scheduler) {
+            if (maxPendingKeys < 1) {
+                throw new IllegalArgumentException("maxPendingKeys must be positive but was " + maxPendingKeys);
+            }
+            this.writeBehindWindow = window;
+            this.writeBehindUnit = unit;
+            this.writeBehindMaxPendingKeys = maxPendingKeys;
+            this.writeBehindScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Deliver changes to streams on {@code scheduler}, with at most 64 changed keys waiting. See
+         * {@link #dispatchOn(Scheduler, int)}.
+         *
+         * @param scheduler the {@link Scheduler} on which streams read and emit changed values.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder dispatchOn(@NonNull Scheduler scheduler) {
+            return dispatchOn(scheduler, DEFAULT_DISPATCH_MAX_PENDING_KEYS);
+        }
+
+        /**
+         * Deliver changes to streams on {@code scheduler} rather than on the thread that notified of them, which for
+         * {@code SharedPreferences} is the main thread. Streams then read changed values, including the whole map for
+         * {@link RxPreferences#getAllStream()}, and emit them on {@code scheduler}, so heavy streams do not take time
+         * from the notifying thread. By default, changes are delivered on the notifying thread.
+         * <p>
+         * Changes wait in a bounded queue until {@code scheduler} delivers them. A preference that changes again
+         * while waiting is only delivered once, with its latest value. Once more than {@code maxPendingKeys}
+         * distinct preferences are waiting, they are replaced by one refresh in which every stream reads its value
+         * again. Streams may therefore skip intermediate values, though they always emit the latest one.
+         * <p>
+         * Does not apply to {@link RxPreferences#getAllChangesStream()}, which emits every change on the notifying
+         * thread. Values emitted upon subscription are still read on the subscribing thread.
+         *
+         * @param scheduler the {@link Scheduler} on which streams read and emit changed values.
+         * @param maxPendingKeys the number of distinct changed preferences that may wait for {@code scheduler}
+         * before they are replaced by a refresh of every stream.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder dispatchOn(@NonNull Scheduler scheduler, int maxPendingKeys) {
+            if (maxPendingKeys < 1) {
+                throw new IllegalArgumentException("maxPendingKeys must be positive but was " + maxPendingKeys);
+            }
+            this.dispatchScheduler = scheduler;
+            this.dispatchMaxPendingKeys = maxPendingKeys;
+            return this;
+        }
+
+        /**
+         * Set how many object preferences keep their decoded value cached for {@link RxPreferences#getObjectOnce} and
+         * {@link RxPreferences#getObjectStream}. The least recently read preference is evicted first. Defaults to 32.
+         *
+         * @param decodeCacheSize the number of decoded values to keep, or 0 to decode on every read.
+         * @return this builder.
+         */
+        @NonNull
+        public Builder decodeCacheSize(int decodeCacheSize) {
+            if (decodeCacheSize < 0) {
+                throw new IllegalArgumentException("decodeCacheSize must not be negative but was " + decodeCacheSize);
+            }
+            this.decodeCacheSize = decodeCacheSize;
+            return this;
+        }
+
+        /**
+         * @return a new {@link RxPreferences} instance with this builder's configuration.
+         */
+        @NonNull
+        public RxPreferences build() {
+            return new RxPreferences(this);
+        }
+    }
+
+    /**
+     * A wrapper for {@link PreferenceStore.Editor} that converts all methods into RxJava. For each {@code #put}
+     * method, {@link Editor} pushes the passed value to the wrapped {@link PreferenceStore.Editor} and returns
+     * itself. Note that you must call {@link #commit()} or {@link #apply()} for any changes to actually show up in the
+     * preferences.
+     * <p>
+     * If write-behind is enabled with {@link Builder#writeBehind} or unchanged writes are skipped with
+     * {@link Builder#skipUnchangedWrites}, edits are instead staged in the {@link Editor} until it is committed.
+     */
+    public static final class Editor {
+
+        @NonNull private final RxPreferenceDispatcher dispatcher;
+
+        // Exactly one of preferencesEditor and stagedEdits is non-null:
+        @Nullable private final PreferenceStore.Editor preferencesEditor;
+        @Nullable private final StagedEdits stagedEdits;
+        @Nullable private final PreferenceStore preferences;
+        @Nullable private final WriteBehindQueue writeBehindQueue;
+
+        // Only tracked if the dispatcher coalesces commits:
+        @Nullable private final Set<String> editedKeys;
+        private boolean cleared;
+
+        Editor(@NonNull PreferenceStore.Editor preferencesEditor, @NonNull RxPreferenceDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            this.preferencesEditor = preferencesEditor;
+            this.stagedEdits = null;
+            this.preferences = null;
+            this.writeBehindQueue = null;
+            this.editedKeys = dispatcher.coalescesCommits() ? new LinkedHashSet<>() : null;
+        }
+
+        /**
+         * Create an {@link Editor} that stages its edits, and writes them through {@code writeBehindQueue} if it is
+         * provided or directly to {@code preferences} otherwise.
+         */
+        Editor(@NonNull PreferenceStore preferences, @NonNull RxPreferenceDispatcher dispatcher,
+                @Nullable WriteBehindQueue writeBehindQueue) {
+            this.dispatcher = dispatcher;
+            this.preferencesEditor = null;
+            this.stagedEdits = new StagedEdits();
+            this.preferences = preferences;
+            this.writeBehindQueue = writeBehindQueue;
+            this.editedKeys = null;
+        }
+
+        /**
+         * Set a string value in the preferences editor, to be written back once {@link #commit} is called.
+         *
+         * @param key The name of the preference to modify.
+         * @param value The new value for the preference.  Passing null for this argument is equivalent to calling
+         * {@link #remove(String)} with the same key.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor putString(@NonNull String key, @NonNull String value) {
+            if (stagedEdits != null) {
+                stagedEdits.put(key, value);
+            } else {
+                preferencesEditor.putString(key, value);
+                trackEdit(key);
+            }
+            return this;
+        }
+
+        /**
+         * Set a set of string values in the preferences editor, to be written back once {@link #commit} is called.
+         *
+         * @param key The name of the preference to modify.
+         * @param values The new set of values for the preference. Passing null for this argument is equivalent to
+         * calling {@link #remove(String)} with the same key.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor putStringSet(@NonNull String key, @NonNull Set<String> values) {
+            if (stagedEdits != null) {
+                stagedEdits.put(key, Collections.unmodifiableSet(new LinkedHashSet<>(values)));
+            } else {
+                preferencesEditor.putStringSet(key, values);
+                trackEdit(key);
+            }
+            return this;
+        }
+
+        /**
+         * Set an int value in the preferences editor, to be written back once {@link #commit} is called.
+         *
+         * @param key The name of the preference to modify.
+         * @param value The new value for the preference.  Passing null for this argument is equivalent to calling
+         * {@link #remove(String)} with the same key.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor putInt(@NonNull String key, int value) {
+            if (stagedEdits != null) {
+                stagedEdits.put(key, value);
+            } else {
+                preferencesEditor.putInt(key, value);
+                trackEdit(key);
+            }
+            return this;
+        }
+
+        /**
+         * Set a long value in the preferences editor, to be written back once {@link #commit} is called.
+         *
+         * @param key The name of the preference to modify.
+         * @param value The new value for the preference.  Passing null for this argument is equivalent to calling
+         * {@link #remove(String)} with the same key.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor putLong(@NonNull String key, long value) {
+            if (stagedEdits != null) {
+                stagedEdits.put(key, value);
+            } else {
+                preferencesEditor.putLong(key, value);
+                trackEdit(key);
+            }
+            return this;
+        }
+
+        /**
+         * Set a float value in the preferences editor, to be written back once {@link #commit} is called.
+         *
+         * @param key The name of the preference to modify.
+         * @param value The new value for the preference.  Passing null for this argument is equivalent to calling
+         * {@link #remove(String)} with the same key.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor putFloat(@NonNull String key, float value) {
+            if (stagedEdits != null) {
+                stagedEdits.put(key, value);
+            } else {
+                preferencesEditor.putFloat(key, value);
+                trackEdit(key);
+            }
+            return this;
+        }
+
+        /**
+         * Set a boolean value in the preferences editor, to be written back once {@link #commit} is called.
+         *
+         * @param key The name of the preference to modify.
+         * @param value The new value for the preference.  Passing null for this argument is equivalent to calling
+         * {@link #remove(String)} with the same key.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor putBoolean(@NonNull String key, boolean value) {
+            if (stagedEdits != null) {
+                stagedEdits.put(key, value);
+            } else {
+                preferencesEditor.putBoolean(key, value);
+                trackEdit(key);
+            }
+            return this;
+        }
+
+        /**
+         * Set an object value in the preferences editor, to be written back once {@link #commit} is called. The value
+         * is stored as the string returned by {@code adapter}; read it with {@link RxPreferences#getObjectOnce} or
+         * {@link RxPreferences#getObjectStream}.
+         *
+         * @param key The name of the preference to modify.
+         * @param adapter The adapter that encodes {@code value}.
+         * @param value The new value for the preference.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public <T> Editor putObject(@NonNull String key, @NonNull PreferenceAdapter<T> adapter, @NonNull T value) {
+            return putString(key, adapter.encode(value));
+        }
+
+        /**
+         * Mark in the editor that a preference value should be removed, which will be done in the actual preferences
+         * once {@link #commit} is called.
+         * <p>
+         * Note that when committing back to the preferences, all removals are done first, regardless of whether you
+         * called {@code #remove} before or after {@code #put} methods on this editor.
+         *
+         * @param key The name of the preference to remove.
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor remove(@NonNull String key) {
+            if (stagedEdits != null) {
+                stagedEdits.remove(key);
+            } else {
+                preferencesEditor.remove(key);
+                trackEdit(key);
+            }
+            return this;
+        }
+
+        /**
+         * Mark in the editor to remove all values from the preferences. Once {@link #commit()} is called, the only
+         * remaining preferences will be any that you have defined in this editor.
+         * <p>
+         * Note that when committing back to the preferences, the clear is done first, regardless of whether you called
+         * {@code #clear} before or after {@code #put} methods on this editor.
+         *
+         * @return a reference to the same {@link Editor} object, so you can chain calls together.
+         */
+        @NonNull
+        public Editor clear() {
+            if (stagedEdits != null) {
+                stagedEdits.clear();
+            } else {
+                preferencesEditor.clear();
+                cleared = true;
+            }
+            return this;
+        }
+
+        /**
+         * Commit your preferences changes back from this {@link Editor} to the {@link RxPreferences} object it is
+         * editing. This atomically performs the requested modifications, replacing whatever is currently in the
+         * preferences.
+         * <p>
+         * Note that when two editors are modifying preferences at the same time, the last one to call commit wins.
+         * <p>
+         * If write-behind is enabled, the changes are merged with those of other editors committed in the same window,
+         * and the returned {@link Completable} completes once the merged changes are committed.
+         *
+         * @return a {@link Completable} that commits the changes upon subscription.
+         */
+        @NonNull
+        public Completable commit() {
+            if (writeBehindQueue != null) {
+                return writeBehindQueue.enqueue(stagedEdits);
+            }
+            return Completable.fromAction(() -> {
+                final boolean success;
+                if (stagedEdits == null) {
+                    success = write(preferencesEditor::commit);
+                } else {
+                    success = writeStagedEdits(PreferenceStore.Editor::commit);
+                }
+
+                if (!success) {
+                    throw new CommitException();
+                }
+            });
+        }
+
+        /**
+         * Apply your preferences changes back from this {@link Editor} to the {@link RxPreferences} object it is
+         * editing. Like {@link #commit()}, this atomically performs the requested modifications in memory, but the
+         * changes are written to disk in the background instead of on the subscribing thread.
+         * <p>
+         * The returned {@link Completable} does not wait for the disk write. Follow it with
+         * {@link RxPreferences#awaitPendingWrites()} if the changes must be durable when it completes. Because the
+         * disk write happens later, an error writing to disk is not reported.
+         * <p>
+         * If write-behind is enabled, this is equivalent to {@link #commit()}.
+         *
+         * @return a {@link Completable} that applies the changes upon subscription and completes once they are
+         * visible to all readers of the preferences.
+         */
+        @NonNull
+        public Completable apply() {
+            if (writeBehindQueue != null) {
+                return writeBehindQueue.enqueue(stagedEdits);
+            }
+            return Completable.fromAction(() -> {
+                if (stagedEdits == null) {
+                    write(() -> {
+                        preferencesEditor.apply();
+                        return true;
+                    });
+                } else {
+                    writeStagedEdits(editor -> {
+                        editor.apply();
+                        return true;
+                    });
+                }
+            });
+        }
+
+        /**
+         * Perform {@code write}, coalescing the resulting stream emissions if enabled.
+         *
+         * @return the result of {@code write}.
+         */
+        private boolean write(@NonNull BooleanSupplier write) throws Throwable {
+            final Set<String> keys = editedKeys == null ? Collections.<String>emptySet() : editedKeys;
+            return dispatcher.write(write, keys, cleared);
+        }
+
+        /**
+         * Write the staged edits that would change the preferences to a new platform editor with {@code write}, or
+         * do nothing if there are none.
+         *
+         * @return the result of {@code write}, or true if nothing was written.
+         */
+        private boolean writeStagedEdits(@NonNull Predicate<PreferenceStore.Editor> write) throws Throwable {
+            final StagedEdits edits = stagedEdits.withoutUnchanged(preferences);
+            if (edits.isEmpty()) {
+                return true;
+            }
+
+            final PreferenceStore.Editor editor = preferences.edit();
+            edits.applyTo(editor);
+            return dispatcher.write(() -> write.test(editor), edits.keys(), edits.isCleared());
+        }
+
+        private void trackEdit(@NonNull String key) {
+            if (editedKeys != null) {
+                editedKeys.add(key);
+            }
+        }
+
+        /**
+         * An exception thrown if {@link #commit()} fails.
+         */
+        public static final class CommitException extends RuntimeException {
+
+            private static final long serialVersionUID = 1L;
+
+            CommitException() {
+                super("Failed to commit the desired preference changes");
+            }
+        }
+    }
+}
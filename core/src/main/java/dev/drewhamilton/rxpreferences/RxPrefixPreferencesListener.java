@@ -0,0 +1,28 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import java.util.Map;
+
+/**
+ * Emits a {@link PersistentPreferenceMap} snapshot of the preferences whose names start with {@link #key}. Changes to
+ * other keys are filtered out by {@link RxPreferenceDispatcher} and never reach this listener.
+ */
+final class RxPrefixPreferencesListener extends RxPreferenceMapListener {
+
+    RxPrefixPreferencesListener(@NonNull String prefix, @NonNull ObservableEmitter<Map<String, ?>> emitter,
+            boolean distinctUntilChanged) {
+        super(prefix, emitter, distinctUntilChanged);
+    }
+
+    @NonNull
+    @Override
+    PersistentPreferenceMap readAll(@NonNull PreferenceStore preferences) {
+        return PreferenceValues.readPrefix(preferences, key);
+    }
+
+    @Override
+    boolean observesKeyPrefix() {
+        return true;
+    }
+}
@@ -0,0 +1,325 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link PreferenceStore} that spreads its keys across several underlying stores, called shards. Each key always
+ * lives in the same shard, chosen either by the key's hash or by its prefix. When each shard is a separate
+ * {@code SharedPreferences} file, a commit only rewrites the files of the shards it touches, so commit cost scales with
+ * the size of a shard rather than the whole store.
+ * <p>
+ * Wrap a sharded store with {@link RxPreferences#create(PreferenceStore)} to use the full {@link RxPreferences} API.
+ * An edit that touches several shards is split into one edit per shard, and those are committed one after another.
+ * Each shard's part of an edit is atomic, but the edit as a whole is not: a reader may see one shard's changes before
+ * another's.
+ * <p>
+ * Changing the shards of a store moves keys between them, so existing values will not be found in their new shards.
+ */
+public final class ShardedPreferenceStore implements PreferenceStore {
+
+    @NonNull private final PreferenceStore[] shards;
+    @NonNull private final ShardSelector shardSelector;
+
+    // Guarded by itself:
+    private final Map<Listener, Listener> listeners = new HashMap<>();
+
+    /**
+     * Create a store that assigns each key to one of {@code shards} by the key's hash.
+     *
+     * @param shards the stores to spread keys across, in a fixed order.
+     * @return a new {@link ShardedPreferenceStore}.
+     * @throws IllegalArgumentException if {@code shards} is empty.
+     */
+    @NonNull
+    public static ShardedPreferenceStore byHash(@NonNull PreferenceStore... shards) {
+        if (shards.length == 0) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        final int shardCount = shards.length;
+        return new ShardedPreferenceStore(shards.clone(), key -> (key.hashCode() & Integer.MAX_VALUE) % shardCount);
+    }
+
+    /**
+     * Create a store that assigns each key to the shard registered for its longest matching prefix, or to
+     * {@code defaultShard} if no prefix matches.
+     *
+     * @param shardsByPrefix the stores for keys starting with each prefix.
+     * @param defaultShard the store for keys that match no prefix.
+     * @return a new {@link ShardedPreferenceStore}.
+     */
+    @NonNull
+    public static ShardedPreferenceStore byPrefix(@NonNull Map<String, ? extends PreferenceStore> shardsByPrefix,
+            @NonNull PreferenceStore defaultShard) {
+        final List<String> prefixes = new ArrayList<>(shardsByPrefix.keySet());
+        // Check longer prefixes first, so the longest match wins:
+        Collections.sort(prefixes, (first, second) -> second.length() - first.length());
+
+        final List<PreferenceStore> shards = new ArrayList<>(prefixes.size() + 1);
+        final Map<PreferenceStore, Integer> shardIndices = new HashMap<>();
+        final String[] sortedPrefixes = prefixes.toArray(new String[0]);
+        final int[] prefixShards = new int[sortedPrefixes.length];
+        for (int i = 0; i < sortedPrefixes.length; i++) {
+            prefixShards[i] = indexOf(shards, shardIndices, shardsByPrefix.get(sortedPrefixes[i]));
+        }
+        final int defaultShardIndex = indexOf(shards, shardIndices, defaultShard);
+
+        return new ShardedPreferenceStore(shards.toArray(new PreferenceStore[0]), key -> {
+            for (int i = 0; i < sortedPrefixes.length; i++) {
+                if (key.startsWith(sortedPrefixes[i])) {
+                    return prefixShards[i];
+                }
+            }
+            return defaultShardIndex;
+        });
+    }
+
+    /**
+     * @return the index of {@code shard} in {@code shards}, adding it if it is not there yet, so a store registered for
+     * several prefixes is only one shard.
+     */
+    private static int indexOf(@NonNull List<PreferenceStore> shards, @NonNull Map<PreferenceStore, Integer> indices,
+            @NonNull PreferenceStore shard) {
+        Integer index = indices.get(shard);
+        if (index == null) {
+            index = shards.size();
+            shards.add(shard);
+            indices.put(shard, index);
+        }
+        return index;
+    }
+
+    private ShardedPreferenceStore(@NonNull PreferenceStore[] shards, @NonNull ShardSelector shardSelector) {
+        this.shards = shards;
+        this.shardSelector = shardSelector;
+    }
+
+    /**
+     * @return the shards of this store, in the order used to assign keys.
+     */
+    @NonNull
+    public List<PreferenceStore> getShards() {
+        return Collections.unmodifiableList(Arrays.asList(shards));
+    }
+
+    /**
+     * @return a new map merging every shard's preferences.
+     */
+    @NonNull
+    @Override
+    public Map<String, ?> getAll() {
+        final Map<String, Object> all = new HashMap<>();
+        for (PreferenceStore shard : shards) {
+            all.putAll(shard.getAll());
+        }
+        return all;
+    }
+
+    @Nullable
+    @Override
+    public String getString(@NonNull String key, @Nullable String defaultValue) {
+        return shardFor(key).getString(key, defaultValue);
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getStringSet(@NonNull String key, @Nullable Set<String> defaultValues) {
+        return shardFor(key).getStringSet(key, defaultValues);
+    }
+
+    @Override
+    public int getInt(@NonNull String key, int defaultValue) {
+        return shardFor(key).getInt(key, defaultValue);
+    }
+
+    @Override
+    public long getLong(@NonNull String key, long defaultValue) {
+        return shardFor(key).getLong(key, defaultValue);
+    }
+
+    @Override
+    public float getFloat(@NonNull String key, float defaultValue) {
+        return shardFor(key).getFloat(key, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+        return shardFor(key).getBoolean(key, defaultValue);
+    }
+
+    @Override
+    public boolean contains(@NonNull String key) {
+        return shardFor(key).contains(key);
+    }
+
+    @NonNull
+    @Override
+    public PreferenceStore.Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Registers {@code listener} with every shard. A shard that is cleared notifies it with a null key, even though the
+     * other shards keep their preferences.
+     */
+    @Override
+    public void registerListener(@NonNull Listener listener) {
+        final Listener shardListener;
+        synchronized (listeners) {
+            if (listeners.containsKey(listener)) {
+                return;
+            }
+            shardListener = (shard, key) -> listener.onPreferenceChanged(this, key);
+            listeners.put(listener, shardListener);
+        }
+        for (PreferenceStore shard : shards) {
+            shard.registerListener(shardListener);
+        }
+    }
+
+    @Override
+    public void unregisterListener(@NonNull Listener listener) {
+        final Listener shardListener;
+        synchronized (listeners) {
+            shardListener = listeners.remove(listener);
+        }
+        if (shardListener != null) {
+            for (PreferenceStore shard : shards) {
+                shard.unregisterListener(shardListener);
+            }
+        }
+    }
+
+    @NonNull
+    private PreferenceStore shardFor(@NonNull String key) {
+        return shards[shardSelector.select(key)];
+    }
+
+    private interface ShardSelector {
+        int select(@NonNull String key);
+    }
+
+    /**
+     * Groups changes by shard, creating each shard's editor the first time a change touches it.
+     */
+    private final class Editor implements PreferenceStore.Editor {
+
+        // Guarded by this:
+        private final PreferenceStore.Editor[] shardEditors = new PreferenceStore.Editor[shards.length];
+
+        @NonNull
+        @Override
+        public Editor putString(@NonNull String key, @Nullable String value) {
+            shardEditorFor(key).putString(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putStringSet(@NonNull String key, @Nullable Set<String> values) {
+            shardEditorFor(key).putStringSet(key, values);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putInt(@NonNull String key, int value) {
+            shardEditorFor(key).putInt(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putLong(@NonNull String key, long value) {
+            shardEditorFor(key).putLong(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putFloat(@NonNull String key, float value) {
+            shardEditorFor(key).putFloat(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putBoolean(@NonNull String key, boolean value) {
+            shardEditorFor(key).putBoolean(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor remove(@NonNull String key) {
+            shardEditorFor(key).remove(key);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public synchronized Editor clear() {
+            for (int i = 0; i < shards.length; i++) {
+                shardEditor(i).clear();
+            }
+            return this;
+        }
+
+        /**
+         * Commit the changes to each touched shard in turn, even if an earlier shard fails.
+         *
+         * @return true if every shard's changes were written successfully.
+         */
+        @Override
+        public boolean commit() {
+            boolean success = true;
+            for (PreferenceStore.Editor shardEditor : takeShardEditors()) {
+                if (shardEditor != null) {
+                    success &= shardEditor.commit();
+                }
+            }
+            return success;
+        }
+
+        @Override
+        public void apply() {
+            for (PreferenceStore.Editor shardEditor : takeShardEditors()) {
+                if (shardEditor != null) {
+                    shardEditor.apply();
+                }
+            }
+        }
+
+        @NonNull
+        private synchronized PreferenceStore.Editor shardEditorFor(@NonNull String key) {
+            return shardEditor(shardSelector.select(key));
+        }
+
+        @NonNull
+        private PreferenceStore.Editor shardEditor(int index) {
+            PreferenceStore.Editor shardEditor = shardEditors[index];
+            if (shardEditor == null) {
+                shardEditor = shards[index].edit();
+                shardEditors[index] = shardEditor;
+            }
+            return shardEditor;
+        }
+
+        /**
+         * @return the shard editors with changes, leaving this editor empty for reuse like a platform editor.
+         */
+        @NonNull
+        private synchronized PreferenceStore.Editor[] takeShardEditors() {
+            final PreferenceStore.Editor[] taken = shardEditors.clone();
+            Arrays.fill(shardEditors, null);
+            return taken;
+        }
+    }
+}
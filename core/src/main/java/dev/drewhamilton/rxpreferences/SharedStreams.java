@@ -0,0 +1,95 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.Observable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of hot, ref-counted preference streams, keyed by preference key, stream type and default value. Each cached
+ * stream replays its latest value to late subscribers and is evicted once its last subscriber disposes, so any number
+ * of subscribers to the same preference share one read and one {@link RxPreferenceListener}.
+ */
+final class SharedStreams {
+
+    private final ConcurrentMap<StreamKey, SharedStream<?>> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Get the shared stream for the given key, type and default value, creating it from {@code source} if no such
+     * stream is currently active. {@code type} must uniquely identify the element type of {@code source}.
+     */
+    @NonNull
+    <T> Observable<T> get(@NonNull String key, @NonNull Object type, @Nullable Object defaultValue,
+            @NonNull Observable<T> source) {
+        return get(new StreamKey(key, type, defaultValue), source);
+    }
+
+    /**
+     * Get the shared stream for a key created once with {@link StreamKey#StreamKey}, so that getting a stream that is
+     * already active does not allocate.
+     */
+    @NonNull
+    <T> Observable<T> get(@NonNull StreamKey streamKey, @NonNull Observable<T> source) {
+        SharedStream<?> stream = streams.get(streamKey);
+        if (stream == null) {
+            final SharedStream<T> created = new SharedStream<>(streamKey, source);
+            stream = streams.putIfAbsent(streamKey, created);
+            if (stream == null) {
+                stream = created;
+            }
+        }
+
+        // Streams are only cached under a key matching their element type:
+        @SuppressWarnings("unchecked")
+        final Observable<T> observable = (Observable<T>) stream.observable;
+        return observable;
+    }
+
+    private final class SharedStream<T> {
+
+        @NonNull final Observable<T> observable;
+
+        SharedStream(@NonNull StreamKey streamKey, @NonNull Observable<T> source) {
+            this.observable = source
+                    .doFinally(() -> streams.remove(streamKey, this))
+                    .replay(1)
+                    .refCount();
+        }
+    }
+
+    static final class StreamKey {
+
+        @NonNull private final String key;
+        @NonNull private final Object type;
+        @Nullable private final Object defaultValue;
+
+        StreamKey(@NonNull String key, @NonNull Object type, @Nullable Object defaultValue) {
+            this.key = key;
+            this.type = type;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof StreamKey)) {
+                return false;
+            }
+            final StreamKey that = (StreamKey) other;
+            return key.equals(that.key)
+                    && type.equals(that.type)
+                    && (defaultValue == null ? that.defaultValue == null : defaultValue.equals(that.defaultValue));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = key.hashCode();
+            result = 31 * result + type.hashCode();
+            result = 31 * result + (defaultValue == null ? 0 : defaultValue.hashCode());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The base of {@link PreferenceStore} implementations that serve reads from an immutable in-memory snapshot, which each
+ * commit replaces. Subclasses only decide how a commit is persisted; see {@link InMemoryPreferenceStore} for the
+ * guarantees this provides.
+ */
+abstract class SnapshotPreferenceStore implements PreferenceStore {
+
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+    // Marks a removal in an editor's edits:
+    private static final Object REMOVED = new Object();
+
+    @NonNull private final Object commitLock = new Object();
+    @NonNull private volatile PersistentPreferenceMap values;
+
+    // Copied on write, so notifying listeners does not allocate an iterator:
+    @NonNull private volatile Listener[] listeners = NO_LISTENERS;
+
+    SnapshotPreferenceStore(@NonNull PersistentPreferenceMap values) {
+        this.values = values;
+    }
+
+    /**
+     * @return an immutable snapshot of every preference in the store, which is not copied.
+     */
+    @NonNull
+    @Override
+    public Map<String, ?> getAll() {
+        return values;
+    }
+
+    /**
+     * @return a store that reads the current preferences, unaffected by later commits.
+     */
+    @NonNull
+    PreferenceStore snapshot() {
+        return new InMemoryPreferenceStore(values);
+    }
+
+    @Nullable
+    @Override
+    public String getString(@NonNull String key, @Nullable String defaultValue) {
+        final Object value = values.get(key);
+        return value == null ? defaultValue : (String) value;
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getStringSet(@NonNull String key, @Nullable Set<String> defaultValues) {
+        @SuppressWarnings("unchecked")
+        final Set<String> value = (Set<String>) values.get(key);
+        return value == null ? defaultValues : value;
+    }
+
+    @Override
+    public int getInt(@NonNull String key, int defaultValue) {
+        final Object value = values.get(key);
+        return value == null ? defaultValue : (Integer) value;
+    }
+
+    @Override
+    public long getLong(@NonNull String key, long defaultValue) {
+        final Object value = values.get(key);
+        return value == null ? defaultValue : (Long) value;
+    }
+
+    @Override
+    public float getFloat(@NonNull String key, float defaultValue) {
+        final Object value = values.get(key);
+        return value == null ? defaultValue : (Float) value;
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+        final Object value = values.get(key);
+        return value == null ? defaultValue : (Boolean) value;
+    }
+
+    @Override
+    public boolean contains(@NonNull String key) {
+        return values.containsKey(key);
+    }
+
+    @NonNull
+    @Override
+    public PreferenceStore.Editor edit() {
+        return new Editor();
+    }
+
+    @Override
+    public void registerListener(@NonNull Listener listener) {
+        synchronized (commitLock) {
+            final Listener[] current = listeners;
+            for (Listener registered : current) {
+                if (registered == listener) {
+                    return;
+                }
+            }
+            final Listener[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            listeners = updated;
+        }
+    }
+
+    @Override
+    public void unregisterListener(@NonNull Listener listener) {
+        synchronized (commitLock) {
+            final Listener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == listener) {
+                    final Listener[] updated = new Listener[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                    listeners = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Persist a commit before it becomes visible. Called while holding the commit lock, so calls never overlap.
+     *
+     * @param previous the preferences before the commit.
+     * @param updated the preferences after the commit.
+     * @param changedKeys the keys whose values differ between {@code previous} and {@code updated}, ignoring keys
+     * removed by a clear.
+     * @param cleared true if the commit cleared the store before applying its other changes.
+     * @param sync true if the commit must be durable before this returns, or false if it may be persisted later.
+     * @return true if the commit was persisted, or false to abandon it.
+     */
+    abstract boolean persist(@NonNull PersistentPreferenceMap previous, @NonNull PersistentPreferenceMap updated,
+            @NonNull List<String> changedKeys, boolean cleared, boolean sync);
+
+    /**
+     * @return a snapshot of {@code values}, with string sets copied.
+     * @throws IllegalArgumentException if a value is not a type that {@link PreferenceStore} supports.
+     */
+    @NonNull
+    static PersistentPreferenceMap checkedCopyOf(@NonNull Map<String, ?> values) {
+        PersistentPreferenceMap copy = PersistentPreferenceMap.EMPTY;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            final Object value = entry.getValue();
+            if (value != null) {
+                copy = copy.with(entry.getKey(), checkSupported(entry.getKey(), value));
+            }
+        }
+        return copy;
+    }
+
+    @NonNull
+    private static Object checkSupported(@NonNull String key, @NonNull Object value) {
+        if (value instanceof Set) {
+            return copyStringSet(key, (Set<?>) value);
+        } else if (value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Float || value instanceof Boolean) {
+            return value;
+        } else {
+            throw new IllegalArgumentException("Unsupported type for preference <" + key + ">: " + value.getClass());
+        }
+    }
+
+    @NonNull
+    static Set<String> copyStringSet(@NonNull String key, @NonNull Set<?> values) {
+        final Set<String> copy = new HashSet<>(values.size() * 4 / 3 + 1);
+        for (Object value : values) {
+            if (value != null && !(value instanceof String)) {
+                throw new IllegalArgumentException("Unsupported element in string set <" + key + ">: " + value);
+            }
+            copy.add((String) value);
+        }
+        return Collections.unmodifiableSet(copy);
+    }
+
+    /**
+     * A {@link PreferenceStore.Editor} that records changes until they are committed. Like the platform editor, it may
+     * be used from multiple threads.
+     */
+    private final class Editor implements PreferenceStore.Editor {
+
+        // Guarded by this:
+        private final Map<String, Object> edits = new LinkedHashMap<>();
+        private boolean clear;
+
+        @NonNull
+        @Override
+        public Editor putString(@NonNull String key, @Nullable String value) {
+            return put(key, value);
+        }
+
+        @NonNull
+        @Override
+        public Editor putStringSet(@NonNull String key, @Nullable Set<String> values) {
+            return put(key, values == null ? null : copyStringSet(key, values));
+        }
+
+        @NonNull
+        @Override
+        public Editor putInt(@NonNull String key, int value) {
+            return put(key, value);
+        }
+
+        @NonNull
+        @Override
+        public Editor putLong(@NonNull String key, long value) {
+            return put(key, value);
+        }
+
+        @NonNull
+        @Override
+        public Editor putFloat(@NonNull String key, float value) {
+            return put(key, value);
+        }
+
+        @NonNull
+        @Override
+        public Editor putBoolean(@NonNull String key, boolean value) {
+            return put(key, value);
+        }
+
+        @NonNull
+        @Override
+        public synchronized Editor remove(@NonNull String key) {
+            edits.put(key, REMOVED);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public synchronized Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return commit(true);
+        }
+
+        @Override
+        public void apply() {
+            commit(false);
+        }
+
+        private boolean commit(boolean sync) {
+            final boolean cleared;
+            final List<String> changedKeys;
+            synchronized (this) {
+                cleared = clear;
+                changedKeys = new ArrayList<>(edits.size());
+                clear = false;
+                synchronized (commitLock) {
+                    final PersistentPreferenceMap previous = values;
+                    PersistentPreferenceMap updated = cleared ? PersistentPreferenceMap.EMPTY : previous;
+                    for (Map.Entry<String, Object> edit : edits.entrySet()) {
+                        final PersistentPreferenceMap beforeEdit = updated;
+                        updated = edit.getValue() == REMOVED
+                                ? updated.without(edit.getKey())
+                                : updated.with(edit.getKey(), edit.getValue());
+                        if (updated != beforeEdit) {
+                            changedKeys.add(edit.getKey());
+                        }
+                    }
+                    edits.clear();
+
+                    if ((cleared || updated != previous) && !persist(previous, updated, changedKeys, cleared, sync)) {
+                        return false;
+                    }
+                    values = updated;
+                }
+            }
+
+            final Listener[] listeners = SnapshotPreferenceStore.this.listeners;
+            if (listeners.length > 0) {
+                if (cleared) {
+                    notifyListeners(listeners, null);
+                }
+                for (int i = 0; i < changedKeys.size(); i++) {
+                    notifyListeners(listeners, changedKeys.get(i));
+                }
+            }
+            return true;
+        }
+
+        @NonNull
+        private synchronized Editor put(@NonNull String key, @Nullable Object value) {
+            edits.put(key, value == null ? REMOVED : value);
+            return this;
+        }
+
+        private void notifyListeners(@NonNull Listener[] listeners, @Nullable String key) {
+            for (Listener listener : listeners) {
+                listener.onPreferenceChanged(SnapshotPreferenceStore.this, key);
+            }
+        }
+    }
+}
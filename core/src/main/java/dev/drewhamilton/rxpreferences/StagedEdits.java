@@ -0,0 +1,116 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Edits recorded by an {@link RxPreferences.Editor} without a store {@link PreferenceStore.Editor}, so that they
+ * can be merged with other edits before being written. As with the platform editor, the last edit of each key wins,
+ * and a clear applies before all edits.
+ */
+final class StagedEdits {
+
+    private static final Object REMOVED = new Object();
+
+    private final Map<String, Object> edits = new LinkedHashMap<>();
+    private boolean cleared;
+
+    void put(@NonNull String key, @NonNull Object value) {
+        edits.put(key, value);
+    }
+
+    void remove(@NonNull String key) {
+        edits.put(key, REMOVED);
+    }
+
+    void clear() {
+        cleared = true;
+    }
+
+    /**
+     * Merge {@code later} into these edits as if its edits were made after these. A clear in {@code later} discards
+     * all of these edits.
+     */
+    void addAll(@NonNull StagedEdits later) {
+        if (later.cleared) {
+            edits.clear();
+            cleared = true;
+        }
+        edits.putAll(later.edits);
+    }
+
+    /**
+     * @return a copy of these edits without any that would not change the current state of {@code preferences}: puts
+     * of a key's current value and removals of absent keys. If these edits clear the preferences, they are all kept.
+     */
+    @NonNull
+    StagedEdits withoutUnchanged(@NonNull PreferenceStore preferences) {
+        final StagedEdits changed = new StagedEdits();
+        changed.cleared = cleared;
+        for (Map.Entry<String, Object> edit : edits.entrySet()) {
+            final String key = edit.getKey();
+            final Object value = edit.getValue();
+            final boolean unchanged;
+            if (cleared) {
+                unchanged = false;
+            } else if (value == REMOVED) {
+                unchanged = !preferences.contains(key);
+            } else {
+                unchanged = value.equals(PreferenceValues.read(preferences, key, value));
+            }
+
+            if (!unchanged) {
+                changed.edits.put(key, value);
+            }
+        }
+        return changed;
+    }
+
+    @NonNull
+    Collection<String> keys() {
+        return edits.keySet();
+    }
+
+    boolean isCleared() {
+        return cleared;
+    }
+
+    int size() {
+        return edits.size();
+    }
+
+    boolean isEmpty() {
+        return edits.isEmpty() && !cleared;
+    }
+
+    void applyTo(@NonNull PreferenceStore.Editor editor) {
+        if (cleared) {
+            editor.clear();
+        }
+        for (Map.Entry<String, Object> edit : edits.entrySet()) {
+            final String key = edit.getKey();
+            final Object value = edit.getValue();
+            if (value == REMOVED) {
+                editor.remove(key);
+            } else if (value instanceof String) {
+                editor.putString(key, (String) value);
+            } else if (value instanceof Set) {
+                // The only sets staged are string sets, from Editor.putStringSet:
+                @SuppressWarnings("unchecked")
+                final Set<String> values = (Set<String>) value;
+                editor.putStringSet(key, values);
+            } else if (value instanceof Integer) {
+                editor.putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(key, (Long) value);
+            } else if (value instanceof Float) {
+                editor.putFloat(key, (Float) value);
+            } else {
+                editor.putBoolean(key, (Boolean) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.CompletableEmitter;
+import io.reactivex.rxjava3.core.Scheduler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the edits of every {@link RxPreferences.Editor} committed within a window and writes them with a single
+ * platform commit. A window opens with the first edits enqueued after a flush and is flushed when its time elapses or
+ * when the number of pending keys reaches the configured maximum, whichever comes first.
+ * <p>
+ * Every enqueued {@link Completable} completes or fails with the result of the flush that writes its edits.
+ * Disposing one does not withdraw its edits, since they may already be merged with others.
+ */
+final class WriteBehindQueue {
+
+    @NonNull private final PreferenceStore preferences;
+    @NonNull private final RxPreferenceDispatcher dispatcher;
+    private final long window;
+    @NonNull private final TimeUnit unit;
+    private final int maxPendingKeys;
+    @NonNull private final Scheduler scheduler;
+    private final boolean skipUnchangedWrites;
+
+    // Guarded by this:
+    @Nullable private StagedEdits pendingEdits;
+    @NonNull private List<CompletableEmitter> pendingEmitters = new ArrayList<>();
+    private long windowId;
+
+    WriteBehindQueue(@NonNull PreferenceStore preferences, @NonNull RxPreferenceDispatcher dispatcher, long window,
+            @NonNull TimeUnit unit, int maxPendingKeys, @NonNull Scheduler scheduler, boolean skipUnchangedWrites) {
+        this.preferences = preferences;
+        this.dispatcher = dispatcher;
+        this.window = window;
+        this.unit = unit;
+        this.maxPendingKeys = maxPendingKeys;
+        this.scheduler = scheduler;
+        this.skipUnchangedWrites = skipUnchangedWrites;
+    }
+
+    /**
+     * @return a {@link Completable} that merges a copy of {@code edits} into the current window upon subscription and
+     * completes once they are committed. If this fills the window, it is flushed on the subscribing thread.
+     */
+    @NonNull
+    Completable enqueue(@NonNull StagedEdits edits) {
+        return Completable.create(emitter -> {
+            final boolean flushNow;
+            final long id;
+            synchronized (this) {
+                if (pendingEdits == null) {
+                    pendingEdits = new StagedEdits();
+                    final long openedWindowId = ++windowId;
+                    scheduler.scheduleDirect(() -> flush(openedWindowId), window, unit);
+                }
+                pendingEdits.addAll(edits);
+                pendingEmitters.add(emitter);
+                flushNow = pendingEdits.size() >= maxPendingKeys;
+                id = windowId;
+            }
+
+            if (flushNow) {
+                flush(id);
+            }
+        });
+    }
+
+    /**
+     * Flush the window with the given ID, unless it has already been flushed.
+     */
+    private void flush(long id) {
+        final StagedEdits pending;
+        final List<CompletableEmitter> emitters;
+        synchronized (this) {
+            if (pendingEdits == null || id != windowId) {
+                return;
+            }
+            pending = pendingEdits;
+            emitters = pendingEmitters;
+            pendingEdits = null;
+            pendingEmitters = new ArrayList<>();
+        }
+
+        Throwable error = null;
+        try {
+            final StagedEdits edits = skipUnchangedWrites ? pending.withoutUnchanged(preferences) : pending;
+            if (!edits.isEmpty()) {
+                final PreferenceStore.Editor editor = preferences.edit();
+                edits.applyTo(editor);
+                if (!dispatcher.write(editor::commit, edits.keys(), edits.isCleared())) {
+                    error = new RxPreferences.Editor.CommitException();
+                }
+            }
+        } catch (Throwable throwable) {
+            error = throwable;
+        }
+
+        for (CompletableEmitter emitter : emitters) {
+            if (error == null) {
+                emitter.onComplete();
+            } else {
+                emitter.tryOnError(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package dev.drewhamilton.rxpreferences;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public final class BoxedValuesTest {
+
+    @Test
+    public void valueOf_intInCachedRange_returnsSameInstance() {
+        assertSame(BoxedValues.valueOf(1000), BoxedValues.valueOf(1000));
+        assertSame(BoxedValues.valueOf(-128), BoxedValues.valueOf(-128));
+    }
+
+    @Test
+    public void valueOf_intOutsideCachedRange_returnsEqualValue() {
+        assertEquals(Integer.valueOf(1024), BoxedValues.valueOf(1024));
+        assertEquals(Integer.valueOf(-129), BoxedValues.valueOf(-129));
+    }
+
+    @Test
+    public void valueOf_longInCachedRange_returnsSameInstance() {
+        assertSame(BoxedValues.valueOf(500L), BoxedValues.valueOf(500L));
+        assertEquals(Long.valueOf(123456789012L), BoxedValues.valueOf(123456789012L));
+    }
+
+    @Test
+    public void valueOf_wholeAndFractionalFloats_returnsSameInstance() {
+        assertSame(BoxedValues.valueOf(42f), BoxedValues.valueOf(42f));
+        assertSame(BoxedValues.valueOf(0.37f), BoxedValues.valueOf(0.37f));
+        assertEquals(Float.valueOf(0.37f), BoxedValues.valueOf(0.37f));
+    }
+
+    @Test
+    public void valueOf_uncachedFloats_returnsEqualValue() {
+        assertEquals(Float.valueOf(0.375f), BoxedValues.valueOf(0.375f));
+        assertNotSame(BoxedValues.valueOf(0.375f), BoxedValues.valueOf(0.375f));
+        assertEquals(Float.valueOf(-0f), BoxedValues.valueOf(-0f));
+        assertEquals(Float.valueOf(Float.NaN), BoxedValues.valueOf(Float.NaN));
+    }
+
+    @Test
+    public void valueOf_boolean_returnsConstants() {
+        assertSame(Boolean.TRUE, BoxedValues.valueOf(true));
+        assertSame(Boolean.FALSE, BoxedValues.valueOf(false));
+    }
+}
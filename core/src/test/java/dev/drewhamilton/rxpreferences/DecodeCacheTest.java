@@ -0,0 +1,99 @@
+package dev.drewhamilton.rxpreferences;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public final class DecodeCacheTest {
+
+    private final CountingAdapter adapter = new CountingAdapter();
+
+    @Test
+    public void decode_sameEncodedString_decodesOnce() {
+        final DecodeCache cache = new DecodeCache(4);
+        final String encoded = "1,2";
+
+        final int[] first = cache.decode("Key", encoded, adapter);
+        final int[] second = cache.decode("Key", encoded, adapter);
+        final int[] equalString = cache.decode("Key", new String(encoded.toCharArray()), adapter);
+
+        assertSame(first, second);
+        assertSame(first, equalString);
+        assertEquals(1, adapter.decodeCount.get());
+    }
+
+    @Test
+    public void decode_changedEncodedString_decodesAgain() {
+        final DecodeCache cache = new DecodeCache(4);
+
+        final int[] first = cache.decode("Key", "1", adapter);
+        final int[] second = cache.decode("Key", "2", adapter);
+
+        assertEquals(2, second[0]);
+        assertNotSame(first, second);
+        assertEquals(2, adapter.decodeCount.get());
+    }
+
+    @Test
+    public void decode_otherAdapter_decodesAgain() {
+        final DecodeCache cache = new DecodeCache(4);
+
+        cache.decode("Key", "1", adapter);
+        cache.decode("Key", "1", new CountingAdapter());
+        cache.decode("Key", "1", adapter);
+
+        assertEquals(2, adapter.decodeCount.get());
+    }
+
+    @Test
+    public void decode_pastMaxSize_evictsLeastRecentlyRead() {
+        final DecodeCache cache = new DecodeCache(2);
+        cache.decode("First", "1", adapter);
+        cache.decode("Second", "2", adapter);
+        cache.decode("First", "1", adapter);
+
+        cache.decode("Third", "3", adapter);
+        cache.decode("First", "1", adapter);
+        cache.decode("Second", "2", adapter);
+
+        assertEquals(4, adapter.decodeCount.get());
+    }
+
+    @Test
+    public void decode_maxSizeZero_decodesEveryTime() {
+        final DecodeCache cache = new DecodeCache(0);
+
+        cache.decode("Key", "1", adapter);
+        cache.decode("Key", "1", adapter);
+
+        assertEquals(2, adapter.decodeCount.get());
+    }
+
+    private static final class CountingAdapter implements PreferenceAdapter<int[]> {
+
+        final AtomicInteger decodeCount = new AtomicInteger();
+
+        @Override
+        public String encode(int[] value) {
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < value.length; i++) {
+                builder.append(i == 0 ? "" : ",").append(value[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public int[] decode(String encoded) {
+            decodeCount.incrementAndGet();
+            final String[] parts = encoded.split(",");
+            final int[] decoded = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                decoded[i] = Integer.parseInt(parts[i]);
+            }
+            return decoded;
+        }
+    }
+}
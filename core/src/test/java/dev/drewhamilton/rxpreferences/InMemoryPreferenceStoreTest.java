@@ -0,0 +1,232 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.observers.TestObserver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class InMemoryPreferenceStoreTest {
+
+    private final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+    private final List<String> changedKeys = new ArrayList<>();
+    private final PreferenceStore.Listener listener = (store, key) -> changedKeys.add(key);
+
+    @Test
+    public void getters_returnCommittedValuesOrDefaults() {
+        store.edit()
+                .putString("String", "Value")
+                .putStringSet("Set", Collections.singleton("Element"))
+                .putInt("Int", 1)
+                .putLong("Long", 2L)
+                .putFloat("Float", 3f)
+                .putBoolean("Boolean", true)
+                .commit();
+
+        assertEquals("Value", store.getString("String", null));
+        assertEquals(Collections.singleton("Element"), store.getStringSet("Set", null));
+        assertEquals(1, store.getInt("Int", 0));
+        assertEquals(2L, store.getLong("Long", 0L));
+        assertEquals(3f, store.getFloat("Float", 0f), 0f);
+        assertTrue(store.getBoolean("Boolean", false));
+        assertEquals("Default", store.getString("Missing", "Default"));
+        assertEquals(9, store.getInt("Missing", 9));
+        assertTrue(store.contains("Int"));
+        assertFalse(store.contains("Missing"));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void getter_wrongType_throwsClassCastException() {
+        store.edit().putInt("Key", 1).commit();
+        store.getString("Key", null);
+    }
+
+    @Test
+    public void edits_areNotVisibleUntilCommitted() {
+        final PreferenceStore.Editor editor = store.edit().putInt("Key", 1);
+        assertFalse(store.contains("Key"));
+
+        editor.commit();
+        assertEquals(1, store.getInt("Key", 0));
+    }
+
+    @Test
+    public void getAll_returnsSnapshotUnaffectedByLaterCommits() {
+        store.edit().putInt("First", 1).commit();
+        final Map<String, ?> snapshot = store.getAll();
+
+        store.edit().putInt("Second", 2).remove("First").commit();
+
+        assertEquals(Collections.singletonMap("First", 1), snapshot);
+        assertEquals(Collections.singletonMap("Second", 2), store.getAll());
+    }
+
+    @Test
+    public void getAll_noChanges_returnsSameSnapshot() {
+        store.edit().putInt("Key", 1).commit();
+        final Map<String, ?> snapshot = store.getAll();
+
+        store.edit().putInt("Key", 1).remove("Missing").commit();
+
+        assertSame(snapshot, store.getAll());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getStringSet_returnsUnmodifiableCopy() {
+        final Set<String> values = new HashSet<>(Arrays.asList("One", "Two"));
+        store.edit().putStringSet("Key", values).commit();
+        values.add("Three");
+
+        final Set<String> stored = store.getStringSet("Key", null);
+        assertEquals(new HashSet<>(Arrays.asList("One", "Two")), stored);
+        //noinspection ConstantConditions
+        stored.add("Four");
+    }
+
+    @Test
+    public void putNull_removesPreference() {
+        store.edit().putString("String", "Value").putStringSet("Set", Collections.<String>emptySet()).commit();
+
+        store.edit().putString("String", null).putStringSet("Set", null).commit();
+
+        assertTrue(store.getAll().isEmpty());
+    }
+
+    @Test
+    public void clear_appliesBeforeOtherEditsInSameCommit() {
+        store.edit().putInt("First", 1).putInt("Second", 2).commit();
+
+        store.edit().putInt("Third", 3).clear().commit();
+
+        assertEquals(Collections.singletonMap("Third", 3), store.getAll());
+    }
+
+    @Test
+    public void constructor_copiesInitialValues() {
+        final Map<String, Object> initialValues = new HashMap<>();
+        initialValues.put("String", "Value");
+        initialValues.put("Null", null);
+
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore(initialValues);
+        initialValues.put("Later", 1);
+
+        assertEquals(Collections.singletonMap("String", "Value"), store.getAll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_unsupportedType_throwsIllegalArgumentException() {
+        new InMemoryPreferenceStore(Collections.singletonMap("Key", 1.0));
+    }
+
+    @Test
+    public void listener_notifiedOncePerChangedKeyInEditOrder() {
+        store.edit().putInt("Unchanged", 1).commit();
+        store.registerListener(listener);
+
+        store.edit()
+                .putInt("Second", 2)
+                .putInt("Unchanged", 1)
+                .putInt("First", 0)
+                .putInt("First", 1)
+                .remove("Missing")
+                .commit();
+
+        assertEquals(Arrays.asList("Second", "First"), changedKeys);
+    }
+
+    @Test
+    public void listener_clear_notifiedWithNullKeyFirst() {
+        store.edit().putInt("Key", 1).commit();
+        store.registerListener(listener);
+
+        store.edit().putInt("Key", 1).clear().commit();
+
+        assertEquals(Arrays.asList(null, "Key"), changedKeys);
+    }
+
+    @Test
+    public void listener_registeredTwice_notifiedOnce() {
+        store.registerListener(listener);
+        store.registerListener(listener);
+
+        store.edit().putInt("Key", 1).commit();
+
+        assertEquals(Collections.singletonList("Key"), changedKeys);
+    }
+
+    @Test
+    public void listener_unregistered_notNotified() {
+        store.registerListener(listener);
+        store.unregisterListener(listener);
+
+        store.edit().putInt("Key", 1).commit();
+
+        assertTrue(changedKeys.isEmpty());
+    }
+
+    @Test
+    public void listener_seesAllChangesOfCommit() {
+        store.registerListener((store, key) -> changedKeys.add(key + "=" + store.getInt("First", 0)
+                + "," + store.getInt("Second", 0)));
+
+        store.edit().putInt("First", 1).putInt("Second", 2).commit();
+
+        assertEquals(Arrays.asList("First=1,2", "Second=1,2"), changedKeys);
+    }
+
+    @Test
+    public void concurrentReads_neverSeePartialCommit() throws InterruptedException {
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicBoolean tornReadSeen = new AtomicBoolean();
+        final CountDownLatch readerStarted = new CountDownLatch(1);
+        final Thread reader = new Thread(() -> {
+            readerStarted.countDown();
+            while (!done.get()) {
+                final Map<String, ?> snapshot = store.getAll();
+                if (!equal(snapshot.get("First"), snapshot.get("Second"))) {
+                    tornReadSeen.set(true);
+                }
+            }
+        });
+        reader.start();
+        readerStarted.await();
+
+        for (int i = 0; i < 10_000; i++) {
+            store.edit().putInt("First", i).putInt("Second", i).commit();
+        }
+        done.set(true);
+        reader.join();
+
+        assertFalse(tornReadSeen.get());
+    }
+
+    @Test
+    public void rxPreferences_streamEmitsCommittedChanges() {
+        final RxPreferences rxPreferences = RxPreferences.create(store);
+
+        final TestObserver<Integer> subscription = rxPreferences.getIntStream("Key", 0).test();
+        rxPreferences.edit().putInt("Key", 1).commit().test().assertComplete();
+        store.edit().putInt("Key", 2).commit();
+        store.edit().clear().commit();
+
+        subscription.assertValues(0, 1, 2, 0);
+        subscription.dispose();
+    }
+
+    private static boolean equal(Object first, Object second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+}
@@ -0,0 +1,195 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class LogPreferenceStoreTest {
+
+    private static final long COMPACTION_THRESHOLD = 1024;
+
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final TestScheduler compactionScheduler = new TestScheduler();
+
+    private File file;
+    private LogPreferenceStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(temporaryFolder.getRoot(), "preferences");
+        store = LogPreferenceStore.open(file, COMPACTION_THRESHOLD, compactionScheduler);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void reopen_replaysCommittedValuesOfEveryType() throws IOException {
+        store.edit()
+                .putString("String", "V\u00e4lue")
+                .putStringSet("Set", new HashSet<>(Arrays.asList("One", "Two", null)))
+                .putInt("Int", -1)
+                .putLong("Long", Long.MAX_VALUE)
+                .putFloat("Float", 0.25f)
+                .putBoolean("Boolean", true)
+                .commit();
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("String", "V\u00e4lue");
+        expected.put("Set", new HashSet<>(Arrays.asList("One", "Two", null)));
+        expected.put("Int", -1);
+        expected.put("Long", Long.MAX_VALUE);
+        expected.put("Float", 0.25f);
+        expected.put("Boolean", true);
+
+        assertEquals(expected, reopen().getAll());
+    }
+
+    @Test
+    public void reopen_replaysAppliedValues() throws IOException {
+        store.edit().putString("Key", "Value").apply();
+
+        assertEquals("Value", reopen().getString("Key", null));
+    }
+
+    @Test
+    public void reopen_replaysRemoveAndClearInOrder() throws IOException {
+        store.edit().putInt("First", 1).putInt("Second", 2).putInt("Third", 3).commit();
+        store.edit().remove("Third").commit();
+        store.edit().clear().putInt("Second", 2).commit();
+        store.edit().putInt("Fourth", 4).commit();
+
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("Second", 2);
+        expected.put("Fourth", 4);
+        assertEquals(expected, reopen().getAll());
+    }
+
+    @Test
+    public void commit_appendsOnlyChangedKeys() throws IOException {
+        final char[] chars = new char[500];
+        Arrays.fill(chars, 'x');
+        store.edit().putString("Large", new String(chars)).commit();
+        final long logLength = logFile(0).length();
+
+        store.edit().putInt("Counter", 1).putString("Large", new String(chars)).commit();
+
+        assertTrue(logFile(0).length() - logLength < 50);
+    }
+
+    @Test
+    public void logPastThreshold_compactsOnScheduler() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            store.edit().putLong("Timestamp", i).commit();
+        }
+        assertTrue(logFile(1).exists());
+        assertFalse(file.exists());
+
+        compactionScheduler.triggerActions();
+
+        assertTrue(file.exists());
+        assertFalse(logFile(0).exists());
+        assertEquals(99L, reopen().getLong("Timestamp", 0L));
+    }
+
+    @Test
+    public void reopen_afterCompaction_replaysLaterLog() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            store.edit().putInt("Counter", i).commit();
+        }
+        compactionScheduler.triggerActions();
+        store.edit().putString("Later", "Value").commit();
+
+        final LogPreferenceStore reopened = reopen();
+        assertEquals(99, reopened.getInt("Counter", 0));
+        assertEquals("Value", reopened.getString("Later", null));
+    }
+
+    @Test
+    public void reopen_beforeCompactionRuns_replaysAllLogs() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            store.edit().putInt("Counter", i).commit();
+        }
+        store.edit().putString("Later", "Value").commit();
+
+        final LogPreferenceStore reopened = reopen();
+        assertEquals(99, reopened.getInt("Counter", 0));
+        assertEquals("Value", reopened.getString("Later", null));
+    }
+
+    @Test
+    public void reopen_tornRecord_isDiscarded() throws IOException {
+        store.edit().putInt("Kept", 1).commit();
+        store.edit().putInt("Torn", 2).commit();
+        store.close();
+        final long length = logFile(0).length();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(logFile(0), "rw")) {
+            randomAccessFile.setLength(length - 3);
+        }
+
+        final LogPreferenceStore reopened = reopen();
+        assertEquals(Collections.singletonMap("Kept", 1), reopened.getAll());
+
+        reopened.edit().putInt("After", 3).commit();
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("Kept", 1);
+        expected.put("After", 3);
+        assertEquals(expected, reopen().getAll());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_corruptSnapshot_throwsIOException() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            store.edit().putInt("Counter", i).commit();
+        }
+        compactionScheduler.triggerActions();
+        store.close();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(20);
+            randomAccessFile.write(0xff);
+        }
+
+        LogPreferenceStore.open(file, COMPACTION_THRESHOLD, compactionScheduler);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_nonPositiveThreshold_throwsIllegalArgumentException() throws IOException {
+        LogPreferenceStore.open(new File(temporaryFolder.getRoot(), "other"), 0, compactionScheduler);
+    }
+
+    @Test
+    public void commit_afterClose_fails() throws IOException {
+        store.edit().putInt("Key", 1).commit();
+        store.close();
+
+        assertFalse(store.edit().putInt("Key", 2).commit());
+        assertEquals(1, store.getInt("Key", 0));
+    }
+
+    private LogPreferenceStore reopen() throws IOException {
+        store.close();
+        store = LogPreferenceStore.open(file, COMPACTION_THRESHOLD, compactionScheduler);
+        return store;
+    }
+
+    private File logFile(long generation) {
+        return new File(file.getPath() + "." + generation + ".log");
+    }
+}
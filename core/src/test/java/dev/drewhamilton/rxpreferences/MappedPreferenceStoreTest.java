@@ -0,0 +1,231 @@
+package dev.drewhamilton.rxpreferences;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class MappedPreferenceStoreTest {
+
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private MappedPreferenceStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(temporaryFolder.getRoot(), "preferences");
+        store = MappedPreferenceStore.open(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void reopen_readsCommittedValuesOfEveryType() throws IOException {
+        store.edit()
+                .putString("String", "V\u00e4lue")
+                .putStringSet("Set", new HashSet<>(Arrays.asList("One", "Two", null)))
+                .putInt("Int", -1)
+                .putLong("Long", Long.MAX_VALUE)
+                .putFloat("Float", 0.25f)
+                .putBoolean("Boolean", true)
+                .commit();
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("String", "V\u00e4lue");
+        expected.put("Set", new HashSet<>(Arrays.asList("One", "Two", null)));
+        expected.put("Int", -1);
+        expected.put("Long", Long.MAX_VALUE);
+        expected.put("Float", 0.25f);
+        expected.put("Boolean", true);
+
+        assertEquals(expected, reopen().getAll());
+    }
+
+    @Test
+    public void reopen_readsAppliedValues() throws IOException {
+        store.edit().putString("Key", "Value").apply();
+
+        assertEquals("Value", reopen().getString("Key", null));
+    }
+
+    @Test
+    public void putPrimitive_existingKeyOfSameType_updatesInPlace() throws IOException {
+        store.edit().putInt("Int", 1).putLong("Long", 1L).putFloat("Float", 1f).putBoolean("Boolean", false).commit();
+        final int end = readEnd();
+
+        store.edit().putInt("Int", 2).putLong("Long", 2L).putFloat("Float", 2f).putBoolean("Boolean", true).commit();
+
+        assertEquals(end, readEnd());
+        final MappedPreferenceStore reopened = reopen();
+        assertEquals(2, reopened.getInt("Int", 0));
+        assertEquals(2L, reopened.getLong("Long", 0L));
+        assertEquals(2f, reopened.getFloat("Float", 0f), 0f);
+        assertTrue(reopened.getBoolean("Boolean", false));
+    }
+
+    @Test
+    public void putString_existingKey_appendsAndReplaces() throws IOException {
+        store.edit().putString("Key", "First").commit();
+        final int end = readEnd();
+
+        store.edit().putString("Key", "Second").commit();
+
+        assertTrue(readEnd() > end);
+        assertEquals(Collections.singletonMap("Key", "Second"), reopen().getAll());
+    }
+
+    @Test
+    public void putPrimitive_existingKeyOfOtherType_replaces() throws IOException {
+        store.edit().putInt("Key", 1).commit();
+
+        store.edit().putLong("Key", 2L).commit();
+
+        assertEquals(Collections.singletonMap("Key", 2L), reopen().getAll());
+    }
+
+    @Test
+    public void remove_isPersisted() throws IOException {
+        store.edit().putString("Removed", "Value").putInt("Kept", 1).commit();
+
+        store.edit().remove("Removed").commit();
+
+        assertEquals(Collections.singletonMap("Kept", 1), reopen().getAll());
+    }
+
+    @Test
+    public void clear_isPersistedBeforeOtherEdits() throws IOException {
+        store.edit().putString("First", "Value").putInt("Second", 2).commit();
+
+        store.edit().clear().putInt("Second", 2).commit();
+
+        assertEquals(Collections.singletonMap("Second", 2), reopen().getAll());
+    }
+
+    @Test
+    public void manyAppends_compactDeadRecords() throws IOException {
+        final char[] chars = new char[1000];
+        for (int i = 0; i < 1000; i++) {
+            Arrays.fill(chars, (char) ('a' + i % 26));
+            store.edit().putString("Key", new String(chars)).putInt("Int " + (i % 10), i).commit();
+        }
+
+        assertTrue(file.length() <= 64 * 1024);
+        assertFalse(new File(file.getPath() + ".compact").exists());
+        final MappedPreferenceStore reopened = reopen();
+        assertEquals(new String(chars), reopened.getString("Key", null));
+        assertEquals(999, reopened.getInt("Int 9", 0));
+        assertEquals(11, reopened.getAll().size());
+    }
+
+    @Test
+    public void largeValue_growsFile() throws IOException {
+        final char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+
+        store.edit().putString("Key", new String(chars)).commit();
+
+        assertEquals(new String(chars), reopen().getString("Key", null));
+    }
+
+    @Test
+    public void commit_compactionFailsMidCommit_keepsPreviousContents() throws IOException {
+        final char[] chars = new char[1000];
+        for (int i = 0; i < 30; i++) {
+            Arrays.fill(chars, (char) ('a' + i));
+            store.edit().putString("Key", new String(chars)).putInt("Int", i).commit();
+        }
+        final Map<String, Object> previous = new HashMap<>(store.getAll());
+        // Compaction cannot create its new file where a directory is in the way:
+        assertTrue(new File(file.getPath() + ".compact").mkdir());
+
+        final char[] large = new char[5000];
+        Arrays.fill(large, 'x');
+        final boolean committed = store.edit()
+                .putString("Small", "Value")
+                .putInt("Int", 100)
+                .putString("Large", new String(large))
+                .commit();
+
+        assertFalse(committed);
+        assertEquals(previous, store.getAll());
+        assertEquals(previous, reopen().getAll());
+    }
+
+    @Test
+    public void commit_clearAfterFailedCommit_appliesOnlyTheClear() throws IOException {
+        final char[] chars = new char[1000];
+        for (int i = 0; i < 30; i++) {
+            Arrays.fill(chars, (char) ('a' + i));
+            store.edit().putString("Key", new String(chars)).commit();
+        }
+        assertTrue(new File(file.getPath() + ".compact").mkdir());
+        final char[] large = new char[5000];
+        Arrays.fill(large, 'x');
+        assertFalse(store.edit().putString("Small", "Value").putString("Large", new String(large)).commit());
+
+        assertTrue(store.edit().clear().putInt("Kept", 1).commit());
+
+        assertEquals(Collections.singletonMap("Kept", 1), reopen().getAll());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_otherFile_throwsIOException() throws IOException {
+        final File other = temporaryFolder.newFile();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(other, "rw")) {
+            randomAccessFile.writeUTF("<map></map>");
+        }
+
+        MappedPreferenceStore.open(other);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_corruptRecord_throwsIOException() throws IOException {
+        store.edit().putString("Key", "Value").commit();
+        store.close();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // Overwrite the key length of the first record:
+            randomAccessFile.seek(13);
+            randomAccessFile.writeInt(Integer.MAX_VALUE);
+        }
+
+        MappedPreferenceStore.open(file);
+    }
+
+    @Test
+    public void commit_afterClose_fails() throws IOException {
+        store.edit().putInt("Key", 1).commit();
+        store.close();
+
+        assertFalse(store.edit().putInt("Key", 2).commit());
+        assertEquals(1, store.getInt("Key", 0));
+    }
+
+    private MappedPreferenceStore reopen() throws IOException {
+        store.close();
+        store = MappedPreferenceStore.open(file);
+        return store;
+    }
+
+    private int readEnd() throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(8);
+            return randomAccessFile.readInt();
+        }
+    }
+}
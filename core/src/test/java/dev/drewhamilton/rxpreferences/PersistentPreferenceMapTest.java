@@ -0,0 +1,133 @@
+package dev.drewhamilton.rxpreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class PersistentPreferenceMapTest {
+
+    @Test
+    public void with_addsMappingAndLeavesOriginalUnchanged() {
+        final PersistentPreferenceMap original = PersistentPreferenceMap.EMPTY.with("First", 1);
+        final PersistentPreferenceMap updated = original.with("Second", "Two");
+
+        assertEquals(Collections.singletonMap("First", 1), original);
+        assertEquals(2, updated.size());
+        assertEquals(1, updated.get("First"));
+        assertEquals("Two", updated.get("Second"));
+    }
+
+    @Test
+    public void with_sameValue_returnsSameInstance() {
+        final PersistentPreferenceMap map = PersistentPreferenceMap.EMPTY.with("Key", 12L);
+        assertSame(map, map.with("Key", 12L));
+    }
+
+    @Test
+    public void without_removesMappingAndLeavesOriginalUnchanged() {
+        final PersistentPreferenceMap original = PersistentPreferenceMap.EMPTY.with("First", 1).with("Second", 2);
+        final PersistentPreferenceMap updated = original.without("First");
+
+        assertEquals(2, original.size());
+        assertEquals(Collections.singletonMap("Second", 2), updated);
+        assertFalse(updated.containsKey("First"));
+        assertNull(updated.get("First"));
+    }
+
+    @Test
+    public void without_missingKey_returnsSameInstance() {
+        final PersistentPreferenceMap map = PersistentPreferenceMap.EMPTY.with("Key", true);
+        assertSame(map, map.without("Missing key"));
+    }
+
+    @Test
+    public void copyOf_equalsSourceAndIteratesInKeyOrder() {
+        final Map<String, Object> source = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            source.put("Key " + i, i);
+        }
+
+        final PersistentPreferenceMap map = PersistentPreferenceMap.copyOf(source);
+
+        assertEquals(source, map);
+        assertEquals(source.hashCode(), map.hashCode());
+        assertEquals(new ArrayList<>(new TreeMap<>(source).keySet()), new ArrayList<>(map.keySet()));
+    }
+
+    @Test
+    public void withPrefix_keepsOnlyKeysWithPrefix() {
+        final Random random = new Random(5551212);
+        final TreeMap<String, Object> source = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            source.put(Integer.toString(random.nextInt(5000), 5), i);
+        }
+        final PersistentPreferenceMap map = PersistentPreferenceMap.copyOf(source);
+
+        for (String prefix : new String[] { "", "1", "23", "401", "4444", "9" }) {
+            final Map<String, Object> expected = new TreeMap<>();
+            for (Map.Entry<String, Object> entry : source.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    expected.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            final PersistentPreferenceMap matching = map.withPrefix(prefix);
+
+            assertEquals(expected, matching);
+            assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(matching.entrySet()));
+            // The cut map is still a valid treap:
+            assertEquals(expected.size() + 1, matching.with(prefix + "new", -1).size());
+        }
+    }
+
+    @Test
+    public void withPrefix_everyKeyMatches_returnsSameInstance() {
+        final PersistentPreferenceMap map = PersistentPreferenceMap.EMPTY.with("feature.a", true).with("feature.b", 1);
+        assertSame(map, map.withPrefix("feature."));
+        assertSame(map, map.withPrefix(""));
+    }
+
+    @Test
+    public void randomEdits_matchTreeMap() {
+        final Random random = new Random(8675309);
+        final TreeMap<String, Object> expected = new TreeMap<>();
+        PersistentPreferenceMap actual = PersistentPreferenceMap.EMPTY;
+        final List<PersistentPreferenceMap> history = new ArrayList<>();
+        final List<Map<String, Object>> expectedHistory = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            final String key = "Key " + random.nextInt(200);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.without(key);
+            } else {
+                final int value = random.nextInt(10);
+                expected.put(key, value);
+                actual = actual.with(key, value);
+            }
+
+            if (i % 100 == 0) {
+                history.add(actual);
+                expectedHistory.add(new TreeMap<>(expected));
+            }
+        }
+
+        assertEquals(expected, actual);
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(expectedHistory.get(i), history.get(i));
+        }
+        assertTrue(actual.size() <= 200);
+    }
+}
@@ -0,0 +1,168 @@
+package dev.drewhamilton.rxpreferences;
+
+import io.reactivex.rxjava3.observers.TestObserver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public final class ShardedPreferenceStoreTest {
+
+    private final InMemoryPreferenceStore firstShard = new InMemoryPreferenceStore();
+    private final InMemoryPreferenceStore secondShard = new InMemoryPreferenceStore();
+    private final InMemoryPreferenceStore thirdShard = new InMemoryPreferenceStore();
+
+    @Test
+    public void byHash_spreadsKeysAcrossShardsAndReadsThemBack() {
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byHash(firstShard, secondShard, thirdShard);
+        final PreferenceStore.Editor editor = store.edit();
+        final Map<String, Object> expected = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            editor.putInt("Key " + i, i);
+            expected.put("Key " + i, i);
+        }
+        editor.commit();
+
+        assertEquals(expected, store.getAll());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i, store.getInt("Key " + i, -1));
+        }
+        assertTrue(firstShard.getAll().size() > 0);
+        assertTrue(secondShard.getAll().size() > 0);
+        assertTrue(thirdShard.getAll().size() > 0);
+        assertEquals(30, firstShard.getAll().size() + secondShard.getAll().size() + thirdShard.getAll().size());
+    }
+
+    @Test
+    public void byHash_sameKey_alwaysSameShard() {
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byHash(firstShard, secondShard, thirdShard);
+        store.edit().putString("Key", "First").commit();
+        store.edit().putString("Key", "Second").commit();
+
+        assertEquals("Second", store.getString("Key", null));
+        assertEquals(1, firstShard.getAll().size() + secondShard.getAll().size() + thirdShard.getAll().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void byHash_noShards_throwsIllegalArgumentException() {
+        ShardedPreferenceStore.byHash();
+    }
+
+    @Test
+    public void byPrefix_usesLongestMatchingPrefixOrDefault() {
+        final Map<String, PreferenceStore> shardsByPrefix = new HashMap<>();
+        shardsByPrefix.put("user.", firstShard);
+        shardsByPrefix.put("user.settings.", secondShard);
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byPrefix(shardsByPrefix, thirdShard);
+
+        store.edit()
+                .putString("user.name", "Name")
+                .putBoolean("user.settings.dark", true)
+                .putLong("launch.time", 1L)
+                .commit();
+
+        assertEquals(Collections.singletonMap("user.name", "Name"), firstShard.getAll());
+        assertEquals(Collections.singletonMap("user.settings.dark", true), secondShard.getAll());
+        assertEquals(Collections.singletonMap("launch.time", 1L), thirdShard.getAll());
+        assertEquals(Arrays.asList(secondShard, firstShard, thirdShard), store.getShards());
+    }
+
+    @Test
+    public void byPrefix_storeForSeveralPrefixes_isOneShard() {
+        final Map<String, PreferenceStore> shardsByPrefix = new HashMap<>();
+        shardsByPrefix.put("a.", firstShard);
+        shardsByPrefix.put("b.", firstShard);
+
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byPrefix(shardsByPrefix, secondShard);
+
+        assertEquals(2, store.getShards().size());
+    }
+
+    @Test
+    public void edit_onlyCommitsTouchedShards() {
+        final PreferenceStore untouchedShard = mock(PreferenceStore.class);
+        final Map<String, PreferenceStore> shardsByPrefix = new HashMap<>();
+        shardsByPrefix.put("untouched.", untouchedShard);
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byPrefix(shardsByPrefix, firstShard);
+
+        assertTrue(store.edit().putInt("touched", 1).commit());
+
+        assertEquals(1, firstShard.getInt("touched", 0));
+        verifyNoMoreInteractions(untouchedShard);
+    }
+
+    @Test
+    public void commit_failingShard_returnsFalseAndStillCommitsOthers() {
+        final PreferenceStore failingShard = mock(PreferenceStore.class);
+        final PreferenceStore.Editor failingEditor = mock(PreferenceStore.Editor.class);
+        when(failingShard.edit()).thenReturn(failingEditor);
+        when(failingEditor.commit()).thenReturn(false);
+        final Map<String, PreferenceStore> shardsByPrefix = new HashMap<>();
+        shardsByPrefix.put("failing.", failingShard);
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byPrefix(shardsByPrefix, firstShard);
+
+        assertFalse(store.edit().putInt("failing.key", 1).putInt("key", 2).commit());
+        assertEquals(2, firstShard.getInt("key", 0));
+    }
+
+    @Test
+    public void clear_clearsEveryShard() {
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byHash(firstShard, secondShard);
+        final PreferenceStore.Editor editor = store.edit();
+        for (int i = 0; i < 10; i++) {
+            editor.putInt("Key " + i, i);
+        }
+        editor.commit();
+
+        store.edit().clear().putInt("Kept", 1).commit();
+
+        assertEquals(Collections.singletonMap("Kept", 1), store.getAll());
+    }
+
+    @Test
+    public void listener_notifiedWithShardedStoreForChangesInAnyShard() {
+        final ShardedPreferenceStore store = ShardedPreferenceStore.byHash(firstShard, secondShard, thirdShard);
+        final List<String> changedKeys = new ArrayList<>();
+        final PreferenceStore.Listener listener = (changedStore, key) -> {
+            assertSame(store, changedStore);
+            changedKeys.add(key);
+        };
+        store.registerListener(listener);
+        store.registerListener(listener);
+
+        final PreferenceStore.Editor editor = store.edit();
+        for (int i = 0; i < 10; i++) {
+            editor.putInt("Key " + i, i);
+        }
+        editor.commit();
+        store.unregisterListener(listener);
+        store.edit().putInt("Key 0", 100).commit();
+
+        assertEquals(10, changedKeys.size());
+        assertEquals(10, new HashSet<>(changedKeys).size());
+    }
+
+    @Test
+    public void rxPreferences_streamEmitsAcrossShardedCommits() {
+        final RxPreferences rxPreferences =
+                RxPreferences.create(ShardedPreferenceStore.byHash(firstShard, secondShard, thirdShard));
+
+        final TestObserver<Integer> subscription = rxPreferences.getIntStream("Key", 0).test();
+        rxPreferences.edit().putInt("Key", 1).putString("Other key", "Value").commit().test().assertComplete();
+
+        subscription.assertValues(0, 1);
+        subscription.dispose();
+    }
+}
@@ -3,12 +3,12 @@ package dev.drewhamilton.rxpreferences.dagger
 import android.content.SharedPreferences
 import dagger.Module
 import dagger.Provides
-import dev.drewhamilton.rxpreferences.RxPreferences
+import dev.drewhamilton.rxpreferences.RxSharedPreferences
 
 @Module
 internal object RxPreferencesModule {
 
     @JvmStatic
     @Provides
-    internal fun rxPreferences(sharedPreferences: SharedPreferences) = RxPreferences(sharedPreferences)
+    internal fun rxPreferences(sharedPreferences: SharedPreferences) = RxSharedPreferences.create(sharedPreferences)
 }
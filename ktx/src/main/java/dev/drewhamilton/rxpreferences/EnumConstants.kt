@@ -0,0 +1,60 @@
+package dev.drewhamilton.rxpreferences
+
+import io.reactivex.rxjava3.functions.Function
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The constants of one enum class, read once and kept for the life of the process. Unlike [enumValues], reading a
+ * constant by ordinal does not clone the constants array, and unlike [enumValueOf], reading a constant by name is a
+ * hash lookup.
+ *
+ * [fromName] and [fromOrdinal] are built once, so mapping a preference source with them does not allocate a new
+ * function for each call.
+ */
+@PublishedApi
+internal class EnumConstants<E : Enum<E>> private constructor(private val enumClass: Class<E>) {
+
+    private val constants: Array<E> = enumClass.enumConstants!!
+
+    private val constantsByName: Map<String, E> = HashMap<String, E>(constants.size * 4 / 3 + 1).apply {
+        for (constant in constants) {
+            put(constant.name, constant)
+        }
+    }
+
+    /**
+     * Resolves a name to its constant. Throws [IllegalArgumentException] if no constant has that name.
+     */
+    val fromName: Function<String, E> = Function { name ->
+        constantsByName[name] ?: throw IllegalArgumentException("No enum constant ${enumClass.name}.$name")
+    }
+
+    /**
+     * Resolves an ordinal to its constant. Throws [IndexOutOfBoundsException] if no constant has that ordinal.
+     */
+    val fromOrdinal: Function<Int, E> = Function { ordinal -> constants[ordinal] }
+
+    companion object {
+        private val cache = ConcurrentHashMap<Class<*>, EnumConstants<*>>()
+
+        /**
+         * Get the constants of [enumClass], reading them the first time the class is seen.
+         */
+        fun <E : Enum<E>> of(enumClass: Class<E>): EnumConstants<E> {
+            @Suppress("UNCHECKED_CAST") // Each entry is keyed by its own enum class
+            val cached = cache[enumClass] as EnumConstants<E>?
+            if (cached != null) {
+                return cached
+            }
+            val constants = EnumConstants(enumClass)
+            @Suppress("UNCHECKED_CAST") // Each entry is keyed by its own enum class
+            return (cache.putIfAbsent(enumClass, constants) as EnumConstants<E>?) ?: constants
+        }
+    }
+}
+
+/**
+ * Get the cached constants of [E].
+ */
+@PublishedApi
+internal inline fun <reified E : Enum<E>> enumConstants(): EnumConstants<E> = EnumConstants.of(E::class.java)
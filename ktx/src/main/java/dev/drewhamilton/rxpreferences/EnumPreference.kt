@@ -0,0 +1,92 @@
+package dev.drewhamilton.rxpreferences
+
+import io.reactivex.rxjava3.core.Completable
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.Single
+
+/**
+ * A handle to one enum preference of an [RxPreferences] instance, created with [RxPreferences.enumPreference] or
+ * [RxPreferences.enumByOrdinalPreference]. Like [Preference], its sources are built once when the handle is created,
+ * and stored values are resolved to constants without reflection or array copies, so a handle kept and reused for the
+ * same preference does not allocate on each read.
+ *
+ * [getStream] returns the same [Observable] on every call. Each subscription to it joins the stream shared with every
+ * other stream of the same stored preference and default value, including streams from [RxPreferences.getEnumStream]
+ * or [RxPreferences.getEnumByOrdinalStream].
+ */
+class EnumPreference<E : Enum<E>> private constructor(
+    /**
+     * The name of this preference.
+     */
+    val key: String,
+    /**
+     * The value emitted when this preference does not exist.
+     */
+    val defaultValue: E,
+    private val stored: Preference<*>,
+    private val once: Single<E>,
+    private val stream: Observable<E>,
+    private val encode: (E) -> Completable
+) {
+
+    /**
+     * Get a [Single] that will emit the value of this preference once, or [defaultValue] if it does not exist.
+     *
+     * Throws [ClassCastException] if the stored preference is not of the type this handle was created for. Throws
+     * [IllegalArgumentException] or [IndexOutOfBoundsException] if the stored value does not resolve to a value of type
+     * [E].
+     */
+    fun getOnce(): Single<E> = once
+
+    /**
+     * Observe the value of this preference. The returned [Observable] emits [defaultValue] if the preference does not
+     * exist upon subscription and if the preference is ever cleared.
+     *
+     * Throws the same errors as [getOnce].
+     */
+    fun getStream(): Observable<E> = stream
+
+    /**
+     * Set the value of this preference and commit it.
+     */
+    fun put(value: E): Completable = encode(value)
+
+    /**
+     * Remove this preference and commit the removal.
+     */
+    fun remove(): Completable = stored.remove()
+
+    override fun toString() = "EnumPreference(name=$key, defaultValue=$defaultValue)"
+
+    @PublishedApi
+    internal companion object {
+        fun <E : Enum<E>> byName(
+            rxPreferences: RxPreferences,
+            key: String,
+            defaultValue: E,
+            constants: EnumConstants<E>
+        ): EnumPreference<E> {
+            val stored = rxPreferences.stringPreference(key, defaultValue.name)
+            val fromName = constants.fromName
+            val once: Single<E> = stored.getOnce().map(fromName)
+            // Deferred, so each subscription joins the shared stream active at the time:
+            val stream: Observable<E> = Observable.defer<String> { stored.getStream() }.map(fromName)
+            val put: (E) -> Completable = { value -> stored.put(value.name) }
+            return EnumPreference(key, defaultValue, stored, once, stream, put)
+        }
+
+        fun <E : Enum<E>> byOrdinal(
+            rxPreferences: RxPreferences,
+            key: String,
+            defaultValue: E,
+            constants: EnumConstants<E>
+        ): EnumPreference<E> {
+            val stored = rxPreferences.intPreference(key, defaultValue.ordinal)
+            val fromOrdinal = constants.fromOrdinal
+            val once: Single<E> = stored.getOnce().map(fromOrdinal)
+            val stream: Observable<E> = Observable.defer<Int> { stored.getStream() }.map(fromOrdinal)
+            val put: (E) -> Completable = { value -> stored.put(value.ordinal) }
+            return EnumPreference(key, defaultValue, stored, once, stream, put)
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package dev.drewhamilton.rxpreferences
+
+import io.reactivex.rxjava3.core.Observable
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.launch
+
+/**
+ * Observe all preferences as a [Flow]. See [RxPreferences.getAllStream].
+ */
+fun RxPreferences.getAllFlow(): Flow<Map<String, *>> = getAllStream().asConflatedFlow()
+
+/**
+ * Observe the string value associated with [key] as a [Flow]. See [RxPreferences.getStringStream].
+ */
+fun RxPreferences.getStringFlow(key: String, defaultValue: String): Flow<String> =
+    getStringStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the string set associated with [key] as a [Flow]. See [RxPreferences.getStringSetStream].
+ */
+fun RxPreferences.getStringSetFlow(key: String, defaultValue: Set<String>): Flow<Set<String>> =
+    getStringSetStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the int value associated with [key] as a [Flow]. See [RxPreferences.getIntStream].
+ */
+fun RxPreferences.getIntFlow(key: String, defaultValue: Int): Flow<Int> =
+    getIntStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the long value associated with [key] as a [Flow]. See [RxPreferences.getLongStream].
+ */
+fun RxPreferences.getLongFlow(key: String, defaultValue: Long): Flow<Long> =
+    getLongStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the float value associated with [key] as a [Flow]. See [RxPreferences.getFloatStream].
+ */
+fun RxPreferences.getFloatFlow(key: String, defaultValue: Float): Flow<Float> =
+    getFloatStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the boolean value associated with [key] as a [Flow]. See [RxPreferences.getBooleanStream].
+ */
+fun RxPreferences.getBooleanFlow(key: String, defaultValue: Boolean): Flow<Boolean> =
+    getBooleanStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the enum value associated with [key], stored as a name string, as a [Flow]. See [getEnumStream].
+ */
+inline fun <reified E : Enum<E>> RxPreferences.getEnumFlow(key: String, defaultValue: E): Flow<E> =
+    getEnumStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the enum value associated with [key], stored as an ordinal int, as a [Flow]. See [getEnumByOrdinalStream].
+ */
+inline fun <reified E : Enum<E>> RxPreferences.getEnumByOrdinalFlow(key: String, defaultValue: E): Flow<E> =
+    getEnumByOrdinalStream(key, defaultValue).asConflatedFlow()
+
+/**
+ * Observe the value of this preference as a [Flow]. See [Preference.getStream].
+ */
+fun <T : Any> Preference<T>.asFlow(): Flow<T> = getStream().asConflatedFlow()
+
+/**
+ * Observe the value of this preference as a [Flow]. See [EnumPreference.getStream].
+ */
+fun <E : Enum<E>> EnumPreference<E>.asFlow(): Flow<E> = getStream().asConflatedFlow()
+
+/**
+ * Start observing this preference in [scope] and return a [StateFlow] holding its latest value, once the current value
+ * has been read. Every collector of the returned [StateFlow] shares the one observation, which runs until [scope] is
+ * cancelled. An error reading the preference is thrown from this function if it happens before the first value, and is
+ * otherwise handled by [scope]. Throws [IllegalStateException] if [scope] is cancelled before the first value.
+ */
+suspend fun <T : Any> Preference<T>.stateIn(scope: CoroutineScope): StateFlow<T> = asFlow().stateIn(scope)
+
+/**
+ * Start observing this preference in [scope] and return a [StateFlow] holding its latest value. See
+ * [Preference.stateIn].
+ */
+suspend fun <E : Enum<E>> EnumPreference<E>.stateIn(scope: CoroutineScope): StateFlow<E> = asFlow().stateIn(scope)
+
+/**
+ * Collect [this] in [scope] into a [StateFlow], returning it once the first value arrives.
+ */
+private suspend fun <T : Any> Flow<T>.stateIn(scope: CoroutineScope): StateFlow<T> {
+    val first = CompletableDeferred<StateFlow<T>>()
+    val job = scope.launch {
+        var state: MutableStateFlow<T>? = null
+        collect { value ->
+            val current = state
+            if (current == null) {
+                state = MutableStateFlow(value).also { first.complete(it) }
+            } else {
+                current.value = value
+            }
+        }
+    }
+    // Also runs if the collection never starts because scope is already cancelled:
+    job.invokeOnCompletion { cause ->
+        first.completeExceptionally(
+            if (cause == null || cause is CancellationException) {
+                IllegalStateException("Scope was cancelled before the first value", cause)
+            } else {
+                cause
+            }
+        )
+    }
+    return first.await()
+}
+
+/**
+ * Bridge [this] to a [Flow] without a channel: each collector subscribes to [this] directly, and values are handed over
+ * through a [MutableStateFlow], so a slow collector only ever sees the latest value. Preference streams are shared, so
+ * every collector of the same preference is served by one listener registration.
+ */
+@PublishedApi
+internal fun <T : Any> Observable<T>.asConflatedFlow(): Flow<T> = flow {
+    val latest = MutableStateFlow<Any>(NoValue)
+    val subscription = subscribe({ value -> latest.value = Next(value) }, { error -> latest.value = Failure(error) })
+    try {
+        latest.collect { signal ->
+            when (signal) {
+                is Next<*> -> {
+                    @Suppress("UNCHECKED_CAST") // Only values of this stream are wrapped
+                    emit(signal.value as T)
+                }
+                is Failure -> throw signal.error
+            }
+        }
+    } finally {
+        subscription.dispose()
+    }
+}
+
+private object NoValue
+
+/**
+ * Wraps each value, so that a value equal to the previous one is still delivered like it is by the source stream.
+ */
+private class Next<T>(val value: T)
+
+private class Failure(val error: Throwable)
@@ -0,0 +1,190 @@
+package dev.drewhamilton.rxpreferences
+
+import io.reactivex.rxjava3.disposables.Disposable
+import io.reactivex.rxjava3.observers.DisposableObserver
+import io.reactivex.rxjava3.plugins.RxJavaPlugins
+import kotlin.properties.ReadWriteProperty
+import kotlin.reflect.KProperty
+
+/**
+ * A property delegate for one preference of an [RxPreferences] instance, created with methods such as
+ * [RxPreferences.long]:
+ * ```
+ * var timeout by rxPreferences.long("timeout", 30L)
+ * ```
+ *
+ * The first read or write subscribes to the shared stream of the preference and keeps its latest value in a volatile
+ * field, so later reads cost a field load rather than a store lookup. A write updates the field immediately and then
+ * applies the change through [RxPreferences.Editor.apply], so it takes part in write-behind batching if that is
+ * enabled. If the write fails, the delegate goes back to the stored value and passes the error to `onWriteError`,
+ * which defaults to [RxJavaPlugins.onError].
+ *
+ * The subscription keeps a listener registered with the [RxPreferences] instance until [dispose] is called, and the
+ * listener holds on to the delegate. Dispose a delegate that belongs to a shorter-lived object, such as a screen, when
+ * that object is done. After [dispose], each read reads the store.
+ *
+ * Reads throw [ClassCastException] if there is a preference with this key that is not of the delegate's type. Once
+ * the preference has the delegate's type again, the next read subscribes again and caches its value.
+ */
+class PreferenceProperty<T : Any> internal constructor(
+    private val rxPreferences: RxPreferences,
+    private val preference: Preference<T>,
+    private val put: RxPreferences.Editor.(String, T) -> RxPreferences.Editor,
+    private val onWriteError: (Throwable) -> Unit
+) : ReadWriteProperty<Any?, T>, Disposable {
+
+    @Volatile private var value: Any = NotRead
+
+    // Guarded by this:
+    private var subscription: Disposable? = null
+    private var disposed = false
+
+    override fun getValue(thisRef: Any?, property: KProperty<*>): T {
+        val current = value
+        @Suppress("UNCHECKED_CAST") // Only values of this preference are stored
+        return if (current === NotRead) readUncached() else current as T
+    }
+
+    override fun setValue(thisRef: Any?, property: KProperty<*>, value: T) {
+        synchronized(this) {
+            // Observe before caching the written value, so changes from other writers are seen from now on:
+            observe()
+            if (!disposed) {
+                this.value = value
+            }
+        }
+        rxPreferences.edit().put(preference.key.name, value).apply().subscribe({}, { error ->
+            // The value was not written, so read the stored value until the next change:
+            this.value = NotRead
+            onWriteError(error)
+        })
+    }
+
+    @Synchronized
+    override fun dispose() {
+        disposed = true
+        subscription?.dispose()
+        subscription = null
+        value = NotRead
+    }
+
+    @Synchronized
+    override fun isDisposed() = disposed
+
+    @Synchronized
+    private fun readUncached(): T {
+        observe()
+        val current = value
+        @Suppress("UNCHECKED_CAST") // Only values of this preference are stored
+        return if (current === NotRead) preference.getOnce().blockingGet() else current as T
+    }
+
+    /**
+     * Subscribe to the stream of the preference if not already subscribed or disposed. Must be called holding the lock.
+     */
+    private fun observe() {
+        if (subscription == null && !disposed) {
+            // Assigned before subscribing, so an error during subscription can clear it:
+            val observer = StreamObserver()
+            subscription = observer
+            // The stream emits the current value on subscription, so reads from here on hit the field:
+            preference.getStream().subscribe(observer)
+        }
+    }
+
+    private inner class StreamObserver : DisposableObserver<T>() {
+        override fun onNext(latest: T) {
+            value = latest
+        }
+
+        override fun onError(error: Throwable) {
+            synchronized(this@PreferenceProperty) {
+                // Go back to the store, so the next read reports the error or, once it is fixed, subscribes again:
+                if (subscription === this) {
+                    subscription = null
+                    value = NotRead
+                }
+            }
+        }
+
+        override fun onComplete() {
+            // Preference streams do not complete
+        }
+    }
+
+    override fun toString() = "PreferenceProperty(name=${preference.key.name})"
+
+    private object NotRead
+}
+
+/**
+ * Delegate a property to the string value associated with [key]. See [PreferenceProperty].
+ *
+ * [onWriteError] receives any error applying a write. By default, errors go to [RxJavaPlugins.onError].
+ */
+fun RxPreferences.string(
+    key: String,
+    defaultValue: String,
+    onWriteError: (Throwable) -> Unit = RxJavaPlugins::onError
+): PreferenceProperty<String> =
+    PreferenceProperty(this, stringPreference(key, defaultValue), RxPreferences.Editor::putString, onWriteError)
+
+/**
+ * Delegate a property to the string set associated with [key]. See [PreferenceProperty].
+ *
+ * [onWriteError] receives any error applying a write. By default, errors go to [RxJavaPlugins.onError].
+ */
+fun RxPreferences.stringSet(
+    key: String,
+    defaultValue: Set<String>,
+    onWriteError: (Throwable) -> Unit = RxJavaPlugins::onError
+): PreferenceProperty<Set<String>> =
+    PreferenceProperty(this, stringSetPreference(key, defaultValue), RxPreferences.Editor::putStringSet, onWriteError)
+
+/**
+ * Delegate a property to the int value associated with [key]. See [PreferenceProperty].
+ *
+ * [onWriteError] receives any error applying a write. By default, errors go to [RxJavaPlugins.onError].
+ */
+fun RxPreferences.int(
+    key: String,
+    defaultValue: Int,
+    onWriteError: (Throwable) -> Unit = RxJavaPlugins::onError
+): PreferenceProperty<Int> =
+    PreferenceProperty(this, intPreference(key, defaultValue), RxPreferences.Editor::putInt, onWriteError)
+
+/**
+ * Delegate a property to the long value associated with [key]. See [PreferenceProperty].
+ *
+ * [onWriteError] receives any error applying a write. By default, errors go to [RxJavaPlugins.onError].
+ */
+fun RxPreferences.long(
+    key: String,
+    defaultValue: Long,
+    onWriteError: (Throwable) -> Unit = RxJavaPlugins::onError
+): PreferenceProperty<Long> =
+    PreferenceProperty(this, longPreference(key, defaultValue), RxPreferences.Editor::putLong, onWriteError)
+
+/**
+ * Delegate a property to the float value associated with [key]. See [PreferenceProperty].
+ *
+ * [onWriteError] receives any error applying a write. By default, errors go to [RxJavaPlugins.onError].
+ */
+fun RxPreferences.float(
+    key: String,
+    defaultValue: Float,
+    onWriteError: (Throwable) -> Unit = RxJavaPlugins::onError
+): PreferenceProperty<Float> =
+    PreferenceProperty(this, floatPreference(key, defaultValue), RxPreferences.Editor::putFloat, onWriteError)
+
+/**
+ * Delegate a property to the boolean value associated with [key]. See [PreferenceProperty].
+ *
+ * [onWriteError] receives any error applying a write. By default, errors go to [RxJavaPlugins.onError].
+ */
+fun RxPreferences.boolean(
+    key: String,
+    defaultValue: Boolean,
+    onWriteError: (Throwable) -> Unit = RxJavaPlugins::onError
+): PreferenceProperty<Boolean> =
+    PreferenceProperty(this, booleanPreference(key, defaultValue), RxPreferences.Editor::putBoolean, onWriteError)
@@ -14,7 +14,7 @@ import io.reactivex.rxjava3.core.Single
  */
 inline fun <reified E : Enum<E>> RxPreferences.getEnumOnce(key: String, defaultValue: E): Single<E> =
     getStringOnce(key, defaultValue.name)
-        .map { name -> enumValueOf<E>(name) }
+        .map(enumConstants<E>().fromName)
 
 /**
  * Observe enum values associated with [key]. The returned [Observable] emits [defaultValue] if the preference does not
@@ -26,7 +26,7 @@ inline fun <reified E : Enum<E>> RxPreferences.getEnumOnce(key: String, defaultV
  */
 inline fun <reified E : Enum<E>> RxPreferences.getEnumStream(key: String, defaultValue: E): Observable<E> =
     getStringStream(key, defaultValue.name)
-        .map { name -> enumValueOf<E>(name) }!!
+        .map(enumConstants<E>().fromName)!!
 
 /**
  * Get a [Single] that will emit the enum value associated with [key] once. If there is no value associated with [key],
@@ -38,7 +38,7 @@ inline fun <reified E : Enum<E>> RxPreferences.getEnumStream(key: String, defaul
  */
 inline fun <reified E : Enum<E>> RxPreferences.getEnumByOrdinalOnce(key: String, defaultValue: E): Single<E> =
     getIntOnce(key, defaultValue.ordinal)
-        .map { ordinal -> enumValues<E>()[ordinal] }
+        .map(enumConstants<E>().fromOrdinal)
 
 /**
  * Observe enum values associated with [key]. The returned [Observable] emits [defaultValue] if the preference does not
@@ -50,7 +50,24 @@ inline fun <reified E : Enum<E>> RxPreferences.getEnumByOrdinalOnce(key: String,
  */
 inline fun <reified E : Enum<E>> RxPreferences.getEnumByOrdinalStream(key: String, defaultValue: E): Observable<E> =
     getIntStream(key, defaultValue.ordinal)
-        .map { ordinal -> enumValues<E>()[ordinal] }!!
+        .map(enumConstants<E>().fromOrdinal)!!
+
+/**
+ * Create a handle to the enum preference associated with [key], stored as a name string like [putEnum]. See
+ * [EnumPreference].
+ */
+inline fun <reified E : Enum<E>> RxPreferences.enumPreference(key: String, defaultValue: E): EnumPreference<E> =
+    EnumPreference.byName(this, key, defaultValue, enumConstants())
+
+/**
+ * Create a handle to the enum preference associated with [key], stored as an ordinal int like [putEnumByOrdinal]. See
+ * [EnumPreference].
+ */
+inline fun <reified E : Enum<E>> RxPreferences.enumByOrdinalPreference(
+    key: String,
+    defaultValue: E
+): EnumPreference<E> =
+    EnumPreference.byOrdinal(this, key, defaultValue, enumConstants())
 
 /**
  * Apply a series of edits to [this] and then commit them.
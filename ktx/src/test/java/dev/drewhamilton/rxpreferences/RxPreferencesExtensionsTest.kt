@@ -1,26 +1,43 @@
 package dev.drewhamilton.rxpreferences
 
 import android.content.SharedPreferences
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener
 import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doThrow
 import com.nhaarman.mockitokotlin2.eq
 import com.nhaarman.mockitokotlin2.inOrder
 import com.nhaarman.mockitokotlin2.isA
 import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.times
 import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.verifyNoMoreInteractions
 import com.nhaarman.mockitokotlin2.whenever
 import io.reactivex.rxjava3.disposables.CompositeDisposable
 import io.reactivex.rxjava3.disposables.Disposable
+import io.reactivex.rxjava3.plugins.RxJavaPlugins
 import io.reactivex.rxjava3.schedulers.TestScheduler
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.yield
 import org.junit.After
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
 import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.ArgumentCaptor
 import org.mockito.ArgumentMatchers
-import org.mockito.InjectMocks
 import org.mockito.Mock
 import org.mockito.junit.MockitoJUnitRunner
 import java.util.concurrent.TimeUnit
@@ -31,7 +48,7 @@ class RxPreferencesExtensionsTest {
     @Mock private lateinit var mockSharedPreferences: SharedPreferences
     @Mock private lateinit var mockSharedPreferencesEditor: SharedPreferences.Editor
 
-    @InjectMocks private lateinit var rxPreferences: RxPreferences
+    private lateinit var rxPreferences: RxPreferences
 
     private lateinit var testScheduler: TestScheduler
 
@@ -42,6 +59,7 @@ class RxPreferencesExtensionsTest {
         whenever(mockSharedPreferences.edit()).thenReturn(mockSharedPreferencesEditor)
         whenever(mockSharedPreferencesEditor.commit()).thenReturn(true)
 
+        rxPreferences = RxSharedPreferences.create(mockSharedPreferences)
         testScheduler = TestScheduler()
     }
 
@@ -201,13 +219,15 @@ class RxPreferencesExtensionsTest {
         val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
         verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
 
+        val updatedValue = PreferenceType.LONG
+        mockGet(PreferenceType.STRING, testKey, updatedValue.name)
         val listener = listenerCaptor.value
         listener.onSharedPreferenceChanged(mockSharedPreferences, testKey)
 
         subscription
             .assertNotComplete()
             .assertValueCount(2)
-            .assertValues(testValue, testValue)
+            .assertValues(testValue, updatedValue)
     }
 
     @Test
@@ -269,13 +289,15 @@ class RxPreferencesExtensionsTest {
         val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
         verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
 
+        val updatedValue = PreferenceType.FLOAT
+        mockGet(PreferenceType.INT, testKey, updatedValue.ordinal)
         val listener = listenerCaptor.value
         listener.onSharedPreferenceChanged(mockSharedPreferences, testKey)
 
         subscription
             .assertNotComplete()
             .assertValueCount(2)
-            .assertValues(testValue, testValue)
+            .assertValues(testValue, updatedValue)
     }
 
     @Test
@@ -335,11 +357,318 @@ class RxPreferencesExtensionsTest {
 
         // After subscribing, the preference is retrieved from the internal preferences:
         verifyGet(type, key, defaultValue)
-        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(isA<RxPreferenceChangeListener<*>>())
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(isA<OnSharedPreferenceChangeListener>())
         verifyNoMoreInteractions(mockSharedPreferences)
         assertFalse(subscription.isDisposed)
     }
     //endregion
+
+    //region enum constants
+    @Test
+    fun `getEnumStream with unknown name emits IllegalArgumentException`() {
+        val testKey = "Test enum key"
+        mockGet(PreferenceType.STRING, testKey, "Unknown")
+
+        rxPreferences.getEnumStream(testKey, PreferenceType.BOOLEAN)
+            .test()
+            .trackUntilTearDown()
+            .assertError(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun `getEnumByOrdinalOnce with unknown ordinal emits IndexOutOfBoundsException`() {
+        val testKey = "Test enum ordinal key"
+        mockGet(PreferenceType.INT, testKey, PreferenceType.values().size)
+
+        rxPreferences.getEnumByOrdinalOnce(testKey, PreferenceType.BOOLEAN)
+            .test()
+            .trackUntilTearDown()
+            .assertError(IndexOutOfBoundsException::class.java)
+    }
+
+    @Test
+    fun `enumConstants are read once per enum class`() {
+        assertSame(enumConstants<PreferenceType>(), enumConstants<PreferenceType>())
+    }
+    //endregion
+
+    //region enum preference handles
+    @Test
+    fun `enumPreference reads and observes name strings`() {
+        val testKey = "Test enum key"
+        mockGet(PreferenceType.STRING, testKey, PreferenceType.LONG.name)
+        val preference = rxPreferences.enumPreference(testKey, PreferenceType.BOOLEAN)
+
+        assertSame(preference.getOnce(), preference.getOnce())
+        assertSame(preference.getStream(), preference.getStream())
+        preference.getOnce()
+            .test()
+            .trackUntilTearDown()
+            .assertValue(PreferenceType.LONG)
+        val subscription = preference.getStream()
+            .test()
+            .trackUntilTearDown()
+
+        val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
+        mockGet(PreferenceType.STRING, testKey, PreferenceType.INT.name)
+        listenerCaptor.value.onSharedPreferenceChanged(mockSharedPreferences, testKey)
+
+        subscription.assertValues(PreferenceType.LONG, PreferenceType.INT)
+    }
+
+    @Test
+    fun `enum preference stream can be subscribed again after it is released`() {
+        val testKey = "Test enum key"
+        mockGet(PreferenceType.STRING, testKey, PreferenceType.LONG.name)
+        val preference = rxPreferences.enumPreference(testKey, PreferenceType.BOOLEAN)
+        val stream = preference.getStream()
+        stream.test().assertValue(PreferenceType.LONG).dispose()
+
+        mockGet(PreferenceType.STRING, testKey, PreferenceType.INT.name)
+
+        stream.test()
+            .trackUntilTearDown()
+            .assertValue(PreferenceType.INT)
+    }
+
+    @Test
+    fun `enumByOrdinalPreference reads ordinal ints`() {
+        val testKey = "Test enum ordinal key"
+        mockGet(PreferenceType.INT, testKey, PreferenceType.FLOAT.ordinal)
+
+        rxPreferences.enumByOrdinalPreference(testKey, PreferenceType.STRING).getOnce()
+            .test()
+            .trackUntilTearDown()
+            .assertValue(PreferenceType.FLOAT)
+        verifyGet(PreferenceType.INT, testKey, PreferenceType.STRING.ordinal)
+    }
+
+    @Test
+    fun `enum preference put and remove commit stored values`() {
+        whenever(mockSharedPreferencesEditor.putString(any(), any())).thenReturn(mockSharedPreferencesEditor)
+        whenever(mockSharedPreferencesEditor.putInt(any(), any())).thenReturn(mockSharedPreferencesEditor)
+        whenever(mockSharedPreferencesEditor.remove(any())).thenReturn(mockSharedPreferencesEditor)
+
+        rxPreferences.enumPreference("Name key", PreferenceType.BOOLEAN).put(PreferenceType.LONG)
+            .test()
+            .trackUntilTearDown()
+            .assertComplete()
+        rxPreferences.enumByOrdinalPreference("Ordinal key", PreferenceType.BOOLEAN).put(PreferenceType.FLOAT)
+            .test()
+            .trackUntilTearDown()
+            .assertComplete()
+        rxPreferences.enumPreference("Name key", PreferenceType.BOOLEAN).remove()
+            .test()
+            .trackUntilTearDown()
+            .assertComplete()
+
+        val editingOrder = inOrder(mockSharedPreferencesEditor)
+        editingOrder.verify(mockSharedPreferencesEditor).putString("Name key", PreferenceType.LONG.name)
+        editingOrder.verify(mockSharedPreferencesEditor).commit()
+        editingOrder.verify(mockSharedPreferencesEditor).putInt("Ordinal key", PreferenceType.FLOAT.ordinal)
+        editingOrder.verify(mockSharedPreferencesEditor).commit()
+        editingOrder.verify(mockSharedPreferencesEditor).remove("Name key")
+        editingOrder.verify(mockSharedPreferencesEditor).commit()
+    }
+    //endregion
+
+    //region Flow
+    @Test
+    fun `getIntFlow collectors share one listener and receive updates`() = runBlocking<Unit> {
+        val testKey = "Test int key"
+        mockGet(PreferenceType.INT, testKey, 1)
+        val firstValues = mutableListOf<Int>()
+        val secondValues = mutableListOf<Int>()
+
+        val first = launch(start = CoroutineStart.UNDISPATCHED) {
+            rxPreferences.getIntFlow(testKey, 0).toList(firstValues)
+        }
+        val second = launch(start = CoroutineStart.UNDISPATCHED) {
+            rxPreferences.getIntFlow(testKey, 0).toList(secondValues)
+        }
+
+        val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
+        mockGet(PreferenceType.INT, testKey, 2)
+        listenerCaptor.value.onSharedPreferenceChanged(mockSharedPreferences, testKey)
+        yield()
+
+        assertEquals(listOf(1, 2), firstValues)
+        assertEquals(listOf(1, 2), secondValues)
+
+        first.cancel()
+        verify(mockSharedPreferences, never()).unregisterOnSharedPreferenceChangeListener(ArgumentMatchers.any())
+        second.cancelAndJoin()
+        verify(mockSharedPreferences).unregisterOnSharedPreferenceChangeListener(listenerCaptor.value)
+    }
+
+    @Test
+    fun `getEnumFlow with unknown name throws IllegalArgumentException`() = runBlocking<Unit> {
+        val testKey = "Test enum key"
+        mockGet(PreferenceType.STRING, testKey, "Unknown")
+
+        try {
+            rxPreferences.getEnumFlow(testKey, PreferenceType.BOOLEAN).first()
+            fail("Expected IllegalArgumentException")
+        } catch (expected: IllegalArgumentException) {
+        }
+    }
+
+    @Test
+    fun `Preference stateIn holds the current value and follows updates`() = runBlocking<Unit> {
+        val testKey = "Test boolean key"
+        mockGet(PreferenceType.BOOLEAN, testKey, true)
+        val scope = CoroutineScope(coroutineContext + Job())
+
+        val state = rxPreferences.booleanPreference(testKey, false).stateIn(scope)
+        assertEquals(true, state.value)
+
+        val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
+        mockGet(PreferenceType.BOOLEAN, testKey, false)
+        listenerCaptor.value.onSharedPreferenceChanged(mockSharedPreferences, testKey)
+        yield()
+
+        assertEquals(false, state.value)
+        scope.cancel()
+    }
+
+    @Test
+    fun `Preference stateIn with cancelled scope throws IllegalStateException`() = runBlocking<Unit> {
+        val scope = CoroutineScope(Job())
+        scope.cancel()
+
+        try {
+            withTimeout(1000) {
+                rxPreferences.booleanPreference("Test boolean key", false).stateIn(scope)
+            }
+            fail("Expected IllegalStateException")
+        } catch (expected: IllegalStateException) {
+        }
+    }
+    //endregion
+
+    //region property delegates
+    @Test
+    fun `long delegate reads the store once and follows updates`() {
+        val testKey = "Test long key"
+        mockGet(PreferenceType.LONG, testKey, 30L)
+        val delegate = rxPreferences.long(testKey, 0L)
+        val timeout by delegate
+
+        assertEquals(30L, timeout)
+        assertEquals(30L, timeout)
+        verifyGet(PreferenceType.LONG, testKey, 0L)
+
+        val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
+        mockGet(PreferenceType.LONG, testKey, 60L)
+        listenerCaptor.value.onSharedPreferenceChanged(mockSharedPreferences, testKey)
+
+        assertEquals(60L, timeout)
+        verify(mockSharedPreferences, times(2)).getLong(testKey, 0L)
+    }
+
+    @Test
+    fun `boolean delegate write is visible immediately and applied`() {
+        val testKey = "Test boolean key"
+        mockGet(PreferenceType.BOOLEAN, testKey, false)
+        whenever(mockSharedPreferencesEditor.putBoolean(any(), any())).thenReturn(mockSharedPreferencesEditor)
+        var enabled by rxPreferences.boolean(testKey, false)
+
+        enabled = true
+
+        assertTrue(enabled)
+        val editingOrder = inOrder(mockSharedPreferencesEditor)
+        editingOrder.verify(mockSharedPreferencesEditor).putBoolean(testKey, true)
+        editingOrder.verify(mockSharedPreferencesEditor).apply()
+        verify(mockSharedPreferencesEditor, never()).commit()
+
+        // A write before the first read still observes later changes:
+        val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
+        mockGet(PreferenceType.BOOLEAN, testKey, true)
+        listenerCaptor.value.onSharedPreferenceChanged(mockSharedPreferences, testKey)
+        mockGet(PreferenceType.BOOLEAN, testKey, false)
+        listenerCaptor.value.onSharedPreferenceChanged(mockSharedPreferences, testKey)
+
+        assertFalse(enabled)
+    }
+
+    @Test
+    fun `failed delegate write is reported and reverts to the stored value`() {
+        val testKey = "Test int key"
+        mockGet(PreferenceType.INT, testKey, 1)
+        whenever(mockSharedPreferencesEditor.putInt(any(), any())).thenReturn(mockSharedPreferencesEditor)
+        val failure = IllegalStateException("Test failure")
+        doThrow(failure).whenever(mockSharedPreferencesEditor).apply()
+        val errors = mutableListOf<Throwable>()
+        var count by rxPreferences.int(testKey, 0) { error -> errors.add(error) }
+
+        count = 2
+
+        assertEquals(listOf<Throwable>(failure), errors)
+        assertEquals(1, count)
+    }
+
+    @Test
+    fun `failed delegate write goes to RxJavaPlugins by default`() {
+        val testKey = "Test int key"
+        mockGet(PreferenceType.INT, testKey, 1)
+        whenever(mockSharedPreferencesEditor.putInt(any(), any())).thenReturn(mockSharedPreferencesEditor)
+        val failure = IllegalStateException("Test failure")
+        doThrow(failure).whenever(mockSharedPreferencesEditor).apply()
+        val errors = mutableListOf<Throwable>()
+        RxJavaPlugins.setErrorHandler { error -> errors.add(error) }
+        try {
+            var count by rxPreferences.int(testKey, 0)
+
+            count = 2
+
+            assertEquals(listOf<Throwable>(failure), errors)
+        } finally {
+            RxJavaPlugins.reset()
+        }
+    }
+
+    @Test
+    fun `delegate recovers after the preference changes type and back`() {
+        val inMemoryPreferences = RxPreferences.create(InMemoryPreferenceStore())
+        val testKey = "Test int key"
+        var count by inMemoryPreferences.int(testKey, 0)
+        count = 5
+        assertEquals(5, count)
+
+        inMemoryPreferences.edit().putString(testKey, "Five").commit().blockingAwait()
+        try {
+            count
+            fail("Expected ClassCastException")
+        } catch (expected: ClassCastException) {
+        }
+        inMemoryPreferences.edit().putInt(testKey, 9).commit().blockingAwait()
+
+        assertEquals(9, count)
+    }
+
+    @Test
+    fun `disposed delegate unregisters its listener and reads the store`() {
+        val testKey = "Test string key"
+        mockGet(PreferenceType.STRING, testKey, "First")
+        val delegate = rxPreferences.string(testKey, "Default")
+        val name by delegate
+        assertEquals("First", name)
+        val listenerCaptor = ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener::class.java)
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture())
+
+        delegate.dispose()
+        mockGet(PreferenceType.STRING, testKey, "Second")
+
+        assertTrue(delegate.isDisposed)
+        verify(mockSharedPreferences).unregisterOnSharedPreferenceChangeListener(listenerCaptor.value)
+        assertEquals("Second", name)
+    }
+    //endregion
     //endregion
 
     //region Editor
@@ -0,0 +1,36 @@
+package dev.drewhamilton.rxpreferences;
+
+import android.content.SharedPreferences;
+import io.reactivex.rxjava3.annotations.NonNull;
+
+/**
+ * Creates {@link RxPreferences} instances wrapping Android's {@link SharedPreferences}.
+ */
+public final class RxSharedPreferences {
+
+    /**
+     * Create an instance of {@link RxPreferences} wrapping the provided instance of {@link SharedPreferences}.
+     *
+     * @param preferences the {@link SharedPreferences} instance to wrap.
+     * @return a new {@link RxPreferences} instance.
+     */
+    @NonNull
+    public static RxPreferences create(@NonNull SharedPreferences preferences) {
+        return RxPreferences.create(new SharedPreferencesStore(preferences));
+    }
+
+    /**
+     * Create a builder for an {@link RxPreferences} instance wrapping the provided {@link SharedPreferences}.
+     *
+     * @param preferences the {@link SharedPreferences} instance to wrap.
+     * @return a new {@link RxPreferences.Builder}.
+     */
+    @NonNull
+    public static RxPreferences.Builder builder(@NonNull SharedPreferences preferences) {
+        return RxPreferences.builder(new SharedPreferencesStore(preferences));
+    }
+
+    private RxSharedPreferences() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,180 @@
+package dev.drewhamilton.rxpreferences;
+
+import android.content.SharedPreferences;
+import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.annotations.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adapts Android's {@link SharedPreferences} to a {@link PreferenceStore}, for example to use several
+ * {@link SharedPreferences} files as the shards of a {@link ShardedPreferenceStore}. {@link RxSharedPreferences} wraps
+ * a single {@link SharedPreferences} instance with it.
+ */
+public final class SharedPreferencesStore implements PreferenceStore {
+
+    @NonNull private final SharedPreferences preferences;
+
+    // Guarded by itself:
+    private final Map<Listener, SharedPreferences.OnSharedPreferenceChangeListener> listeners = new HashMap<>();
+
+    /**
+     * @param preferences the {@link SharedPreferences} instance to adapt.
+     */
+    public SharedPreferencesStore(@NonNull SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    @NonNull
+    @Override
+    public Map<String, ?> getAll() {
+        return preferences.getAll();
+    }
+
+    @Nullable
+    @Override
+    public String getString(@NonNull String key, @Nullable String defaultValue) {
+        return preferences.getString(key, defaultValue);
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getStringSet(@NonNull String key, @Nullable Set<String> defaultValues) {
+        return preferences.getStringSet(key, defaultValues);
+    }
+
+    @Override
+    public int getInt(@NonNull String key, int defaultValue) {
+        return preferences.getInt(key, defaultValue);
+    }
+
+    @Override
+    public long getLong(@NonNull String key, long defaultValue) {
+        return preferences.getLong(key, defaultValue);
+    }
+
+    @Override
+    public float getFloat(@NonNull String key, float defaultValue) {
+        return preferences.getFloat(key, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+        return preferences.getBoolean(key, defaultValue);
+    }
+
+    @Override
+    public boolean contains(@NonNull String key) {
+        return preferences.contains(key);
+    }
+
+    @NonNull
+    @Override
+    public PreferenceStore.Editor edit() {
+        return new Editor(preferences.edit());
+    }
+
+    /**
+     * {@link SharedPreferences} only holds its listeners weakly, so the adapting listener is held here until it is
+     * unregistered.
+     */
+    @Override
+    public void registerListener(@NonNull Listener listener) {
+        final SharedPreferences.OnSharedPreferenceChangeListener platformListener;
+        synchronized (listeners) {
+            if (listeners.containsKey(listener)) {
+                return;
+            }
+            platformListener = (sharedPreferences, key) -> listener.onPreferenceChanged(this, key);
+            listeners.put(listener, platformListener);
+        }
+        preferences.registerOnSharedPreferenceChangeListener(platformListener);
+    }
+
+    @Override
+    public void unregisterListener(@NonNull Listener listener) {
+        final SharedPreferences.OnSharedPreferenceChangeListener platformListener;
+        synchronized (listeners) {
+            platformListener = listeners.remove(listener);
+        }
+        if (platformListener != null) {
+            preferences.unregisterOnSharedPreferenceChangeListener(platformListener);
+        }
+    }
+
+    private static final class Editor implements PreferenceStore.Editor {
+
+        @NonNull private final SharedPreferences.Editor editor;
+
+        Editor(@NonNull SharedPreferences.Editor editor) {
+            this.editor = editor;
+        }
+
+        @NonNull
+        @Override
+        public Editor putString(@NonNull String key, @Nullable String value) {
+            editor.putString(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putStringSet(@NonNull String key, @Nullable Set<String> values) {
+            editor.putStringSet(key, values);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putInt(@NonNull String key, int value) {
+            editor.putInt(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putLong(@NonNull String key, long value) {
+            editor.putLong(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putFloat(@NonNull String key, float value) {
+            editor.putFloat(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor putBoolean(@NonNull String key, boolean value) {
+            editor.putBoolean(key, value);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor remove(@NonNull String key) {
+            editor.remove(key);
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public Editor clear() {
+            editor.clear();
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return editor.commit();
+        }
+
+        @Override
+        public void apply() {
+            editor.apply();
+        }
+    }
+}
@@ -1,22 +1,32 @@
 package dev.drewhamilton.rxpreferences;
 
 import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
 import io.reactivex.rxjava3.disposables.Disposable;
 import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import io.reactivex.rxjava3.schedulers.TestScheduler;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -24,6 +34,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
@@ -33,9 +44,12 @@ import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anySet;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isA;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -46,7 +60,7 @@ public final class RxPreferencesTest {
     @Mock private SharedPreferences mockSharedPreferences;
     @Mock private SharedPreferences.Editor mockSharedPreferencesEditor;
 
-    @InjectMocks private RxPreferences rxPreferences;
+    private RxPreferences rxPreferences;
 
     private TestScheduler testScheduler;
 
@@ -57,6 +71,7 @@ public final class RxPreferencesTest {
         when(mockSharedPreferences.edit()).thenReturn(mockSharedPreferencesEditor);
         when(mockSharedPreferencesEditor.commit()).thenReturn(true);
 
+        rxPreferences = RxSharedPreferences.create(mockSharedPreferences);
         testScheduler = new TestScheduler();
     }
 
@@ -124,6 +139,9 @@ public final class RxPreferencesTest {
                 ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
         verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
 
+        final Map<String, ?> updatedMap = Collections.singletonMap("Another key", 432);
+        //noinspection unchecked
+        when(mockSharedPreferences.getAll()).thenReturn((Map) updatedMap);
         final SharedPreferences.OnSharedPreferenceChangeListener listener = listenerCaptor.getValue();
         listener.onSharedPreferenceChanged(mockSharedPreferences, "Another key");
 
@@ -131,7 +149,7 @@ public final class RxPreferencesTest {
         subscription
                 .assertNotComplete()
                 .assertValueCount(2)
-                .assertValues(returnedMap, returnedMap);
+                .assertValues(returnedMap, updatedMap);
     }
 
     @Test
@@ -151,7 +169,8 @@ public final class RxPreferencesTest {
 
         verifyNoMoreInteractions(mockSharedPreferencesEditor);
         verify(mockSharedPreferences).getAll();
-        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(isA(RxAllPreferencesListener.class));
+        verify(mockSharedPreferences)
+                .registerOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
         verifyNoMoreInteractions(mockSharedPreferences);
         assertFalse(subscription.isDisposed());
     }
@@ -176,6 +195,60 @@ public final class RxPreferencesTest {
 
         verify(mockSharedPreferences).unregisterOnSharedPreferenceChangeListener(listener);
     }
+
+    @Test
+    public void getAllSnapshotStream_appliesChangesWithoutCopyingAll() {
+        final Map<String, Object> initialMap = new HashMap<>();
+        initialMap.put("Int key", 1);
+        initialMap.put("String key", "Initial");
+        //noinspection unchecked
+        when(mockSharedPreferences.getAll()).thenReturn((Map) initialMap);
+
+        final TestObserver<Map<String, ?>> subscription = rxPreferences.getAllSnapshotStream().test();
+        subscriptions.add(subscription);
+        subscription.assertValueCount(1);
+        assertEquals(initialMap, subscription.values().get(0));
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        final SharedPreferences.OnSharedPreferenceChangeListener listener = listenerCaptor.getValue();
+
+        when(mockSharedPreferences.contains("Int key")).thenReturn(true);
+        when(mockSharedPreferences.getInt(eq("Int key"), anyInt())).thenReturn(2);
+        listener.onSharedPreferenceChanged(mockSharedPreferences, "Int key");
+        when(mockSharedPreferences.getString(eq("String key"), any())).thenReturn(null);
+        listener.onSharedPreferenceChanged(mockSharedPreferences, "String key");
+
+        subscription.assertValueCount(3);
+        assertEquals(Collections.singletonMap("Int key", 2), subscription.values().get(2));
+        assertEquals(initialMap, subscription.values().get(0));
+        verify(mockSharedPreferences, times(1)).getAll();
+    }
+
+    @Test
+    public void getAllChangesStream_emitsChangedKeyAndValue() {
+        final TestObserver<PreferenceChange> subscription = rxPreferences.getAllChangesStream().test();
+        subscriptions.add(subscription);
+        subscription.assertNoValues();
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        final SharedPreferences.OnSharedPreferenceChangeListener listener = listenerCaptor.getValue();
+
+        when(mockSharedPreferences.getString(eq("Long key"), any())).thenThrow(ClassCastException.class);
+        when(mockSharedPreferences.getStringSet(eq("Long key"), any())).thenThrow(ClassCastException.class);
+        when(mockSharedPreferences.contains("Long key")).thenReturn(true);
+        when(mockSharedPreferences.getInt(eq("Long key"), anyInt())).thenThrow(ClassCastException.class);
+        when(mockSharedPreferences.getLong(eq("Long key"), anyLong())).thenReturn(99L);
+        listener.onSharedPreferenceChanged(mockSharedPreferences, "Long key");
+        listener.onSharedPreferenceChanged(mockSharedPreferences, "Removed key");
+
+        subscription.assertValues(new PreferenceChange("Long key", 99L), new PreferenceChange("Removed key", null));
+        assertTrue(subscription.values().get(1).isRemoval());
+        verify(mockSharedPreferences, never()).getAll();
+    }
     //endregion
 
     //region get preference once
@@ -392,7 +465,7 @@ public final class RxPreferencesTest {
     //region get preference stream
     @Test
     public void getStringStream_emitsOnListenerUpdate() {
-        testGetStream_emitsOnListenerUpdate(PreferenceType.STRING, "String value", "Default string");
+        testGetStream_emitsOnListenerUpdate(PreferenceType.STRING, "String value", "Updated string", "Default string");
     }
 
     @Test
@@ -408,7 +481,7 @@ public final class RxPreferencesTest {
     @Test
     public void getStringSetStream_emitsOnListenerUpdate() {
         testGetStream_emitsOnListenerUpdate(PreferenceType.STRING_SET, Collections.singleton("String value"),
-                Collections.singleton("Default string"));
+                Collections.singleton("Updated string"), Collections.singleton("Default string"));
     }
 
     @Test
@@ -425,7 +498,7 @@ public final class RxPreferencesTest {
 
     @Test
     public void getIntStream_emitsOnListenerUpdate() {
-        testGetStream_emitsOnListenerUpdate(PreferenceType.INT, 123, -321);
+        testGetStream_emitsOnListenerUpdate(PreferenceType.INT, 123, 456, -321);
     }
 
     @Test
@@ -440,7 +513,7 @@ public final class RxPreferencesTest {
 
     @Test
     public void getLongStream_emitsOnListenerUpdate() {
-        testGetStream_emitsOnListenerUpdate(PreferenceType.LONG, 12345678900L, -9876543210L);
+        testGetStream_emitsOnListenerUpdate(PreferenceType.LONG, 12345678900L, 45678900123L, -9876543210L);
     }
 
     @Test
@@ -455,7 +528,7 @@ public final class RxPreferencesTest {
 
     @Test
     public void getFloatStream_emitsOnListenerUpdate() {
-        testGetStream_emitsOnListenerUpdate(PreferenceType.FLOAT, 123.456f, -321.987f);
+        testGetStream_emitsOnListenerUpdate(PreferenceType.FLOAT, 123.456f, 456.789f, -321.987f);
     }
 
     @Test
@@ -470,7 +543,7 @@ public final class RxPreferencesTest {
 
     @Test
     public void getBooleanStream_emitsOnListenerUpdate() {
-        testGetStream_emitsOnListenerUpdate(PreferenceType.BOOLEAN, true, false);
+        testGetStream_emitsOnListenerUpdate(PreferenceType.BOOLEAN, true, false, false);
     }
 
     @Test
@@ -483,7 +556,8 @@ public final class RxPreferencesTest {
         testGetStream_unregistersListenerOnUnsubscribe(PreferenceType.BOOLEAN, true, false);
     }
 
-    private void testGetStream_emitsOnListenerUpdate(PreferenceType type, Object returnedValue, Object defaultValue) {
+    private void testGetStream_emitsOnListenerUpdate(PreferenceType type, Object returnedValue, Object updatedValue,
+            Object defaultValue) {
         final String testKey = "Test " + type + " key";
         mockGet(type, testKey, returnedValue);
 
@@ -499,13 +573,14 @@ public final class RxPreferencesTest {
                 ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
         verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
 
+        mockGet(type, testKey, updatedValue);
         final SharedPreferences.OnSharedPreferenceChangeListener listener = listenerCaptor.getValue();
         listener.onSharedPreferenceChanged(mockSharedPreferences, testKey);
 
         subscription
                 .assertNotComplete()
                 .assertValueCount(2)
-                .assertValues(returnedValue, returnedValue);
+                .assertValues(returnedValue, updatedValue);
     }
 
     private void testGetStream_emitsCurrentValueOnSubscribe(PreferenceType type, Object returnedValue,
@@ -554,7 +629,8 @@ public final class RxPreferencesTest {
 
         // After subscribing, the preference is retrieved from the internal preferences:
         verifyGet(type, key, defaultValue);
-        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(isA(RxPreferenceChangeListener.class));
+        verify(mockSharedPreferences)
+                .registerOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
         verifyNoMoreInteractions(mockSharedPreferences);
         assertFalse(subscription.isDisposed());
     }
@@ -642,13 +718,14 @@ public final class RxPreferencesTest {
                 ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
         verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
 
+        when(mockSharedPreferences.contains(testKey)).thenReturn(false);
         final SharedPreferences.OnSharedPreferenceChangeListener listener = listenerCaptor.getValue();
         listener.onSharedPreferenceChanged(mockSharedPreferences, testKey);
 
         subscription
                 .assertNotComplete()
                 .assertValueCount(2)
-                .assertValues(true, true);
+                .assertValues(true, false);
     }
 
     @Test
@@ -666,7 +743,8 @@ public final class RxPreferencesTest {
         advanceScheduler();
         // After subscribing, the value is retrieved from the internal preferences:
         verify(mockSharedPreferences).contains(testKey);
-        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(isA(RxPreferenceContainsListener.class));
+        verify(mockSharedPreferences)
+                .registerOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
         verifyNoMoreInteractions(mockSharedPreferences);
         assertFalse(subscription.isDisposed());
     }
@@ -692,210 +770,1529 @@ public final class RxPreferencesTest {
     }
     //endregion
 
-    //region edit
+    //region prefix
     @Test
-    public void edit_returnsNewInstance() {
-        assertNotEquals(rxPreferences.edit(), rxPreferences.edit());
+    public void getPrefixOnce_returnsOnlyMatchingPreferences() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit()
+                .putBoolean("feature.first", true)
+                .putInt("feature.second", 2)
+                .putString("featured", "Value")
+                .putLong("other", 3L)
+                .commit();
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("feature.first", true);
+        expected.put("feature.second", 2);
+
+        final TestObserver<Map<String, ?>> subscription = RxPreferences.create(store)
+                .getPrefixOnce("feature.")
+                .test();
+        subscriptions.add(subscription);
+
+        subscription.assertValue(expected);
     }
-    //endregion
-    //endregion
 
-    //region Editor
-    //region put
     @Test
-    public void putString_putsAndCommitsWhenExpected() {
-        final String testValue = "Test value";
-        testPutMethod(PreferenceType.STRING, testValue);
+    public void getPrefixStream_emitsOnlyForMatchingChanges() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putBoolean("feature.first", true).commit();
+        final RxPreferences storePreferences = RxPreferences.create(store);
+
+        final TestObserver<Map<String, ?>> subscription = storePreferences.getPrefixStream("feature.").test();
+        subscriptions.add(subscription);
+        store.edit().putString("other", "Value").commit();
+        store.edit().putInt("feature.second", 2).commit();
+        store.edit().remove("feature.first").commit();
+        store.edit().putString("feature", "Not matching").commit();
+
+        final Map<String, Object> both = new HashMap<>();
+        both.put("feature.first", true);
+        both.put("feature.second", 2);
+        subscription.assertValues(
+                Collections.singletonMap("feature.first", true),
+                both,
+                Collections.singletonMap("feature.second", 2)
+        );
     }
 
     @Test
-    public void putStringSet_putsAndCommitsWhenExpected() {
-        final Set<String> testValue = Collections.singleton("Test value");
-        testPutMethod(PreferenceType.STRING_SET, testValue);
+    public void getPrefixStream_nestedPrefixes_eachReceiveMatchingChanges() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final RxPreferences storePreferences = RxPreferences.create(store);
+
+        final TestObserver<Map<String, ?>> outerSubscription = storePreferences.getPrefixStream("a.").test();
+        subscriptions.add(outerSubscription);
+        final TestObserver<Map<String, ?>> innerSubscription = storePreferences.getPrefixStream("a.b.").test();
+        subscriptions.add(innerSubscription);
+        final TestObserver<Map<String, ?>> siblingSubscription = storePreferences.getPrefixStream("a.c.").test();
+        subscriptions.add(siblingSubscription);
+        store.edit().putInt("a.b.key", 1).commit();
+        store.edit().putInt("a.key", 2).commit();
+
+        outerSubscription.assertValueCount(3);
+        innerSubscription.assertValueCount(2);
+        innerSubscription.assertValueAt(1, Collections.singletonMap("a.b.key", 1));
+        siblingSubscription.assertValueCount(1);
     }
 
     @Test
-    public void putInt_putsAndCommitsWhenExpected() {
-        final int testValue = 87245;
-        testPutMethod(PreferenceType.INT, testValue);
+    public void getPrefixStream_clear_emitsEmptyMap() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putInt("feature.key", 1).commit();
+
+        final TestObserver<Map<String, ?>> subscription = RxPreferences.create(store)
+                .getPrefixStream("feature.")
+                .test();
+        subscriptions.add(subscription);
+        store.edit().clear().commit();
+
+        subscription.assertValues(Collections.singletonMap("feature.key", 1), Collections.emptyMap());
     }
 
     @Test
-    public void putLong_putsAndCommitsWhenExpected() {
-        final long testValue = 3141235425L;
-        testPutMethod(PreferenceType.LONG, testValue);
+    public void getPrefixStream_coalescedCommit_emitsOnceWithOnlyMatchingReads() {
+        final RxPreferences coalescingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .build();
+        //noinspection unchecked
+        when(mockSharedPreferences.getAll()).thenReturn((Map) Collections.singletonMap("other", "Value"));
+
+        final TestObserver<Map<String, ?>> subscription = coalescingPreferences.getPrefixStream("feature.").test();
+        subscriptions.add(subscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        when(mockSharedPreferences.getString(anyString(), any())).thenThrow(ClassCastException.class);
+        when(mockSharedPreferences.getStringSet(anyString(), any())).thenThrow(ClassCastException.class);
+        when(mockSharedPreferences.contains(anyString())).thenReturn(true);
+        when(mockSharedPreferences.getInt(anyString(), anyInt())).thenReturn(1);
+        when(mockSharedPreferencesEditor.commit()).thenAnswer(invocation -> {
+            listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "feature.first");
+            listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "feature.second");
+            listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "other.key");
+            return true;
+        });
+        coalescingPreferences.edit()
+                .putInt("feature.first", 1)
+                .putInt("feature.second", 1)
+                .putInt("other.key", 1)
+                .commit()
+                .test()
+                .assertComplete();
+
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("feature.first", 1);
+        expected.put("feature.second", 1);
+        subscription.assertValues(Collections.emptyMap(), expected);
+        verify(mockSharedPreferences, times(1)).getAll();
+        verify(mockSharedPreferences, never()).getInt(eq("other.key"), anyInt());
     }
+    //endregion
 
+    //region get many
     @Test
-    public void putFloat_putsAndCommitsWhenExpected() {
-        final float testValue = 141.1341f;
-        testPutMethod(PreferenceType.FLOAT, testValue);
+    public void getManyOnce_readsEachKeyOrDefault() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putString("String key", "String value").putInt("Int key", 3).commit();
+        final PreferenceKey<String> stringKey = PreferenceKey.ofString("String key", "Default");
+        final PreferenceKey<Integer> intKey = PreferenceKey.ofInt("Int key", 0);
+        final PreferenceKey<Boolean> missingKey = PreferenceKey.ofBoolean("Missing key", true);
+
+        final TestObserver<PreferenceSnapshot> subscription = RxPreferences.create(store)
+                .getManyOnce(Arrays.asList(stringKey, intKey, missingKey))
+                .test();
+        subscriptions.add(subscription);
+
+        subscription.assertValueCount(1);
+        final PreferenceSnapshot snapshot = subscription.values().get(0);
+        assertEquals("String value", snapshot.get(stringKey));
+        assertEquals(Integer.valueOf(3), snapshot.get(intKey));
+        assertEquals(Boolean.TRUE, snapshot.get(missingKey));
+        assertEquals(Integer.valueOf(3), snapshot.get(PreferenceKey.ofInt("Int key", 0)));
     }
 
     @Test
-    public void putBoolean_putsAndCommitsWhenExpected() {
-        final boolean testValue = true;
-        testPutMethod(PreferenceType.BOOLEAN, testValue);
+    public void getManyOnce_wrongType_emitsClassCastException() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putString("Key", "String value").commit();
+
+        final TestObserver<PreferenceSnapshot> subscription = RxPreferences.create(store)
+                .getManyOnce(PreferenceKey.ofLong("Key", 0L))
+                .test();
+        subscriptions.add(subscription);
+
+        subscription.assertError(ClassCastException.class);
     }
 
-    private void testPutMethod(PreferenceType type, Object value) {
-        assertNotNull(type);
-        assertNotNull(value);
-        final String valueTypeFailureMessage = "Testing #put method with type " + type + " requires a value of type "
-                + type.valueClass.getSimpleName() + ", but the provided value was of type " + value.getClass().getSimpleName();
-        assertTrue(valueTypeFailureMessage, type.valueClass.isAssignableFrom(value.getClass()));
+    @Test(expected = IllegalArgumentException.class)
+    public void snapshotGet_keyNotRead_throwsIllegalArgumentException() {
+        final PreferenceSnapshot snapshot = RxPreferences.create(new InMemoryPreferenceStore())
+                .getManyOnce(PreferenceKey.ofInt("Key", 0))
+                .blockingGet();
 
-        final String testKey = "Test " + type + " key";
+        snapshot.get(PreferenceKey.ofInt("Key", 1));
+    }
 
-        final Disposable subscription = putOnTestScheduler(type, testKey, value);
-        subscriptions.add(subscription);
+    @Test
+    public void getManyStream_emitsWhenAnyKeyChanges() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final RxPreferences storePreferences = RxPreferences.create(store);
+        final PreferenceKey<Integer> firstKey = PreferenceKey.ofInt("First key", 0);
+        final PreferenceKey<Float> secondKey = PreferenceKey.ofFloat("Second key", 0f);
 
-        verifyPutBeforeSubscribe(type, testKey, value, subscription);
+        final TestObserver<PreferenceSnapshot> subscription = storePreferences.getManyStream(firstKey, secondKey)
+                .test();
+        subscriptions.add(subscription);
+        store.edit().putInt("First key", 1).commit();
+        store.edit().putString("Other key", "Value").commit();
+        store.edit().putFloat("Second key", 2f).commit();
+        store.edit().clear().commit();
 
-        advanceScheduler();
-        verifyCommitAfterSubscribe(subscription);
+        subscription.assertValueCount(4);
+        final List<PreferenceSnapshot> snapshots = subscription.values();
+        assertEquals(Integer.valueOf(1), snapshots.get(1).get(firstKey));
+        assertEquals(Float.valueOf(0f), snapshots.get(1).get(secondKey));
+        assertEquals(Integer.valueOf(1), snapshots.get(2).get(firstKey));
+        assertEquals(Float.valueOf(2f), snapshots.get(2).get(secondKey));
+        assertEquals(snapshots.get(0), snapshots.get(3));
     }
 
-    private Disposable putOnTestScheduler(PreferenceType type, String key, Object value) {
-        return put(rxPreferences.edit(), type, key, value)
-                .commit()
-                .subscribeOn(testScheduler)
-                .subscribe();
+    @Test
+    public void getManyStream_coalescedCommitOfSeveralKeys_emitsOnce() {
+        final RxPreferences coalescingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .distinctUntilChanged(false)
+                .build();
+        when(mockSharedPreferences.getInt(eq("First key"), anyInt())).thenReturn(1);
+        when(mockSharedPreferences.getInt(eq("Second key"), anyInt())).thenReturn(2);
+
+        final TestObserver<PreferenceSnapshot> subscription = coalescingPreferences
+                .getManyStream(PreferenceKey.ofInt("First key", 0), PreferenceKey.ofInt("Second key", 0))
+                .test();
+        subscriptions.add(subscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        when(mockSharedPreferencesEditor.commit()).thenAnswer(invocation -> {
+            listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "First key");
+            listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Second key");
+            return true;
+        });
+        coalescingPreferences.edit().putInt("First key", 1).putInt("Second key", 2).commit().test().assertComplete();
+
+        subscription.assertValueCount(2);
+        verify(mockSharedPreferences, times(2)).getInt("First key", 0);
     }
 
-    private void verifyPutBeforeSubscribe(PreferenceType type, String key, Object value, Disposable subscription) {
-        // Before subscribing, edits are pushed to the internal editor, but not committed:
-        verify(mockSharedPreferences).edit();
-        verifyNoMoreInteractions(mockSharedPreferences);
-        verifyPut(mockSharedPreferencesEditor, type, key, value);
-        verifyNoMoreInteractions(mockSharedPreferencesEditor);
-        assertFalse(subscription.isDisposed());
+    @Test
+    public void getManyStream_sameKeys_sharesListener() {
+        final PreferenceStore mockStore = mock(PreferenceStore.class);
+        final RxPreferences storePreferences = RxPreferences.create(mockStore);
+
+        subscriptions.add(storePreferences.getManyStream(PreferenceKey.ofLong("Key", 0L)).test());
+        subscriptions.add(storePreferences.getManyStream(PreferenceKey.ofLong("Key", 0L)).test());
+
+        verify(mockStore, times(1)).getLong("Key", 0L);
+        verify(mockStore, times(1)).registerListener(any());
     }
 
-    private void verifyCommitAfterSubscribe(Disposable subscription) {
-        // After subscribing, the internal edits are commited:
-        verifyNoMoreInteractions(mockSharedPreferences);
-        verify(mockSharedPreferencesEditor).commit();
-        verifyNoMoreInteractions(mockSharedPreferencesEditor);
-        assertTrue(subscription.isDisposed());
+    @Test(expected = IllegalArgumentException.class)
+    public void getManyStream_noKeys_throwsIllegalArgumentException() {
+        rxPreferences.getManyStream();
     }
+    //endregion
 
-    private static RxPreferences.Editor put(RxPreferences.Editor editor, PreferenceType type, String key, Object value) {
-        switch (type) {
-            case STRING:
-                return editor.putString(key, (String) value);
-            case STRING_SET:
-                //noinspection unchecked
-                return editor.putStringSet(key, (Set<String>) value);
-            case INT:
-                return editor.putInt(key, (int) value);
-            case LONG:
-                return editor.putLong(key, (long) value);
-            case FLOAT:
-                return editor.putFloat(key, (float) value);
-            case BOOLEAN:
-                return editor.putBoolean(key, (boolean) value);
-            default:
-                fail("Unknown preference type: " + type);
-                throw new UnsupportedOperationException();
+    //region Flowable
+    @Test
+    public void getIntFlowable_latest_deliversLatestValueOnRequest() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final TestSubscriber<Integer> subscriber = RxPreferences.create(store)
+                .getIntFlowable("Int key", 0, PreferenceBackpressure.LATEST)
+                .test(0);
+        subscriptions.add(Disposable.fromSubscription(subscriber));
+
+        for (int i = 1; i <= 3; i++) {
+            store.edit().putInt("Int key", i).commit();
         }
+        subscriber.assertNoValues();
+
+        subscriber.request(1);
+        subscriber.assertValues(3);
     }
 
-    private static void verifyPut(SharedPreferences.Editor mockSharedPreferencesEditor, PreferenceType type, String key,
-            Object value) {
-        switch (type) {
-            case STRING:
-                verify(mockSharedPreferencesEditor).putString(key, (String) value);
-                break;
-            case STRING_SET:
-                //noinspection unchecked
-                verify(mockSharedPreferencesEditor).putStringSet(key, (Set<String>) value);
-                break;
-            case INT:
-                verify(mockSharedPreferencesEditor).putInt(key, (int) value);
-                break;
-            case LONG:
-                verify(mockSharedPreferencesEditor).putLong(key, (long) value);
-                break;
-            case FLOAT:
-                verify(mockSharedPreferencesEditor).putFloat(key, (float) value);
-                break;
-            case BOOLEAN:
-                verify(mockSharedPreferencesEditor).putBoolean(key, (boolean) value);
-                break;
+    @Test
+    public void getStringFlowable_drop_dropsValuesWhileNotRequested() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final TestSubscriber<String> subscriber = RxPreferences.create(store)
+                .getStringFlowable("String key", "Default", PreferenceBackpressure.DROP)
+                .test(0);
+        subscriptions.add(Disposable.fromSubscription(subscriber));
+
+        store.edit().putString("String key", "Dropped").commit();
+        subscriber.request(1);
+        subscriber.assertNoValues();
+
+        store.edit().putString("String key", "Delivered").commit();
+        subscriber.assertValues("Delivered");
+    }
+
+    @Test
+    public void getAllFlowable_buffer_keepsNewestValuesUpToCapacity() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final TestSubscriber<Map<String, ?>> subscriber = RxPreferences.create(store)
+                .getAllFlowable(PreferenceBackpressure.buffer(2))
+                .test(0);
+        subscriptions.add(Disposable.fromSubscription(subscriber));
+
+        for (int i = 1; i <= 3; i++) {
+            store.edit().putInt("Int key", i).commit();
         }
+        subscriber.request(10);
+
+        subscriber.assertValues(Collections.singletonMap("Int key", 2), Collections.singletonMap("Int key", 3));
+    }
+
+    @Test
+    public void getLongFlowable_sharesStreamWithObservable() {
+        when(mockSharedPreferences.getLong(eq("Long key"), anyLong())).thenReturn(4L);
+
+        final TestSubscriber<Long> subscriber =
+                rxPreferences.getLongFlowable("Long key", 0L, PreferenceBackpressure.LATEST).test();
+        subscriptions.add(Disposable.fromSubscription(subscriber));
+        final TestObserver<Long> observer = rxPreferences.getLongStream("Long key", 0L).test();
+        subscriptions.add(observer);
+
+        subscriber.assertValues(4L);
+        observer.assertValues(4L);
+        verify(mockSharedPreferences, times(1)).getLong("Long key", 0L);
+    }
+
+    @Test
+    public void preferenceFlowable_emitsChanges() {
+        final Preference<Boolean> preference = RxPreferences.create(new InMemoryPreferenceStore())
+                .booleanPreference("Boolean key", false);
+
+        final TestSubscriber<Boolean> subscriber = preference.getFlowable(PreferenceBackpressure.buffer(1)).test();
+        subscriptions.add(Disposable.fromSubscription(subscriber));
+        preference.put(true).test().assertComplete();
+
+        subscriber.assertValues(false, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bufferBackpressure_capacityLessThanOne_throwsIllegalArgumentException() {
+        PreferenceBackpressure.buffer(0);
     }
     //endregion
 
-    //region remove
+    //region preference handles
     @Test
-    public void remove_removesFromInternalPreferences() {
-        final String testKey = "Another test key";
+    public void intPreference_readsWritesAndRemoves() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final Preference<Integer> preference = RxPreferences.create(store).intPreference("Int key", 5);
 
-        final Disposable subscription = rxPreferences.edit()
-                .remove(testKey)
-                .commit()
-                .subscribeOn(testScheduler)
-                .subscribe();
+        preference.getOnce().test().assertValue(5);
+        preference.put(10).test().assertComplete();
+        assertEquals(10, store.getInt("Int key", 0));
+        preference.getOnce().test().assertValue(10);
+        preference.remove().test().assertComplete();
+        assertFalse(store.contains("Int key"));
+        preference.getOnce().test().assertValue(5);
+    }
+
+    @Test
+    public void preference_removeCanBeSubscribedRepeatedly() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final Preference<String> preference = RxPreferences.create(store).stringPreference("String key", "Default");
+        final Completable remove = preference.remove();
+
+        preference.put("First").test().assertComplete();
+        remove.test().assertComplete();
+        preference.put("Second").test().assertComplete();
+        remove.test().assertComplete();
+
+        assertFalse(store.contains("String key"));
+    }
+
+    @Test
+    public void preferenceStream_emitsChanges() {
+        final Set<String> defaultSet = Collections.singleton("Default");
+        final Preference<Set<String>> preference = RxPreferences.create(new InMemoryPreferenceStore())
+                .stringSetPreference("Set key", defaultSet);
+
+        final TestObserver<Set<String>> subscription = preference.getStream().test();
         subscriptions.add(subscription);
+        preference.put(Collections.singleton("Value")).test().assertComplete();
+        preference.remove().test().assertComplete();
 
-        // Before subscribing, edits are pushed to the internal editor, but not committed:
-        verify(mockSharedPreferences).edit();
-        verifyNoMoreInteractions(mockSharedPreferences);
-        verify(mockSharedPreferencesEditor).remove(testKey);
-        verifyNoMoreInteractions(mockSharedPreferencesEditor);
-        assertFalse(subscription.isDisposed());
+        subscription.assertValues(defaultSet, Collections.singleton("Value"), defaultSet);
+    }
 
-        advanceScheduler();
-        verifyCommitAfterSubscribe(subscription);
+    @Test
+    public void preferenceStream_sharedWithMatchingStreamMethod() {
+        when(mockSharedPreferences.getLong(eq("Long key"), anyLong())).thenReturn(3L);
+        final Preference<Long> preference = rxPreferences.longPreference("Long key", 0L);
+
+        final TestObserver<Long> handleSubscription = preference.getStream().test();
+        subscriptions.add(handleSubscription);
+        final TestObserver<Long> secondHandleSubscription = preference.getStream().test();
+        subscriptions.add(secondHandleSubscription);
+        final TestObserver<Long> methodSubscription = rxPreferences.getLongStream("Long key", 0L).test();
+        subscriptions.add(methodSubscription);
+
+        handleSubscription.assertValues(3L);
+        secondHandleSubscription.assertValues(3L);
+        methodSubscription.assertValues(3L);
+        verify(mockSharedPreferences, times(1)).getLong("Long key", 0L);
+        verify(mockSharedPreferences, times(1))
+                .registerOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
     }
-    //endregion
 
-    //region clear
     @Test
-    public void clear_clearsFromInternalPreferences() {
-        final Disposable subscription = rxPreferences.edit()
-                .clear()
-                .commit()
-                .subscribeOn(testScheduler)
-                .subscribe();
+    public void preferenceStream_resubscribedAfterDispose_readsAgain() {
+        when(mockSharedPreferences.getFloat(eq("Float key"), anyFloat())).thenReturn(1f);
+        final Preference<Float> preference = rxPreferences.floatPreference("Float key", 0f);
+
+        preference.getStream().test().dispose();
+        final TestObserver<Float> subscription = preference.getStream().test();
         subscriptions.add(subscription);
 
-        // Before subscribing, edits are pushed to the internal editor, but not committed:
-        verify(mockSharedPreferences).edit();
-        verifyNoMoreInteractions(mockSharedPreferences);
-        verify(mockSharedPreferencesEditor).clear();
-        verifyNoMoreInteractions(mockSharedPreferencesEditor);
-        assertFalse(subscription.isDisposed());
+        subscription.assertValues(1f);
+        verify(mockSharedPreferences, times(2)).getFloat("Float key", 0f);
+    }
 
-        advanceScheduler();
-        verifyCommitAfterSubscribe(subscription);
+    @Test
+    public void preferenceKey_readsPreferenceInSnapshot() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putBoolean("Boolean key", true).commit();
+        final RxPreferences storePreferences = RxPreferences.create(store);
+        final Preference<Boolean> preference = storePreferences.booleanPreference("Boolean key", false);
+
+        final PreferenceSnapshot snapshot = storePreferences.getManyOnce(preference.getKey()).blockingGet();
+
+        assertEquals(Boolean.TRUE, snapshot.get(preference.getKey()));
     }
     //endregion
 
-    //region commit
+    //region object preferences
     @Test
-    public void commit_internalEditorReturnsTrue_completes() {
-        final TestObserver<Void> testObserver = rxPreferences.edit()
-                .commit()
-                .test();
-        subscriptions.add(testObserver);
+    public void putObject_storesEncodedStringAndGetObjectOnceDecodesIt() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final RxPreferences storePreferences = RxPreferences.create(store);
+        final CountingPointAdapter adapter = new CountingPointAdapter();
 
-        testObserver.assertComplete();
+        storePreferences.edit().putObject("Point key", adapter, Arrays.asList(1, 2)).commit().test().assertComplete();
+
+        assertEquals("1:2", store.getString("Point key", null));
+        storePreferences.getObjectOnce("Point key", adapter, Arrays.asList(0, 0))
+                .test()
+                .assertValue(Arrays.asList(1, 2));
+        storePreferences.getObjectOnce("Missing key", adapter, Arrays.asList(0, 0))
+                .test()
+                .assertValue(Arrays.asList(0, 0));
     }
 
     @Test
-    public void commit_internalEditorReturnsFalse_propagatesCommitException() {
-        when(mockSharedPreferencesEditor.commit()).thenReturn(false);
+    public void getObject_sameStoredValue_decodedOnceForAllReadsAndSubscribers() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putString("Point key", "3:4").commit();
+        final RxPreferences storePreferences = RxPreferences.create(store);
+        final CountingPointAdapter adapter = new CountingPointAdapter();
+
+        final TestObserver<List<Integer>> firstSubscription =
+                storePreferences.getObjectStream("Point key", adapter, Arrays.asList(0, 0)).test();
+        subscriptions.add(firstSubscription);
+        final TestObserver<List<Integer>> secondSubscription =
+                storePreferences.getObjectStream("Point key", adapter, Arrays.asList(0, 0)).test();
+        subscriptions.add(secondSubscription);
+        storePreferences.getObjectOnce("Point key", adapter, Arrays.asList(-1, -1)).test().assertComplete();
+        store.edit().putString("Other key", "Value").commit();
+
+        firstSubscription.assertValues(Arrays.asList(3, 4));
+        secondSubscription.assertValues(Arrays.asList(3, 4));
+        assertEquals(1, adapter.decodeCount.get());
+    }
 
-        final TestObserver<Void> testObserver = rxPreferences.edit()
-                .commit()
-                .test();
-        subscriptions.add(testObserver);
+    @Test
+    public void getObjectStream_emitsDecodedChangesAndDefaultOnRemove() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final RxPreferences storePreferences = RxPreferences.create(store);
+        final CountingPointAdapter adapter = new CountingPointAdapter();
 
-        testObserver.assertError(RxPreferences.Editor.CommitException.class);
+        final TestObserver<List<Integer>> subscription =
+                storePreferences.getObjectStream("Point key", adapter, Arrays.asList(0, 0)).test();
+        subscriptions.add(subscription);
+        storePreferences.edit().putObject("Point key", adapter, Arrays.asList(5, 6)).commit().test().assertComplete();
+        storePreferences.edit().remove("Point key").commit().test().assertComplete();
+
+        subscription.assertValues(Arrays.asList(0, 0), Arrays.asList(5, 6), Arrays.asList(0, 0));
+        assertEquals(1, adapter.decodeCount.get());
+    }
+
+    @Test
+    public void getObjectStream_undecodableValue_emitsError() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putString("Point key", "Not:a point").commit();
+
+        final TestObserver<List<Integer>> subscription = RxPreferences.create(store)
+                .getObjectStream("Point key", new CountingPointAdapter(), Arrays.asList(0, 0))
+                .test();
+        subscriptions.add(subscription);
+
+        subscription.assertError(NumberFormatException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeCacheSize_negative_throwsIllegalArgumentException() {
+        RxSharedPreferences.builder(mockSharedPreferences).decodeCacheSize(-1);
+    }
+
+    private static final class CountingPointAdapter implements PreferenceAdapter<List<Integer>> {
+
+        final AtomicInteger decodeCount = new AtomicInteger();
+
+        @Override
+        public String encode(List<Integer> value) {
+            return value.get(0) + ":" + value.get(1);
+        }
+
+        @Override
+        public List<Integer> decode(String encoded) {
+            decodeCount.incrementAndGet();
+            final int separator = encoded.indexOf(':');
+            return Arrays.asList(Integer.parseInt(encoded.substring(0, separator)),
+                    Integer.parseInt(encoded.substring(separator + 1)));
+        }
+    }
+    //endregion
+
+    //region dispatch
+    @Test
+    public void streams_shareSinglePlatformListener() {
+        when(mockSharedPreferences.getString(eq("String key"), anyString())).thenReturn("String value");
+        when(mockSharedPreferences.getInt(eq("Int key"), anyInt())).thenReturn(1);
+        when(mockSharedPreferences.contains("Contains key")).thenReturn(true);
+        when(mockSharedPreferences.getAll()).thenReturn(Collections.emptyMap());
+
+        subscriptions.add(rxPreferences.getStringStream("String key", "Default").test());
+        subscriptions.add(rxPreferences.getIntStream("Int key", 0).test());
+        subscriptions.add(rxPreferences.containsStream("Contains key").test());
+        subscriptions.add(rxPreferences.getAllStream().test());
+
+        verify(mockSharedPreferences, times(1))
+                .registerOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
+    }
+
+    @Test
+    public void listenerUpdate_emitsOnlyToSubscribersOfChangedKey() {
+        when(mockSharedPreferences.getString(eq("Changed key"), anyString())).thenReturn("Changed value");
+        when(mockSharedPreferences.getString(eq("Unchanged key"), anyString())).thenReturn("Unchanged value");
+
+        final TestObserver<String> changedSubscription = rxPreferences.getStringStream("Changed key", "Default")
+                .test();
+        subscriptions.add(changedSubscription);
+        final TestObserver<String> unchangedSubscription = rxPreferences.getStringStream("Unchanged key", "Default")
+                .test();
+        subscriptions.add(unchangedSubscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        when(mockSharedPreferences.getString(eq("Changed key"), anyString())).thenReturn("New value");
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Changed key");
+
+        changedSubscription.assertValueCount(2);
+        unchangedSubscription.assertValueCount(1);
+        verify(mockSharedPreferences, times(2)).getString(eq("Changed key"), anyString());
+        verify(mockSharedPreferences, times(1)).getString(eq("Unchanged key"), anyString());
+    }
+
+    @Test
+    public void streams_unregisterPlatformListenerAfterLastUnsubscribe() {
+        when(mockSharedPreferences.getInt(eq("First key"), anyInt())).thenReturn(1);
+        when(mockSharedPreferences.getInt(eq("Second key"), anyInt())).thenReturn(2);
+
+        final TestObserver<Integer> firstSubscription = rxPreferences.getIntStream("First key", 0).test();
+        subscriptions.add(firstSubscription);
+        final TestObserver<Integer> secondSubscription = rxPreferences.getIntStream("Second key", 0).test();
+        subscriptions.add(secondSubscription);
+
+        firstSubscription.dispose();
+        verify(mockSharedPreferences, never()).unregisterOnSharedPreferenceChangeListener(any());
+
+        secondSubscription.dispose();
+        verify(mockSharedPreferences)
+                .unregisterOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
+    }
+    //endregion
+
+    //region shared streams
+    @Test
+    public void getStream_sameKeyAndDefault_sharesReadAndListener() {
+        when(mockSharedPreferences.getString(eq("Shared key"), anyString())).thenReturn("Shared value");
+
+        final TestObserver<String> firstSubscription = rxPreferences.getStringStream("Shared key", "Default").test();
+        subscriptions.add(firstSubscription);
+        final TestObserver<String> lateSubscription = rxPreferences.getStringStream("Shared key", "Default").test();
+        subscriptions.add(lateSubscription);
+
+        firstSubscription.assertValues("Shared value");
+        lateSubscription.assertValues("Shared value");
+        verify(mockSharedPreferences, times(1)).getString("Shared key", "Default");
+        verify(mockSharedPreferences, times(1))
+                .registerOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
+    }
+
+    @Test
+    public void getStream_differentDefaults_doNotShare() {
+        when(mockSharedPreferences.getInt(eq("Int key"), anyInt())).thenReturn(5);
+
+        subscriptions.add(rxPreferences.getIntStream("Int key", 1).test());
+        subscriptions.add(rxPreferences.getIntStream("Int key", 2).test());
+
+        verify(mockSharedPreferences).getInt("Int key", 1);
+        verify(mockSharedPreferences).getInt("Int key", 2);
+    }
+
+    @Test
+    public void getStream_lateSubscriber_receivesLatestValue() {
+        when(mockSharedPreferences.getLong(eq("Long key"), anyLong())).thenReturn(1L);
+
+        final TestObserver<Long> firstSubscription = rxPreferences.getLongStream("Long key", 0L).test();
+        subscriptions.add(firstSubscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        when(mockSharedPreferences.getLong(eq("Long key"), anyLong())).thenReturn(2L);
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Long key");
+
+        final TestObserver<Long> lateSubscription = rxPreferences.getLongStream("Long key", 0L).test();
+        subscriptions.add(lateSubscription);
+
+        firstSubscription.assertValues(1L, 2L);
+        lateSubscription.assertValues(2L);
+        verify(mockSharedPreferences, times(2)).getLong("Long key", 0L);
+    }
+
+    @Test
+    public void getStream_afterLastUnsubscribe_readsAgain() {
+        when(mockSharedPreferences.getBoolean(eq("Boolean key"), anyBoolean())).thenReturn(true);
+
+        rxPreferences.getBooleanStream("Boolean key", false).test().dispose();
+        final TestObserver<Boolean> subscription = rxPreferences.getBooleanStream("Boolean key", false).test();
+        subscriptions.add(subscription);
+
+        subscription.assertValues(true);
+        verify(mockSharedPreferences, times(2)).getBoolean("Boolean key", false);
+        verify(mockSharedPreferences, times(2))
+                .registerOnSharedPreferenceChangeListener(isA(OnSharedPreferenceChangeListener.class));
+    }
+    //endregion
+
+    //region distinct until changed
+    @Test
+    public void getStream_unchangedValue_doesNotEmitAgain() {
+        when(mockSharedPreferences.getString(eq("Distinct key"), anyString())).thenReturn("Same value");
+
+        final TestObserver<String> subscription = rxPreferences.getStringStream("Distinct key", "Default").test();
+        subscriptions.add(subscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Distinct key");
+
+        subscription.assertValues("Same value");
+    }
+
+    @Test
+    public void getStream_equalButNotIdenticalValue_doesNotEmitAgain() {
+        when(mockSharedPreferences.getStringSet(eq("Distinct key"), anySet()))
+                .thenReturn(Collections.singleton("Same value"));
+
+        final TestObserver<Set<String>> subscription =
+                rxPreferences.getStringSetStream("Distinct key", Collections.emptySet()).test();
+        subscriptions.add(subscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        when(mockSharedPreferences.getStringSet(eq("Distinct key"), anySet()))
+                .thenReturn(new HashSet<>(Collections.singleton("Same value")));
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Distinct key");
+
+        subscription.assertValueCount(1);
+    }
+
+    @Test
+    public void getStream_distinctUntilChangedDisabled_emitsUnchangedValue() {
+        final RxPreferences nonDistinctPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .distinctUntilChanged(false)
+                .build();
+        when(mockSharedPreferences.getString(eq("Distinct key"), anyString())).thenReturn("Same value");
+
+        final TestObserver<String> subscription = nonDistinctPreferences.getStringStream("Distinct key", "Default")
+                .test();
+        subscriptions.add(subscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Distinct key");
+
+        subscription.assertValues("Same value", "Same value");
+    }
+
+    @Test
+    public void getIntStream_distinctUntilChangedDisabled_reusesBoxedValue() {
+        final RxPreferences nonDistinctPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .distinctUntilChanged(false)
+                .build();
+        when(mockSharedPreferences.getInt(eq("Counter key"), anyInt())).thenReturn(100000);
+
+        final TestObserver<Integer> subscription = nonDistinctPreferences.getIntStream("Counter key", 0).test();
+        subscriptions.add(subscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Counter key");
+
+        subscription.assertValueCount(2);
+        assertSame(subscription.values().get(0), subscription.values().get(1));
+    }
+    //endregion
+
+    //region edit
+    @Test
+    public void edit_returnsNewInstance() {
+        assertNotEquals(rxPreferences.edit(), rxPreferences.edit());
+    }
+    //endregion
+    //endregion
+
+    //region Editor
+    //region put
+    @Test
+    public void putString_putsAndCommitsWhenExpected() {
+        final String testValue = "Test value";
+        testPutMethod(PreferenceType.STRING, testValue);
+    }
+
+    @Test
+    public void putStringSet_putsAndCommitsWhenExpected() {
+        final Set<String> testValue = Collections.singleton("Test value");
+        testPutMethod(PreferenceType.STRING_SET, testValue);
+    }
+
+    @Test
+    public void putInt_putsAndCommitsWhenExpected() {
+        final int testValue = 87245;
+        testPutMethod(PreferenceType.INT, testValue);
+    }
+
+    @Test
+    public void putLong_putsAndCommitsWhenExpected() {
+        final long testValue = 3141235425L;
+        testPutMethod(PreferenceType.LONG, testValue);
+    }
+
+    @Test
+    public void putFloat_putsAndCommitsWhenExpected() {
+        final float testValue = 141.1341f;
+        testPutMethod(PreferenceType.FLOAT, testValue);
+    }
+
+    @Test
+    public void putBoolean_putsAndCommitsWhenExpected() {
+        final boolean testValue = true;
+        testPutMethod(PreferenceType.BOOLEAN, testValue);
+    }
+
+    private void testPutMethod(PreferenceType type, Object value) {
+        assertNotNull(type);
+        assertNotNull(value);
+        final String valueTypeFailureMessage = "Testing #put method with type " + type + " requires a value of type "
+                + type.valueClass.getSimpleName() + ", but the provided value was of type " + value.getClass().getSimpleName();
+        assertTrue(valueTypeFailureMessage, type.valueClass.isAssignableFrom(value.getClass()));
+
+        final String testKey = "Test " + type + " key";
+
+        final Disposable subscription = putOnTestScheduler(type, testKey, value);
+        subscriptions.add(subscription);
+
+        verifyPutBeforeSubscribe(type, testKey, value, subscription);
+
+        advanceScheduler();
+        verifyCommitAfterSubscribe(subscription);
+    }
+
+    private Disposable putOnTestScheduler(PreferenceType type, String key, Object value) {
+        return put(rxPreferences.edit(), type, key, value)
+                .commit()
+                .subscribeOn(testScheduler)
+                .subscribe();
+    }
+
+    private void verifyPutBeforeSubscribe(PreferenceType type, String key, Object value, Disposable subscription) {
+        // Before subscribing, edits are pushed to the internal editor, but not committed:
+        verify(mockSharedPreferences).edit();
+        verifyNoMoreInteractions(mockSharedPreferences);
+        verifyPut(mockSharedPreferencesEditor, type, key, value);
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+        assertFalse(subscription.isDisposed());
+    }
+
+    private void verifyCommitAfterSubscribe(Disposable subscription) {
+        // After subscribing, the internal edits are commited:
+        verifyNoMoreInteractions(mockSharedPreferences);
+        verify(mockSharedPreferencesEditor).commit();
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+        assertTrue(subscription.isDisposed());
+    }
+
+    private static RxPreferences.Editor put(RxPreferences.Editor editor, PreferenceType type, String key, Object value) {
+        switch (type) {
+            case STRING:
+                return editor.putString(key, (String) value);
+            case STRING_SET:
+                //noinspection unchecked
+                return editor.putStringSet(key, (Set<String>) value);
+            case INT:
+                return editor.putInt(key, (int) value);
+            case LONG:
+                return editor.putLong(key, (long) value);
+            case FLOAT:
+                return editor.putFloat(key, (float) value);
+            case BOOLEAN:
+                return editor.putBoolean(key, (boolean) value);
+            default:
+                fail("Unknown preference type: " + type);
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static void verifyPut(SharedPreferences.Editor mockSharedPreferencesEditor, PreferenceType type, String key,
+            Object value) {
+        switch (type) {
+            case STRING:
+                verify(mockSharedPreferencesEditor).putString(key, (String) value);
+                break;
+            case STRING_SET:
+                //noinspection unchecked
+                verify(mockSharedPreferencesEditor).putStringSet(key, (Set<String>) value);
+                break;
+            case INT:
+                verify(mockSharedPreferencesEditor).putInt(key, (int) value);
+                break;
+            case LONG:
+                verify(mockSharedPreferencesEditor).putLong(key, (long) value);
+                break;
+            case FLOAT:
+                verify(mockSharedPreferencesEditor).putFloat(key, (float) value);
+                break;
+            case BOOLEAN:
+                verify(mockSharedPreferencesEditor).putBoolean(key, (boolean) value);
+                break;
+        }
+    }
+    //endregion
+
+    //region remove
+    @Test
+    public void remove_removesFromInternalPreferences() {
+        final String testKey = "Another test key";
+
+        final Disposable subscription = rxPreferences.edit()
+                .remove(testKey)
+                .commit()
+                .subscribeOn(testScheduler)
+                .subscribe();
+        subscriptions.add(subscription);
+
+        // Before subscribing, edits are pushed to the internal editor, but not committed:
+        verify(mockSharedPreferences).edit();
+        verifyNoMoreInteractions(mockSharedPreferences);
+        verify(mockSharedPreferencesEditor).remove(testKey);
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+        assertFalse(subscription.isDisposed());
+
+        advanceScheduler();
+        verifyCommitAfterSubscribe(subscription);
+    }
+    //endregion
+
+    //region clear
+    @Test
+    public void clear_clearsFromInternalPreferences() {
+        final Disposable subscription = rxPreferences.edit()
+                .clear()
+                .commit()
+                .subscribeOn(testScheduler)
+                .subscribe();
+        subscriptions.add(subscription);
+
+        // Before subscribing, edits are pushed to the internal editor, but not committed:
+        verify(mockSharedPreferences).edit();
+        verifyNoMoreInteractions(mockSharedPreferences);
+        verify(mockSharedPreferencesEditor).clear();
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+        assertFalse(subscription.isDisposed());
+
+        advanceScheduler();
+        verifyCommitAfterSubscribe(subscription);
+    }
+    //endregion
+
+    //region commit
+    @Test
+    public void commit_internalEditorReturnsTrue_completes() {
+        final TestObserver<Void> testObserver = rxPreferences.edit()
+                .commit()
+                .test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void commit_internalEditorReturnsFalse_propagatesCommitException() {
+        when(mockSharedPreferencesEditor.commit()).thenReturn(false);
+
+        final TestObserver<Void> testObserver = rxPreferences.edit()
+                .commit()
+                .test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertError(RxPreferences.Editor.CommitException.class);
+    }
+    //endregion
+
+    //region apply
+    @Test
+    public void apply_appliesInternalEditorWithoutCommitting() {
+        final TestObserver<Void> testObserver = rxPreferences.edit()
+                .putInt("Applied key", 3)
+                .apply()
+                .test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertComplete();
+        verify(mockSharedPreferencesEditor).putInt("Applied key", 3);
+        verify(mockSharedPreferencesEditor).apply();
+        verify(mockSharedPreferencesEditor, never()).commit();
+    }
+
+    @Test
+    public void apply_coalesced_emitsOnceAfterApply() {
+        final RxPreferences coalescingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .build();
+        //noinspection unchecked
+        when(mockSharedPreferences.getAll()).thenReturn((Map) Collections.emptyMap());
+
+        final TestObserver<Map<String, ?>> allSubscription = coalescingPreferences.getAllStream().test();
+        subscriptions.add(allSubscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        final SharedPreferences.OnSharedPreferenceChangeListener listener = listenerCaptor.getValue();
+        doAnswer(invocation -> {
+            //noinspection unchecked
+            when(mockSharedPreferences.getAll()).thenReturn((Map) Collections.singletonMap("First key", 1));
+            listener.onSharedPreferenceChanged(mockSharedPreferences, "First key");
+            listener.onSharedPreferenceChanged(mockSharedPreferences, "Second key");
+            return null;
+        }).when(mockSharedPreferencesEditor).apply();
+
+        final TestObserver<Void> applyObserver = coalescingPreferences.edit()
+                .putInt("First key", 1)
+                .putInt("Second key", 2)
+                .apply()
+                .test();
+        subscriptions.add(applyObserver);
+
+        applyObserver.assertComplete();
+        allSubscription.assertValueCount(2);
+    }
+    //endregion
+    //endregion
+
+    //region write-behind
+    @Test
+    public void commit_writeBehind_mergesEditorsIntoOneCommitAfterWindow() {
+        final RxPreferences writeBehindPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .writeBehind(100, TimeUnit.MILLISECONDS, 10, testScheduler)
+                .build();
+
+        final TestObserver<Void> firstObserver = writeBehindPreferences.edit()
+                .putInt("First key", 1)
+                .putString("Shared key", "First value")
+                .commit()
+                .test();
+        subscriptions.add(firstObserver);
+        final TestObserver<Void> secondObserver = writeBehindPreferences.edit()
+                .putString("Shared key", "Second value")
+                .remove("Removed key")
+                .commit()
+                .test();
+        subscriptions.add(secondObserver);
+
+        firstObserver.assertNotComplete();
+        secondObserver.assertNotComplete();
+        verify(mockSharedPreferences, never()).edit();
+
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        firstObserver.assertComplete();
+        secondObserver.assertComplete();
+        verify(mockSharedPreferences, times(1)).edit();
+        verify(mockSharedPreferencesEditor).putInt("First key", 1);
+        verify(mockSharedPreferencesEditor).putString("Shared key", "Second value");
+        verify(mockSharedPreferencesEditor).remove("Removed key");
+        verify(mockSharedPreferencesEditor, times(1)).commit();
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+    }
+
+    @Test
+    public void commit_writeBehindReachesMaxPendingKeys_commitsImmediately() {
+        final RxPreferences writeBehindPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .writeBehind(100, TimeUnit.MILLISECONDS, 2, testScheduler)
+                .build();
+
+        final TestObserver<Void> firstObserver = writeBehindPreferences.edit()
+                .putLong("First key", 1L)
+                .commit()
+                .test();
+        subscriptions.add(firstObserver);
+        firstObserver.assertNotComplete();
+
+        final TestObserver<Void> secondObserver = writeBehindPreferences.edit()
+                .putFloat("Second key", 2f)
+                .commit()
+                .test();
+        subscriptions.add(secondObserver);
+
+        firstObserver.assertComplete();
+        secondObserver.assertComplete();
+        verify(mockSharedPreferencesEditor, times(1)).commit();
+
+        // The elapsed window of the flushed edits does not commit again:
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        verify(mockSharedPreferencesEditor, times(1)).commit();
+    }
+
+    @Test
+    public void commit_writeBehindWithClear_discardsEarlierEditsInWindow() {
+        final RxPreferences writeBehindPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .writeBehind(100, TimeUnit.MILLISECONDS, 10, testScheduler)
+                .build();
+
+        subscriptions.add(writeBehindPreferences.edit().putBoolean("Discarded key", true).commit().test());
+        subscriptions.add(writeBehindPreferences.edit().clear().putBoolean("Kept key", true).commit().test());
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        verify(mockSharedPreferencesEditor).clear();
+        verify(mockSharedPreferencesEditor).putBoolean("Kept key", true);
+        verify(mockSharedPreferencesEditor, never()).putBoolean(eq("Discarded key"), anyBoolean());
+    }
+
+    @Test
+    public void commit_writeBehindCommitFails_failsAllMergedEditors() {
+        when(mockSharedPreferencesEditor.commit()).thenReturn(false);
+        final RxPreferences writeBehindPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .writeBehind(100, TimeUnit.MILLISECONDS, 10, testScheduler)
+                .build();
+
+        final TestObserver<Void> firstObserver = writeBehindPreferences.edit()
+                .putInt("First key", 1)
+                .commit()
+                .test();
+        subscriptions.add(firstObserver);
+        final TestObserver<Void> secondObserver = writeBehindPreferences.edit()
+                .putInt("Second key", 2)
+                .apply()
+                .test();
+        subscriptions.add(secondObserver);
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        firstObserver.assertError(RxPreferences.Editor.CommitException.class);
+        secondObserver.assertError(RxPreferences.Editor.CommitException.class);
+    }
+    //endregion
+
+    //region skip unchanged writes
+    @Test
+    public void commit_skipUnchangedWritesWithOnlyUnchangedEdits_completesWithoutWriting() {
+        final RxPreferences skippingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .skipUnchangedWrites(true)
+                .build();
+        when(mockSharedPreferences.contains("Int key")).thenReturn(true);
+        when(mockSharedPreferences.getInt(eq("Int key"), anyInt())).thenReturn(5);
+        when(mockSharedPreferences.contains("Absent key")).thenReturn(false);
+
+        final TestObserver<Void> testObserver = skippingPreferences.edit()
+                .putInt("Int key", 5)
+                .remove("Absent key")
+                .commit()
+                .test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertComplete();
+        verify(mockSharedPreferences, never()).edit();
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+    }
+
+    @Test
+    public void commit_skipUnchangedWrites_writesOnlyChangedEdits() {
+        final RxPreferences skippingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .skipUnchangedWrites(true)
+                .build();
+        when(mockSharedPreferences.getString(eq("Unchanged key"), any())).thenReturn("Same value");
+        when(mockSharedPreferences.getString(eq("Changed key"), any())).thenReturn("Old value");
+
+        final TestObserver<Void> testObserver = skippingPreferences.edit()
+                .putString("Unchanged key", "Same value")
+                .putString("Changed key", "New value")
+                .commit()
+                .test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertComplete();
+        verify(mockSharedPreferencesEditor).putString("Changed key", "New value");
+        verify(mockSharedPreferencesEditor).commit();
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+    }
+
+    @Test
+    public void commit_skipUnchangedWritesWithClear_writesAllEdits() {
+        final RxPreferences skippingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .skipUnchangedWrites(true)
+                .build();
+
+        final TestObserver<Void> testObserver = skippingPreferences.edit()
+                .clear()
+                .putBoolean("Boolean key", true)
+                .commit()
+                .test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertComplete();
+        verify(mockSharedPreferencesEditor).clear();
+        verify(mockSharedPreferencesEditor).putBoolean("Boolean key", true);
+        verify(mockSharedPreferencesEditor).commit();
+    }
+
+    @Test
+    public void apply_skipUnchangedWrites_appliesChangedEdits() {
+        final RxPreferences skippingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .skipUnchangedWrites(true)
+                .build();
+
+        final TestObserver<Void> testObserver = skippingPreferences.edit()
+                .putLong("Long key", 7L)
+                .apply()
+                .test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertComplete();
+        verify(mockSharedPreferencesEditor).putLong("Long key", 7L);
+        verify(mockSharedPreferencesEditor).apply();
+        verify(mockSharedPreferencesEditor, never()).commit();
+    }
+
+    @Test
+    public void commit_skipUnchangedWritesWithWriteBehind_skipsUnchangedMergedEdits() {
+        final RxPreferences skippingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .skipUnchangedWrites(true)
+                .writeBehind(100, TimeUnit.MILLISECONDS, 10, testScheduler)
+                .build();
+        when(mockSharedPreferences.contains("Float key")).thenReturn(true);
+        when(mockSharedPreferences.getFloat(eq("Float key"), anyFloat())).thenReturn(1.5f);
+
+        final TestObserver<Void> testObserver = skippingPreferences.edit()
+                .putFloat("Float key", 1.5f)
+                .commit()
+                .test();
+        subscriptions.add(testObserver);
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        testObserver.assertComplete();
+        verify(mockSharedPreferences, never()).edit();
+    }
+    //endregion
+
+    //region awaitPendingWrites
+    @Test
+    public void awaitPendingWrites_commitsEmptyEdit() {
+        final TestObserver<Void> testObserver = rxPreferences.awaitPendingWrites().test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertComplete();
+        verify(mockSharedPreferences).edit();
+        verify(mockSharedPreferencesEditor).commit();
+        verifyNoMoreInteractions(mockSharedPreferencesEditor);
+    }
+
+    @Test
+    public void awaitPendingWrites_commitFails_propagatesCommitException() {
+        when(mockSharedPreferencesEditor.commit()).thenReturn(false);
+
+        final TestObserver<Void> testObserver = rxPreferences.awaitPendingWrites().test();
+        subscriptions.add(testObserver);
+
+        testObserver.assertError(RxPreferences.Editor.CommitException.class);
+    }
+    //endregion
+
+    //region coalesce commits
+    @Test
+    public void commit_notCoalesced_emitsOncePerChangedKey() {
+        final RxPreferences nonDistinctPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .distinctUntilChanged(false)
+                .build();
+        testCommitEmissions(nonDistinctPreferences, true, 4);
+    }
+
+    @Test
+    public void commit_coalesced_emitsOncePerCommit() {
+        final RxPreferences coalescingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .distinctUntilChanged(false)
+                .build();
+        testCommitEmissions(coalescingPreferences, true, 2);
+    }
+
+    @Test
+    public void commit_coalescedWithAsynchronousNotifications_emitsOnceForCommittedKeys() {
+        final RxPreferences coalescingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .distinctUntilChanged(false)
+                .build();
+        testCommitEmissions(coalescingPreferences, false, 2);
+    }
+
+    @Test
+    public void commit_coalescedWithNotificationsAfterCommit_deliversLateNotificationsIndividually() {
+        final RxPreferences coalescingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .distinctUntilChanged(false)
+                .build();
+        testCommitEmissions(coalescingPreferences, false, 2);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        final TestObserver<Map<String, ?>> allSubscription = coalescingPreferences.getAllStream().test();
+        subscriptions.add(allSubscription);
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "First key");
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Second key");
+
+        // The commit already returned, so each late notification is its own emission:
+        allSubscription.assertValueCount(3);
+    }
+
+    private void testCommitEmissions(RxPreferences rxPreferences, boolean notifyDuringCommit,
+            int expectedAllEmissions) {
+        //noinspection unchecked
+        when(mockSharedPreferences.getAll()).thenReturn((Map) Collections.emptyMap());
+        when(mockSharedPreferences.getInt(eq("First key"), anyInt())).thenReturn(1);
+
+        final TestObserver<Map<String, ?>> allSubscription = rxPreferences.getAllStream().test();
+        subscriptions.add(allSubscription);
+        final TestObserver<Integer> intSubscription = rxPreferences.getIntStream("First key", 0).test();
+        subscriptions.add(intSubscription);
+
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        final SharedPreferences.OnSharedPreferenceChangeListener listener = listenerCaptor.getValue();
+        when(mockSharedPreferencesEditor.commit()).thenAnswer(invocation -> {
+            //noinspection unchecked
+            when(mockSharedPreferences.getAll()).thenReturn((Map) Collections.singletonMap("First key", 11));
+            when(mockSharedPreferences.getInt(eq("First key"), anyInt())).thenReturn(11);
+            if (notifyDuringCommit) {
+                listener.onSharedPreferenceChanged(mockSharedPreferences, "First key");
+                listener.onSharedPreferenceChanged(mockSharedPreferences, "Second key");
+                listener.onSharedPreferenceChanged(mockSharedPreferences, "Third key");
+            }
+            return true;
+        });
+
+        final TestObserver<Void> commitObserver = rxPreferences.edit()
+                .putInt("First key", 1)
+                .putInt("Second key", 2)
+                .putInt("Third key", 3)
+                .commit()
+                .test();
+        subscriptions.add(commitObserver);
+
+        commitObserver.assertComplete();
+        allSubscription.assertValueCount(expectedAllEmissions);
+        intSubscription.assertValueCount(2);
+    }
+    //endregion
+
+    //region dispatch scheduler
+    @Test
+    public void dispatchOn_deliversChangesOnScheduler() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final TestScheduler dispatchScheduler = new TestScheduler();
+        final RxPreferences dispatchingPreferences = RxPreferences.builder(store)
+                .dispatchOn(dispatchScheduler)
+                .build();
+
+        final TestObserver<Integer> subscription = dispatchingPreferences.getIntStream("Int key", 0).test();
+        subscriptions.add(subscription);
+        store.edit().putInt("Int key", 1).commit();
+        subscription.assertValues(0);
+
+        dispatchScheduler.triggerActions();
+        subscription.assertValues(0, 1);
+    }
+
+    @Test
+    public void dispatchOn_supersededChanges_deliveredOnceWithLatestValue() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final TestScheduler dispatchScheduler = new TestScheduler();
+        final RxPreferences dispatchingPreferences = RxPreferences.builder(store)
+                .dispatchOn(dispatchScheduler)
+                .distinctUntilChanged(false)
+                .build();
+
+        final TestObserver<Map<String, ?>> subscription = dispatchingPreferences.getAllStream().test();
+        subscriptions.add(subscription);
+        for (int i = 1; i <= 3; i++) {
+            store.edit().putInt("Int key", i).commit();
+        }
+        dispatchScheduler.triggerActions();
+
+        subscription.assertValues(Collections.emptyMap(), Collections.singletonMap("Int key", 3));
+    }
+
+    @Test
+    public void dispatchOn_tooManyPendingKeys_refreshesEveryStream() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final TestScheduler dispatchScheduler = new TestScheduler();
+        final RxPreferences dispatchingPreferences = RxPreferences.builder(store)
+                .dispatchOn(dispatchScheduler, 2)
+                .build();
+
+        final TestObserver<Integer> intSubscription = dispatchingPreferences.getIntStream("First key", 0).test();
+        subscriptions.add(intSubscription);
+        final TestObserver<Map<String, ?>> prefixSubscription = dispatchingPreferences.getPrefixStream("Third")
+                .test();
+        subscriptions.add(prefixSubscription);
+        store.edit().putInt("First key", 1).commit();
+        store.edit().putInt("Second key", 2).commit();
+        store.edit().putInt("Third key", 3).commit();
+        store.edit().putInt("Fourth key", 4).commit();
+        dispatchScheduler.triggerActions();
+
+        intSubscription.assertValues(0, 1);
+        prefixSubscription.assertValues(Collections.emptyMap(), Collections.singletonMap("Third key", 3));
+    }
+
+    @Test
+    public void dispatchOn_clear_deliversClear() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        store.edit().putString("String key", "Value").commit();
+        final TestScheduler dispatchScheduler = new TestScheduler();
+        final RxPreferences dispatchingPreferences = RxPreferences.builder(store)
+                .dispatchOn(dispatchScheduler)
+                .build();
+
+        final TestObserver<String> subscription = dispatchingPreferences.getStringStream("String key", "Default")
+                .test();
+        subscriptions.add(subscription);
+        store.edit().clear().commit();
+        dispatchScheduler.triggerActions();
+
+        subscription.assertValues("Value", "Default");
+    }
+
+    @Test
+    public void dispatchOn_changesStream_stillEmitsEveryChangeImmediately() {
+        final InMemoryPreferenceStore store = new InMemoryPreferenceStore();
+        final TestScheduler dispatchScheduler = new TestScheduler();
+        final RxPreferences dispatchingPreferences = RxPreferences.builder(store)
+                .dispatchOn(dispatchScheduler)
+                .build();
+
+        final TestObserver<PreferenceChange> subscription = dispatchingPreferences.getAllChangesStream().test();
+        subscriptions.add(subscription);
+        store.edit().putInt("Int key", 1).commit();
+        store.edit().putInt("Int key", 2).commit();
+
+        subscription.assertValues(new PreferenceChange("Int key", 1), new PreferenceChange("Int key", 2));
+    }
+
+    @Test
+    public void dispatchOn_coalescedCommit_deliversOnceOnScheduler() {
+        final TestScheduler dispatchScheduler = new TestScheduler();
+        final RxPreferences dispatchingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .dispatchOn(dispatchScheduler)
+                .distinctUntilChanged(false)
+                .build();
+        //noinspection unchecked
+        when(mockSharedPreferences.getAll()).thenReturn((Map) Collections.emptyMap());
+
+        final TestObserver<Map<String, ?>> subscription = dispatchingPreferences.getAllStream().test();
+        subscriptions.add(subscription);
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        when(mockSharedPreferencesEditor.commit()).thenAnswer(invocation -> {
+            listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "First key");
+            listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Second key");
+            return true;
+        });
+        dispatchingPreferences.edit().putInt("First key", 1).putInt("Second key", 2).commit().test().assertComplete();
+        subscription.assertValueCount(1);
+
+        dispatchScheduler.triggerActions();
+        subscription.assertValueCount(2);
+    }
+
+    @Test
+    public void dispatchOn_notificationsAfterCoalescedCommit_mergedWithCommitWhileWaiting() {
+        final TestScheduler dispatchScheduler = new TestScheduler();
+        final RxPreferences dispatchingPreferences = RxSharedPreferences.builder(mockSharedPreferences)
+                .coalesceCommits(true)
+                .dispatchOn(dispatchScheduler)
+                .distinctUntilChanged(false)
+                .build();
+        //noinspection unchecked
+        when(mockSharedPreferences.getAll()).thenReturn((Map) Collections.emptyMap());
+
+        final TestObserver<Map<String, ?>> subscription = dispatchingPreferences.getAllStream().test();
+        subscriptions.add(subscription);
+        final ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+                ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(mockSharedPreferences).registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+        dispatchingPreferences.edit().putInt("First key", 1).putInt("Second key", 2).commit().test().assertComplete();
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "First key");
+        listenerCaptor.getValue().onSharedPreferenceChanged(mockSharedPreferences, "Second key");
+        subscription.assertValueCount(1);
+
+        dispatchScheduler.triggerActions();
+        subscription.assertValueCount(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dispatchOn_nonPositiveMaxPendingKeys_throwsIllegalArgumentException() {
+        RxSharedPreferences.builder(mockSharedPreferences).dispatchOn(Schedulers.trampoline(), 0);
+    }
+    //endregion
+
+    //region PreferenceStore
+    @Test
+    public void create_readsFromPreferenceStore() {
+        final PreferenceStore mockStore = mock(PreferenceStore.class);
+        when(mockStore.getInt("Store key", 0)).thenReturn(7);
+
+        final TestObserver<Integer> subscription = RxPreferences.create(mockStore).getIntOnce("Store key", 0).test();
+        subscriptions.add(subscription);
+
+        subscription.assertValue(7);
+        verifyNoMoreInteractions(mockSharedPreferences);
+    }
+
+    @Test
+    public void create_streamEmitsOnPreferenceStoreChange() {
+        final PreferenceStore mockStore = mock(PreferenceStore.class);
+        when(mockStore.getString(eq("Store key"), anyString())).thenReturn("First value");
+
+        final TestObserver<String> subscription = RxPreferences.create(mockStore)
+                .getStringStream("Store key", "Default")
+                .test();
+        subscriptions.add(subscription);
+
+        final ArgumentCaptor<PreferenceStore.Listener> listenerCaptor =
+                ArgumentCaptor.forClass(PreferenceStore.Listener.class);
+        verify(mockStore).registerListener(listenerCaptor.capture());
+        when(mockStore.getString(eq("Store key"), anyString())).thenReturn("Second value");
+        listenerCaptor.getValue().onPreferenceChanged(mockStore, "Store key");
+
+        subscription.assertValues("First value", "Second value");
+
+        subscription.dispose();
+        verify(mockStore).unregisterListener(listenerCaptor.getValue());
     }
     //endregion
+
+    //region load
+    @Test
+    public void load_opensAndReadsStoreOnScheduler() {
+        final TestScheduler scheduler = new TestScheduler();
+        final PreferenceStore mockStore = mock(PreferenceStore.class);
+        when(mockStore.getInt("Store key", 0)).thenReturn(3);
+        final AtomicInteger loadCount = new AtomicInteger();
+
+        final TestObserver<RxPreferences> subscription = RxPreferences.load(() -> {
+            loadCount.incrementAndGet();
+            return mockStore;
+        }, scheduler).test();
+        subscriptions.add(subscription);
+
+        assertEquals(0, loadCount.get());
+        subscription.assertEmpty();
+
+        scheduler.triggerActions();
+        assertEquals(1, loadCount.get());
+        verify(mockStore).contains(anyString());
+        subscription.assertValueCount(1);
+        subscription.assertComplete();
+        subscription.values().get(0).getIntOnce("Store key", 0).test().assertValue(3);
+    }
+
+    @Test
+    public void load_loaderThrows_emitsError() {
+        final IOException error = new IOException("Test load failure");
+
+        final TestObserver<RxPreferences> subscription = RxPreferences.load(() -> {
+            throw error;
+        }, Schedulers.trampoline()).test();
+        subscriptions.add(subscription);
+
+        subscription.assertError(error);
+    }
+
+    @Test
+    public void loadAll_emitsInstancesInLoaderOrderOnceAllAreLoaded() {
+        final TestScheduler scheduler = new TestScheduler();
+        final InMemoryPreferenceStore firstStore =
+                new InMemoryPreferenceStore(Collections.singletonMap("Store key", "First"));
+        final InMemoryPreferenceStore secondStore =
+                new InMemoryPreferenceStore(Collections.singletonMap("Store key", "Second"));
+
+        final TestObserver<List<RxPreferences>> subscription =
+                RxPreferences.loadAll(Arrays.asList(() -> firstStore, () -> secondStore), scheduler).test();
+        subscriptions.add(subscription);
+        subscription.assertEmpty();
+
+        scheduler.triggerActions();
+        subscription.assertValueCount(1);
+        final List<RxPreferences> loaded = subscription.values().get(0);
+        assertEquals(2, loaded.size());
+        loaded.get(0).getStringOnce("Store key", "Default").test().assertValue("First");
+        loaded.get(1).getStringOnce("Store key", "Default").test().assertValue("Second");
+    }
+
+    @Test
+    public void loadAll_noLoaders_emitsEmptyList() {
+        final TestObserver<List<RxPreferences>> subscription = RxPreferences
+                .loadAll(Collections.<Callable<PreferenceStore>>emptyList(), Schedulers.trampoline())
+                .test();
+        subscriptions.add(subscription);
+
+        subscription.assertValue(Collections.<RxPreferences>emptyList());
+    }
     //endregion
 
     //region CommitException